@@ -0,0 +1,95 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package desdemo.jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import static desdemo.jmh.Library.*;
+
+/**
+ * JMH benchmarks for the key schedule, the round function and the
+ * single-block functions.
+ *
+ * Each benchmark reports throughput, and the latency distribution of
+ * individual operations (SampleTime mode).  The gradle "jmh" task adds
+ * the GC profiler, which reports the allocation rate per operation.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DESBlockBenchmarks {
+
+    // fields rather than constants, so the JIT can't fold the results
+    private long keyValue = 0x133457799BBCDFF1L;
+    private long block = 0x0123456789ABCDEFL;
+    private int half = 0x12345678;
+    private long subkey = 0x1B02EFFC7072L;
+    private byte[] keyBytes = { 0x13, 0x34, 0x57, 0x79, (byte) 0x9B, (byte) 0xBC, (byte) 0xDF, (byte) 0xF1 };
+    private byte[] in = new byte[8];
+    private byte[] out = new byte[8];
+    private long[] subkeys = new long[16];
+    private Object key = newKey(keyValue);
+
+    @Benchmark
+    public long[] createSubkeys() throws Throwable {
+        return (long[]) CREATE_SUBKEYS.invokeExact(keyValue);
+    }
+
+    @Benchmark
+    public long[] createSubkeysReference() throws Throwable {
+        CREATE_SUBKEYS_REFERENCE.invokeExact(keyValue, subkeys, 0);
+        return subkeys;
+    }
+
+    @Benchmark
+    public int feistel() throws Throwable {
+        return (int) FEISTEL.invokeExact(half, subkey);
+    }
+
+    @Benchmark
+    public int feistelSP() throws Throwable {
+        return (int) FEISTEL_SP.invokeExact(half, subkey);
+    }
+
+    @Benchmark
+    public long encryptBlockLongLong() throws Throwable {
+        return (long) ENCRYPT_BLOCK_LONG.invokeExact(block, keyValue);
+    }
+
+    @Benchmark
+    public long encryptBlockDESKey() throws Throwable {
+        return (long) ENCRYPT_BLOCK_KEY.invokeExact(block, key);
+    }
+
+    @Benchmark
+    public byte[] encryptBlockBytes() throws Throwable {
+        ENCRYPT_BLOCK_BYTES.invokeExact(in, 0, out, 0, keyBytes);
+        return out;
+    }
+
+}
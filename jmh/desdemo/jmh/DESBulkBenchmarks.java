@@ -0,0 +1,82 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package desdemo.jmh;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import static desdemo.jmh.Library.*;
+
+/**
+ * JMH benchmarks for bulk ECB encryption, at payload sizes of a block,
+ * a VNC challenge, 1KB and 1MB.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DESBulkBenchmarks {
+
+    @Param({ "8", "16", "1024", "1048576" })
+    public int size;
+
+    private byte[] keyBytes;
+    private Object key;
+    private byte[] message;
+    private byte[] out;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        keyBytes = new byte[8];
+        random.nextBytes(keyBytes);
+        long keyValue = 0;
+        for (int i=0; i<8; i++) {
+            keyValue = keyValue<<8 | (keyBytes[i]&0xFF);
+        }
+        key = newKey(keyValue);
+        message = new byte[size];
+        random.nextBytes(message);
+        out = new byte[size];
+    }
+
+    /** DES.encrypt(byte[], byte[]): a new key schedule and output array per call. */
+    @Benchmark
+    public byte[] encryptBytes() throws Throwable {
+        return (byte[]) ENCRYPT_BYTES.invokeExact(message, keyBytes);
+    }
+
+    /** DES.encrypt(byte[], int, int, byte[], int, DESKey): no allocation. */
+    @Benchmark
+    public byte[] encryptRangeDESKey() throws Throwable {
+        ENCRYPT_RANGE.invokeExact(message, 0, size, out, 0, key);
+        return out;
+    }
+
+}
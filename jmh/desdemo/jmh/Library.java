@@ -0,0 +1,124 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package desdemo.jmh;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+/**
+ * Method handles for the library methods under test.
+ *
+ * JMH does not support benchmarks in the default package, where the
+ * library lives, and code in a named package can't refer to classes
+ * in the default package by name, so the benchmarks reach the library
+ * through these handles.  They are held in static final fields, which
+ * the JIT treats as constants and inlines through, so they add
+ * nothing to the measured cost.  DESKey instances are passed as
+ * Object.
+ */
+final class Library {
+
+    private Library() {
+    }
+
+    static final Class<?> DES = type("DES");
+    static final Class<?> DES_KEY = type("DESKey");
+
+    /** long[] DES.createSubkeys(long) */
+    static final MethodHandle CREATE_SUBKEYS =
+        find("createSubkeys", MethodType.methodType(long[].class, long.class));
+
+    /** void DES.createSubkeysReference(long, long[], int) */
+    static final MethodHandle CREATE_SUBKEYS_REFERENCE =
+        find("createSubkeysReference", MethodType.methodType(void.class, long.class, long[].class, int.class));
+
+    /** int DES.feistel(int, long) */
+    static final MethodHandle FEISTEL =
+        find("feistel", MethodType.methodType(int.class, int.class, long.class));
+
+    /** int DES.feistelSP(int, long) */
+    static final MethodHandle FEISTEL_SP =
+        find("feistelSP", MethodType.methodType(int.class, int.class, long.class));
+
+    /** long DES.encryptBlock(long, long) */
+    static final MethodHandle ENCRYPT_BLOCK_LONG =
+        find("encryptBlock", MethodType.methodType(long.class, long.class, long.class));
+
+    /** long DES.encryptBlock(long, DESKey) */
+    static final MethodHandle ENCRYPT_BLOCK_KEY =
+        find("encryptBlock", MethodType.methodType(long.class, long.class, DES_KEY))
+            .asType(MethodType.methodType(long.class, long.class, Object.class));
+
+    /** void DES.encryptBlock(byte[], int, byte[], int, byte[]) */
+    static final MethodHandle ENCRYPT_BLOCK_BYTES =
+        find("encryptBlock", MethodType.methodType(void.class,
+            byte[].class, int.class, byte[].class, int.class, byte[].class));
+
+    /** byte[] DES.encrypt(byte[], byte[]) */
+    static final MethodHandle ENCRYPT_BYTES =
+        find("encrypt", MethodType.methodType(byte[].class, byte[].class, byte[].class));
+
+    /** void DES.encrypt(byte[], int, int, byte[], int, DESKey) */
+    static final MethodHandle ENCRYPT_RANGE =
+        find("encrypt", MethodType.methodType(void.class,
+            byte[].class, int.class, int.class, byte[].class, int.class, DES_KEY))
+            .asType(MethodType.methodType(void.class,
+                byte[].class, int.class, int.class, byte[].class, int.class, Object.class));
+
+    /** new DESKey(long) */
+    private static final MethodHandle NEW_KEY = constructor();
+
+    /**
+     * Create a DESKey for the 64-bit key value.
+     */
+    static Object newKey(long key) {
+        try {
+            return (Object) NEW_KEY.invokeExact(key);
+        } catch (Throwable t) {
+            throw new IllegalStateException(t);
+        }
+    }
+
+    private static Class<?> type(String name) {
+        try {
+            return Class.forName(name);
+        } catch (ClassNotFoundException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    /**
+     * Find a static method of DES, including package-private ones.
+     */
+    private static MethodHandle find(String name, MethodType type) {
+        try {
+            return MethodHandles.privateLookupIn(DES, MethodHandles.lookup()).findStatic(DES, name, type);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private static MethodHandle constructor() {
+        try {
+            return MethodHandles.publicLookup()
+                .findConstructor(DES_KEY, MethodType.methodType(void.class, long.class))
+                .asType(MethodType.methodType(Object.class, long.class));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+}
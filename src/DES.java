@@ -15,7 +15,39 @@
  * limitations under the License.
  */
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.security.GeneralSecurityException;
+import java.security.InvalidAlgorithmParameterException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.Cipher;
+import javax.crypto.NoSuchPaddingException;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
 
 /**
  * Super-slow DES implementation for the overly patient.
@@ -58,7 +90,7 @@ public class DES {
      * Input Permutation.  The message block is permuted by this
      * permutation at the beginning of the algorithm.
      */
-    private static final byte[] IP = { 
+    static final byte[] IP = { 
         58, 50, 42, 34, 26, 18, 10, 2,
         60, 52, 44, 36, 28, 20, 12, 4,
         62, 54, 46, 38, 30, 22, 14, 6,
@@ -73,7 +105,7 @@ public class DES {
      * Final Permutation.  The final result is permuted by this
      * permutation to generate the final ciphertext block.
      */
-    private static final byte[] FP = {
+    static final byte[] FP = {
         40, 8, 48, 16, 56, 24, 64, 32,
         39, 7, 47, 15, 55, 23, 63, 31,
         38, 6, 46, 14, 54, 22, 62, 30,
@@ -91,7 +123,7 @@ public class DES {
      * this permutation to its 32-bit input half-block to create an
      * "expanded" 48-bit value.
      */
-    private static final byte[] E = {
+    static final byte[] E = {
         32, 1,  2,  3,  4,  5,
         4,  5,  6,  7,  8,  9,
         8,  9,  10, 11, 12, 13,
@@ -113,7 +145,7 @@ public class DES {
      *  "The S-boxes provide the core of the security of DES - without
      *  them, the cipher would be linear, and trivially breakable."
      */
-    private static final byte[][] S = { {
+    static final byte[][] S = { {
         14, 4,  13, 1,  2,  15, 11, 8,  3,  10, 6,  12, 5,  9,  0,  7,
         0,  15, 7,  4,  14, 2,  13, 1,  10, 6,  12, 11, 9,  5,  3,  8,
         4,  1,  14, 8,  13, 6,  2,  11, 15, 12, 9,  7,  3,  10, 5,  0,
@@ -161,7 +193,7 @@ public class DES {
      * order to spread the output bits across 6 different S-boxes in
      * the next round.
      */
-    private static final byte[] P = {
+    static final byte[] P = {
         16, 7,  20, 21,
         29, 12, 28, 17,
         1,  15, 23, 26,
@@ -180,7 +212,7 @@ public class DES {
      * 56-bit algorithm, even though you provide 64 bits of key
      * material.)
      */
-    private static final byte[] PC1 = {
+    static final byte[] PC1 = {
         57, 49, 41, 33, 25, 17, 9,
         1,  58, 50, 42, 34, 26, 18,
         10, 2,  59, 51, 43, 35, 27,
@@ -196,7 +228,7 @@ public class DES {
      * permutation to transform its running 56-bit keystuff value into
      * the final set of 16 48-bit subkeys.
      */
-    private static final byte[] PC2 = {
+    static final byte[] PC2 = {
         14, 17, 11, 24, 1,  5,
         3,  28, 15, 6,  21, 10,
         23, 19, 12, 4,  26, 8,
@@ -213,10 +245,109 @@ public class DES {
      * one or two bits to the left.  This table specifies how many bits
      * to rotate left for each of the 16 steps.
      */
-    private static final byte[] rotations = {
+    static final byte[] rotations = {
         1, 1, 2, 2, 2, 2, 2, 2, 1, 2, 2, 2, 2, 2, 2, 1
     };
     
+    // Tables derived from the above.  The expensive derivations are
+    // done ahead of time by DESTableGenerator, and loaded from the
+    // generated DESTables class; testTables() checks that they are
+    // up to date.
+    
+    /**
+     * Combined S-box and P permutation tables.  SP[i][x] holds the
+     * result of feeding the 6-bit value x into S-box i+1, placing
+     * its 4-bit output in that box's position of the 32-bit S-box
+     * output, and applying the P permutation.  Since P is just a bit
+     * permutation, the outputs of the eight boxes can then be
+     * combined with XOR (or OR) after the lookup instead of before.
+     * 
+     * The 6-bit index is the raw E-expanded-and-keyed value, so the
+     * row/column bit shuffle performed by S() is already accounted
+     * for.
+     */
+    private static final int[][] SP = DESTables.SP;
+    
+    /**
+     * Derive the SP tables from the S and P tables.
+     */
+    static int[][] deriveSP() {
+        int[][] sp = new int[8][64];
+        for (int i=0; i<8; i++) {
+            for (int x=0; x<64; x++) {
+                int s = S(i+1, (byte)x);
+                sp[i][x] = P(s << (28-4*i));
+            }
+        }
+        return sp;
+    }
+    
+    /**
+     * Bit-reversal table.  BIT_REVERSE[b] is the byte b with its bit
+     * order mirrored, as needed to turn a VNC password into a key.
+     * (See passwordToKey().)
+     */
+    static final byte[] BIT_REVERSE = new byte[256];
+    static {
+        for (int i=0; i<256; i++) {
+            int b = i;
+            int b2 = 0;
+            for (int j=0; j<8; j++) {
+                b2 = b2<<1 | (b&0x01);
+                b >>>= 1;
+            }
+            BIT_REVERSE[i] = (byte) b2;
+        }
+    }
+    
+    /**
+     * Key schedule table.  Every subkey bit is a copy of one key bit,
+     * so each key byte contributes to the subkeys independently of the
+     * other seven, and the contributions never overlap.  For key byte
+     * b (0-7, from the left) with value v, the 16 subkey contributions
+     * start at KEY_SCHEDULE[(b*128 + (v>>>1)) * 16].  The low bit of
+     * each byte is a parity bit which PC1 discards, so only 128 values
+     * per byte are needed.
+     * 
+     * Built by combining the key schedules of the 56 single-bit keys
+     * (DESTables.KEY_BITS).
+     */
+    private static final long[] KEY_SCHEDULE = new long[8*128*16];
+    static {
+        for (int b=0; b<8; b++) {
+            for (int v=1; v<128; v++) {
+                int base = (b*128 + v) * 16;
+                int low = Integer.numberOfTrailingZeros(v);
+                if (v == (1 << low)) {
+                    System.arraycopy(DESTables.KEY_BITS, (b*7 + low) * 16, KEY_SCHEDULE, base, 16);
+                } else {
+                    // combine the lowest set bit with the rest
+                    int rest = (b*128 + (v & (v-1))) * 16;
+                    int bit = (b*128 + (1 << low)) * 16;
+                    for (int i=0; i<16; i++) {
+                        KEY_SCHEDULE[base+i] = KEY_SCHEDULE[rest+i] | KEY_SCHEDULE[bit+i];
+                    }
+                }
+            }
+        }
+    }
+    
+    /**
+     * Derive the key schedules of the 56 single-bit keys from the PC1,
+     * rotations and PC2 tables.  The 16 subkeys for key byte b (0-7,
+     * from the left) with only bit 1+j (j = 0-6, counting up from the
+     * parity bit) set start at index (b*7 + j) * 16.
+     */
+    static long[] deriveKeyBits() {
+        long[] bits = new long[56*16];
+        for (int b=0; b<8; b++) {
+            for (int j=0; j<7; j++) {
+                createSubkeysReference(1L << (8*(7-b) + 1 + j), bits, (b*7 + j) * 16);
+            }
+        }
+        return bits;
+    }
+    
     //////////////////////////////////////////////////////////////////////
     //
     // Numerical utility methods
@@ -232,6 +363,42 @@ public class DES {
     private static long PC1(long src) { return permute(PC1, 64, src);                } // 56-bit output
     private static long PC2(long src) { return permute(PC2, 56, src);                } // 48-bit output
 
+    /**
+     * Fast equivalent of IP(), built from a sequence of "delta swaps".
+     * Each step exchanges a masked group of bits in one 32-bit half
+     * with a group of bits a fixed distance away in the other half (or
+     * in the same half), so the whole 64-bit permutation costs five
+     * shift/xor/mask steps instead of a 64-iteration loop.
+     */
+    static long fastIP(long src) {
+        int l = (int) (src>>>32);
+        int r = (int) src;
+        int t;
+        t = ((l>>>4)  ^ r) & 0x0F0F0F0F; r ^= t; l ^= t<<4;
+        t = ((l>>>16) ^ r) & 0x0000FFFF; r ^= t; l ^= t<<16;
+        t = ((r>>>2)  ^ l) & 0x33333333; l ^= t; r ^= t<<2;
+        t = ((r>>>8)  ^ l) & 0x00FF00FF; l ^= t; r ^= t<<8;
+        t = ((l>>>1)  ^ r) & 0x55555555; r ^= t; l ^= t<<1;
+        return (l&0xFFFFFFFFL)<<32 | (r&0xFFFFFFFFL);
+    }
+
+    /**
+     * Fast equivalent of FP().  Since every delta swap is its own
+     * inverse, and FP is the inverse of IP, this is simply the steps
+     * of fastIP() applied in reverse order.
+     */
+    static long fastFP(long src) {
+        int l = (int) (src>>>32);
+        int r = (int) src;
+        int t;
+        t = ((l>>>1)  ^ r) & 0x55555555; r ^= t; l ^= t<<1;
+        t = ((r>>>8)  ^ l) & 0x00FF00FF; l ^= t; r ^= t<<8;
+        t = ((r>>>2)  ^ l) & 0x33333333; l ^= t; r ^= t<<2;
+        t = ((l>>>16) ^ r) & 0x0000FFFF; r ^= t; l ^= t<<16;
+        t = ((l>>>4)  ^ r) & 0x0F0F0F0F; r ^= t; l ^= t<<4;
+        return (l&0xFFFFFFFFL)<<32 | (r&0xFFFFFFFFL);
+    }
+
     /**
      * Permute an input value "src" of srcWidth bits according to the
      * supplied permutation table.  (Note that our permutation tables,
@@ -252,7 +419,7 @@ public class DES {
      * specified box number.  (Box numbers start at 1, to be consistent
      * with the literature.)
      */
-    private static byte S(int boxNumber, byte src) {
+    static byte S(int boxNumber, byte src) {
         // The first and last bits determine which 16-value row to
         // reference, so we transform the 6-bit input into an
         // absolute index based on the following bit shuffle:
@@ -268,7 +435,7 @@ public class DES {
      * starting at offset, the missing bytes are regarded as zero
      * padding.
      */
-    private static long getLongFromBytes(byte[] ba, int offset) {
+    static long getLongFromBytes(byte[] ba, int offset) {
         long l = 0;
         for (int i=0; i<8; i++) {
             byte value;
@@ -288,7 +455,7 @@ public class DES {
      * offset.  If the destination byte array does not have eight bytes
      * starting at offset, the remaining bytes are silently discarded. 
      */
-    private static void getBytesFromLong(byte[] ba, int offset, long l) {
+    static void getBytesFromLong(byte[] ba, int offset, long l) {
         for (int i=7; i>=0; i--) {
             if ((offset+i) < ba.length) {
                 ba[offset+i] = (byte) (l & 0xFF);
@@ -299,6 +466,78 @@ public class DES {
         }
     }
     
+    /**
+     * Read eight bytes starting at the specified offset as a
+     * big-endian 64-bit value.  Unlike getLongFromBytes(), the caller
+     * must guarantee that all eight bytes are present.
+     */
+    static long readLong(byte[] ba, int offset) {
+        return (ba[offset  ]&0xFFL)<<56
+             | (ba[offset+1]&0xFFL)<<48
+             | (ba[offset+2]&0xFFL)<<40
+             | (ba[offset+3]&0xFFL)<<32
+             | (ba[offset+4]&0xFFL)<<24
+             | (ba[offset+5]&0xFFL)<<16
+             | (ba[offset+6]&0xFFL)<<8
+             | (ba[offset+7]&0xFFL);
+    }
+
+    /**
+     * Write a 64-bit value as eight big-endian bytes starting at the
+     * specified offset.  Unlike getBytesFromLong(), the caller must
+     * guarantee that there is room for all eight bytes.
+     */
+    static void writeLong(byte[] ba, int offset, long l) {
+        ba[offset  ] = (byte) (l>>>56);
+        ba[offset+1] = (byte) (l>>>48);
+        ba[offset+2] = (byte) (l>>>40);
+        ba[offset+3] = (byte) (l>>>32);
+        ba[offset+4] = (byte) (l>>>24);
+        ba[offset+5] = (byte) (l>>>16);
+        ba[offset+6] = (byte) (l>>>8);
+        ba[offset+7] = (byte) l;
+    }
+
+    /**
+     * Read the 64-bit block at the specified absolute index of a
+     * buffer, always in big-endian order, regardless of the buffer's
+     * own byte order setting.
+     */
+    static long readLong(ByteBuffer bb, int index) {
+        long l = bb.getLong(index);
+        return (bb.order() == ByteOrder.BIG_ENDIAN) ? l : Long.reverseBytes(l);
+    }
+
+    /**
+     * Write a 64-bit block at the specified absolute index of a
+     * buffer, always in big-endian order, regardless of the buffer's
+     * own byte order setting.
+     */
+    static void writeLong(ByteBuffer bb, int index, long l) {
+        bb.putLong(index, (bb.order() == ByteOrder.BIG_ENDIAN) ? l : Long.reverseBytes(l));
+    }
+
+    /**
+     * Verify that a bulk (multi-block) operation was given a whole
+     * number of blocks.
+     */
+    static void checkBlockLength(int length) {
+        if (length < 0 || (length & 7) != 0) {
+            throw new IllegalArgumentException(
+                "length must be a non-negative multiple of 8: "+length);
+        }
+    }
+
+    /**
+     * Verify that a stream (any number of bytes) operation was not
+     * given a negative length.
+     */
+    static void checkStreamLength(int length) {
+        if (length < 0) {
+            throw new IllegalArgumentException("length must be non-negative: "+length);
+        }
+    }
+    
     //////////////////////////////////////////////////////////////////////
     //
     // Primary DES algorithm methods
@@ -308,7 +547,7 @@ public class DES {
     /**
      * The Feistel function is the heart of DES.
      */
-    private static int feistel(int r, /* 48 bits */ long subkey) {
+    static int feistel(int r, /* 48 bits */ long subkey) {
         // 1. expansion
         long e = E(r);
         // 2. key mixing
@@ -325,12 +564,72 @@ public class DES {
         return P(dst);
     }
     
+    /**
+     * Table-driven equivalent of feistel().  Instead of running the
+     * E and P permutations bit by bit, each 6-bit chunk of the
+     * expansion is cut directly out of a rotated copy of the half
+     * block, and the combined S-box/P-permutation output is looked up
+     * in the SP tables.
+     * 
+     * E selects the overlapping 6-bit windows starting at bit
+     * positions 32, 4, 8, ... 28 (counting from the left, with bit 32
+     * wrapping around to bit 1), so window i is the low six bits of r
+     * rotated right by 27-4i.
+     */
+    static int feistelSP(int r, /* 48 bits */ long subkey) {
+        return SP[0][(Integer.rotateRight(r, 27) ^ (int)(subkey>>>42)) & 0x3F]
+             | SP[1][(Integer.rotateRight(r, 23) ^ (int)(subkey>>>36)) & 0x3F]
+             | SP[2][(Integer.rotateRight(r, 19) ^ (int)(subkey>>>30)) & 0x3F]
+             | SP[3][(Integer.rotateRight(r, 15) ^ (int)(subkey>>>24)) & 0x3F]
+             | SP[4][(Integer.rotateRight(r, 11) ^ (int)(subkey>>>18)) & 0x3F]
+             | SP[5][(Integer.rotateRight(r,  7) ^ (int)(subkey>>>12)) & 0x3F]
+             | SP[6][(Integer.rotateRight(r,  3) ^ (int)(subkey>>> 6)) & 0x3F]
+             | SP[7][(Integer.rotateLeft(r,   1) ^ (int) subkey       ) & 0x3F];
+    }
+    
     /**
      * Generate 16 48-bit subkeys based on the provided 64-bit key
-     * value.
+     * value.  Callers that encrypt more than one block with the same
+     * key should build a DESKey once instead of calling this for
+     * every block.
      */
-    private static long[] createSubkeys(/* 64 bits */ long key) {
+    static long[] createSubkeys(/* 64 bits */ long key) {
         long subkeys[] = new long[16];
+        createSubkeys(key, subkeys, 0);
+        return subkeys; /* 48-bit values */ 
+    }
+    
+    /**
+     * Generate the 16 48-bit subkeys for the provided 64-bit key value
+     * into the supplied array, starting at the specified offset.  This
+     * allows many schedules to be packed into one array.
+     * 
+     * Each subkey is assembled from the KEY_SCHEDULE contributions of
+     * the eight key bytes, which gives the same result as
+     * createSubkeysReference() without any bit-by-bit permutation.
+     */
+    static void createSubkeys(/* 64 bits */ long key, long[] subkeys, int offset) {
+        int t0 = (int) (0*128 + (key>>>57       )) * 16;
+        int t1 = (int) (1*128 + (key>>>49 & 0x7F)) * 16;
+        int t2 = (int) (2*128 + (key>>>41 & 0x7F)) * 16;
+        int t3 = (int) (3*128 + (key>>>33 & 0x7F)) * 16;
+        int t4 = (int) (4*128 + (key>>>25 & 0x7F)) * 16;
+        int t5 = (int) (5*128 + (key>>>17 & 0x7F)) * 16;
+        int t6 = (int) (6*128 + (key>>> 9 & 0x7F)) * 16;
+        int t7 = (int) (7*128 + (key>>> 1 & 0x7F)) * 16;
+        long[] t = KEY_SCHEDULE;
+        for (int i=0; i<16; i++) {
+            subkeys[offset+i] = t[t0+i] | t[t1+i] | t[t2+i] | t[t3+i]
+                              | t[t4+i] | t[t5+i] | t[t6+i] | t[t7+i];
+        }
+    }
+    
+    /**
+     * Reference version of createSubkeys(long, long[], int), which
+     * follows the textbook description of the key schedule: PC1, a
+     * pair of 28-bit rotations per round, and PC2.
+     */
+    static void createSubkeysReference(/* 64 bits */ long key, long[] subkeys, int offset) {
         
         // perform the PC1 permutation
         key = PC1(key);
@@ -359,10 +658,8 @@ public class DES {
             long cd = (c&0xFFFFFFFFL)<<28 | (d&0xFFFFFFFFL);
             
             // perform the PC2 permutation
-            subkeys[i] = PC2(cd);
+            subkeys[offset+i] = PC2(cd);
         }
-        
-        return subkeys; /* 48-bit values */ 
     }
     
     /**
@@ -371,7 +668,75 @@ public class DES {
      */
     public static long encryptBlock(long m, /* 64 bits */ long key) {
         // generate the 16 subkeys
-        long subkeys[] = createSubkeys(key);
+        return encryptBlock(m, new DESKey(key));
+    }
+
+    /**
+     * Encrypt a 64-bit block of plaintext message into a 64-bit
+     * ciphertext, using a previously generated key schedule.
+     * 
+     * This uses the table-driven Feistel function, feistelSP(), and
+     * the delta-swap initial and final permutations.
+     */
+    public static long encryptBlock(long m, DESKey key) {
+        if (DESMetrics.ENABLED) {
+            DESMetrics.blocks(true, 1);
+        }
+        return encryptBlock(m, key.subkeys, 0);
+    }
+    
+    /**
+     * Encrypt a 64-bit block with the 16 subkeys found in the supplied
+     * array at the specified offset.
+     */
+    static long encryptBlock(long m, long[] subkeys, int offset) {
+        // perform the initial permutation
+        long ip = fastIP(m);
+        
+        // split into 32-bit left and right halves.
+        int l = (int) (ip>>32);
+        int r = (int) ip;
+        
+        // perform 16 rounds, two at a time so that the halves trade
+        // places without a temporary.
+        for (int i=offset; i<offset+16; i+=2) {
+            l ^= feistelSP(r, subkeys[i]);
+            r ^= feistelSP(l, subkeys[i+1]);
+        }
+        
+        // reverse the two 32-bit segments and apply the final
+        // permutation
+        return fastFP((r&0xFFFFFFFFL)<<32 | (l&0xFFFFFFFFL));
+    }
+    
+    /**
+     * Encrypt a 64-bit block with the 16 subkeys stored as consecutive
+     * longs (in the buffer's byte order) at the specified absolute
+     * index of a buffer.  Only absolute reads are used, so the buffer
+     * may be shared between threads.
+     */
+    static long encryptBlock(long m, ByteBuffer subkeys, int index) {
+        long ip = fastIP(m);
+        int l = (int) (ip>>32);
+        int r = (int) ip;
+        for (int i=index; i<index+128; i+=16) {
+            l ^= feistelSP(r, subkeys.getLong(i));
+            r ^= feistelSP(l, subkeys.getLong(i+8));
+        }
+        return fastFP((r&0xFFFFFFFFL)<<32 | (l&0xFFFFFFFFL));
+    }
+    
+    /**
+     * Encrypt a 64-bit block of plaintext message into a 64-bit
+     * ciphertext, using a previously generated key schedule.
+     * 
+     * This is the reference implementation, which follows the
+     * textbook description of the algorithm step by step, using the
+     * bit-at-a-time feistel() function.  It is much slower than
+     * encryptBlock(), but is useful for checking its results.
+     */
+    public static long encryptBlockReference(long m, DESKey key) {
+        long subkeys[] = key.subkeys;
 
         // perform the initial permutation
         long ip = IP(m);
@@ -400,6 +765,31 @@ public class DES {
         return fp;
     }
     
+    /**
+     * Decrypt a 64-bit block of ciphertext into a 64-bit plaintext
+     * message, using a previously generated key schedule.
+     * 
+     * This is the reference implementation; see
+     * encryptBlockReference().  Decryption is the same process with
+     * the subkeys applied in reverse order.
+     */
+    public static long decryptBlockReference(long c, DESKey key) {
+        long subkeys[] = key.subkeys;
+        
+        long ip = IP(c);
+        int l = (int) (ip>>32);
+        int r = (int) (ip&0xFFFFFFFFL);
+        
+        for (int i=15; i>=0; i--) {
+            int previous_l = l;
+            l = r;
+            r = previous_l ^ feistel(r, subkeys[i]);
+        }
+        
+        long rl = (r&0xFFFFFFFFL)<<32 | (l&0xFFFFFFFFL);
+        return FP(rl);
+    }
+    
     /**
      * Wrapper around encryptBlock() that allows arguments to be byte
      * arrays instead of longs.
@@ -410,13 +800,116 @@ public class DES {
         byte[] ciphertext,
         int ciphertextOffset,
         byte[] key
+    ) {
+        encryptBlock(message, messageOffset, ciphertext, ciphertextOffset, new DESKey(key));
+    }
+    
+    /**
+     * Wrapper around encryptBlock() that allows the message and
+     * ciphertext to be byte arrays instead of longs.
+     */
+    public static void encryptBlock(
+        byte[] message,
+        int messageOffset,
+        byte[] ciphertext,
+        int ciphertextOffset,
+        DESKey key
     ) {
         long m = getLongFromBytes(message, messageOffset);
-        long k = getLongFromBytes(key, 0);
-        long c = encryptBlock(m, k);
+        long c = encryptBlock(m, key);
         getBytesFromLong(ciphertext, ciphertextOffset, c);
     }
     
+    /**
+     * Decrypt a 64-bit block of ciphertext into a 64-bit plaintext
+     * message.
+     */
+    public static long decryptBlock(long c, /* 64 bits */ long key) {
+        return decryptBlock(c, new DESKey(key));
+    }
+
+    /**
+     * Decrypt a 64-bit block of ciphertext into a 64-bit plaintext
+     * message, using a previously generated key schedule.
+     * 
+     * DES decryption is the same algorithm as encryption, with the
+     * subkeys applied in the reverse order.
+     */
+    public static long decryptBlock(long c, DESKey key) {
+        if (DESMetrics.ENABLED) {
+            DESMetrics.blocks(false, 1);
+        }
+        return decryptBlock(c, key.subkeys, 0);
+    }
+    
+    /**
+     * Decrypt a 64-bit block with the 16 subkeys found in the supplied
+     * array at the specified offset.
+     */
+    static long decryptBlock(long c, long[] subkeys, int offset) {
+        // perform the initial permutation
+        long ip = fastIP(c);
+        
+        // split into 32-bit left and right halves.
+        int l = (int) (ip>>32);
+        int r = (int) ip;
+        
+        // perform 16 rounds, walking the subkeys backwards.
+        for (int i=offset+15; i>offset; i-=2) {
+            l ^= feistelSP(r, subkeys[i]);
+            r ^= feistelSP(l, subkeys[i-1]);
+        }
+        
+        // reverse the two 32-bit segments and apply the final
+        // permutation
+        return fastFP((r&0xFFFFFFFFL)<<32 | (l&0xFFFFFFFFL));
+    }
+    
+    /**
+     * Decrypt a 64-bit block with the 16 subkeys stored in a buffer;
+     * see encryptBlock(long, ByteBuffer, int).
+     */
+    static long decryptBlock(long c, ByteBuffer subkeys, int index) {
+        long ip = fastIP(c);
+        int l = (int) (ip>>32);
+        int r = (int) ip;
+        for (int i=index+120; i>index; i-=16) {
+            l ^= feistelSP(r, subkeys.getLong(i));
+            r ^= feistelSP(l, subkeys.getLong(i-8));
+        }
+        return fastFP((r&0xFFFFFFFFL)<<32 | (l&0xFFFFFFFFL));
+    }
+    
+    /**
+     * Wrapper around decryptBlock() that allows arguments to be byte
+     * arrays instead of longs.
+     */
+    public static void decryptBlock(
+        byte[] ciphertext,
+        int ciphertextOffset,
+        byte[] message,
+        int messageOffset,
+        byte[] key
+    ) {
+        decryptBlock(ciphertext, ciphertextOffset, message, messageOffset, new DESKey(key));
+    }
+    
+    /**
+     * Wrapper around decryptBlock() that allows the ciphertext and
+     * message to be byte arrays instead of longs.
+     */
+    public static void decryptBlock(
+        byte[] ciphertext,
+        int ciphertextOffset,
+        byte[] message,
+        int messageOffset,
+        DESKey key
+    ) {
+        long c = getLongFromBytes(ciphertext, ciphertextOffset);
+        long m = decryptBlock(c, key);
+        getBytesFromLong(message, messageOffset, m);
+    }
+    
     //////////////////////////////////////////////////////////////////////
     //
     // High-level interface to the DES algorithm
@@ -433,16 +926,97 @@ public class DES {
      * the same key.
      */
     public static byte[] encrypt(byte[] message, byte[] key) {
+        return encrypt(message, new DESKey(key));
+    }
+    
+    /**
+     * Encrypt the supplied message with the provided key schedule, and
+     * return the ciphertext.  If the message is not a multiple of 64
+     * bits (8 bytes), then it is padded with zeros.
+     * 
+     * This method uses the Electronic Code Book (ECB) mode of
+     * operation -- each 64-bit block is encrypted individually with
+     * the same key.
+     */
+    public static byte[] encrypt(byte[] message, DESKey key) {
         byte[] ciphertext = new byte[message.length];
 
-        // encrypt each 8-byte (64-bit) block of the message.
-        for (int i=0; i<message.length; i+=8) {
-            encryptBlock(message, i, ciphertext, i, key);
+        // encrypt the whole 8-byte (64-bit) blocks of the message,
+        // then the zero-padded remainder (if any).
+        int whole = message.length & ~7;
+        encrypt(message, 0, whole, ciphertext, 0, key);
+        if (whole < message.length) {
+            encryptBlock(message, whole, ciphertext, whole, key);
         }
         
         return ciphertext;
     }
     
+    /**
+     * Encrypt length bytes of the input array, starting at inOffset,
+     * into the output array starting at outOffset.  The length must
+     * be a multiple of 64 bits (8 bytes).  The input and output may
+     * be the same region of the same array, to encrypt in place.
+     * 
+     * This method uses the Electronic Code Book (ECB) mode of
+     * operation, and does not allocate any memory.
+     */
+    public static void encrypt(
+        byte[] in,
+        int inOffset,
+        int length,
+        byte[] out,
+        int outOffset,
+        DESKey key
+    ) {
+        checkBlockLength(length);
+        long start = DESMetrics.start();
+        long[] subkeys = key.subkeys;
+        for (int i=0; i<length; i+=8) {
+            writeLong(out, outOffset+i, encryptBlock(readLong(in, inOffset+i), subkeys, 0));
+        }
+        if (DESMetrics.ENABLED) {
+            DESMetrics.record(true, length/8, length, start);
+        }
+    }
+    
+    /**
+     * Encrypt all of the remaining bytes of the source buffer into the
+     * destination buffer, advancing the position of both.  The number
+     * of remaining source bytes must be a multiple of 64 bits (8
+     * bytes).  Blocks are always read and written in big-endian order.
+     * Heap and direct buffers are both supported.  To encrypt in
+     * place, the source and destination may be the same region of the
+     * same memory (for example, two duplicates of one buffer with the
+     * same position); other overlapping regions are not supported, and
+     * give corrupt output.
+     * 
+     * This method uses the Electronic Code Book (ECB) mode of
+     * operation, and does not allocate any memory.
+     * 
+     * @throws BufferOverflowException if the destination does not
+     *     have enough space remaining; neither buffer is modified.
+     */
+    public static void encrypt(ByteBuffer src, ByteBuffer dst, DESKey key) {
+        int length = src.remaining();
+        checkBlockLength(length);
+        if (dst.remaining() < length) {
+            throw new BufferOverflowException();
+        }
+        long start = DESMetrics.start();
+        long[] subkeys = key.subkeys;
+        int in = src.position();
+        int out = dst.position();
+        for (int i=0; i<length; i+=8) {
+            writeLong(dst, out+i, encryptBlock(readLong(src, in+i), subkeys, 0));
+        }
+        src.position(in+length);
+        dst.position(out+length);
+        if (DESMetrics.ENABLED) {
+            DESMetrics.record(true, length/8, length, start);
+        }
+    }
+    
     /**
      * Encrypt the supplied message with the provided key, and return
      * the ciphertext.  If the message is not a multiple of 64 bits
@@ -455,6 +1029,12 @@ public class DES {
      * The provided password is converted into a key with the bits
      * of each byte reversed, to generate a stronger key.
      * See passwordToKey() for more details.
+     * 
+     * The password is encoded as ISO-8859-1, not with the platform
+     * charset (as earlier versions did, which gave the same key only
+     * for ASCII passwords), so a password containing characters above
+     * U+00FF in its first eight is rejected with an
+     * IllegalArgumentException.
      */
     public static byte[] encrypt(byte[] challenge, String password) {
         return encrypt(challenge, passwordToKey(password));
@@ -480,27 +1060,107 @@ public class DES {
      *     - http://www.vidarholen.net/contents/junk/vnc.html
      */
     private static byte[] passwordToKey(String password) {
-        byte[] pwbytes = password.getBytes();
+        // each char is encoded as ISO-8859-1, rather than with the
+        // platform charset, so that every caller derives the same
+        // key; VNCAuth does the mapping, and rejects characters
+        // above U+00FF.
         byte[] key = new byte[8];
-        for (int i=0; i<8; i++) {
-            if (i < pwbytes.length) {
-                byte b = pwbytes[i];
-                // flip the byte
-                byte b2 = 0;
-                for (int j=0; j<8; j++) {
-                    b2<<=1;
-                    b2 |= (b&0x01);
-                    b>>>=1;
-                }
-                key[i] = b2;
-            } else {
-                key[i] = 0;
-            }
-        }
+        writeLong(key, 0, VNCAuth.passwordToKey(password));
         return key;
     }
     
-    /* Decrypting is left as an exercise for the reader. ;) */
+    /**
+     * Decrypt the supplied ciphertext with the provided key, and
+     * return the message.  The ciphertext should be a multiple of 64
+     * bits (8 bytes); a partial final block is padded with zeros.
+     * 
+     * This method uses the Electronic Code Book (ECB) mode of
+     * operation, and is the inverse of encrypt(byte[], byte[]).
+     */
+    public static byte[] decrypt(byte[] ciphertext, byte[] key) {
+        return decrypt(ciphertext, new DESKey(key));
+    }
+    
+    /**
+     * Decrypt the supplied ciphertext with the provided key schedule,
+     * and return the message.  The ciphertext should be a multiple of
+     * 64 bits (8 bytes); a partial final block is padded with zeros.
+     * 
+     * This method uses the Electronic Code Book (ECB) mode of
+     * operation, and is the inverse of encrypt(byte[], DESKey).
+     */
+    public static byte[] decrypt(byte[] ciphertext, DESKey key) {
+        byte[] message = new byte[ciphertext.length];
+
+        // decrypt the whole 8-byte (64-bit) blocks of the ciphertext,
+        // then the zero-padded remainder (if any).
+        int whole = ciphertext.length & ~7;
+        decrypt(ciphertext, 0, whole, message, 0, key);
+        if (whole < ciphertext.length) {
+            decryptBlock(ciphertext, whole, message, whole, key);
+        }
+        
+        return message;
+    }
+    
+    /**
+     * Decrypt length bytes of the input array, starting at inOffset,
+     * into the output array starting at outOffset.  This is the
+     * inverse of encrypt(byte[], int, int, byte[], int, DESKey), with
+     * the same requirements.
+     */
+    public static void decrypt(
+        byte[] in,
+        int inOffset,
+        int length,
+        byte[] out,
+        int outOffset,
+        DESKey key
+    ) {
+        checkBlockLength(length);
+        long start = DESMetrics.start();
+        long[] subkeys = key.subkeys;
+        for (int i=0; i<length; i+=8) {
+            writeLong(out, outOffset+i, decryptBlock(readLong(in, inOffset+i), subkeys, 0));
+        }
+        if (DESMetrics.ENABLED) {
+            DESMetrics.record(false, length/8, length, start);
+        }
+    }
+    
+    /**
+     * Decrypt all of the remaining bytes of the source buffer into the
+     * destination buffer, advancing the position of both.  This is the
+     * inverse of encrypt(ByteBuffer, ByteBuffer, DESKey), with the same
+     * requirements.
+     */
+    public static void decrypt(ByteBuffer src, ByteBuffer dst, DESKey key) {
+        int length = src.remaining();
+        checkBlockLength(length);
+        if (dst.remaining() < length) {
+            throw new BufferOverflowException();
+        }
+        long start = DESMetrics.start();
+        long[] subkeys = key.subkeys;
+        int in = src.position();
+        int out = dst.position();
+        for (int i=0; i<length; i+=8) {
+            writeLong(dst, out+i, decryptBlock(readLong(src, in+i), subkeys, 0));
+        }
+        src.position(in+length);
+        dst.position(out+length);
+        if (DESMetrics.ENABLED) {
+            DESMetrics.record(false, length/8, length, start);
+        }
+    }
+    
+    /**
+     * Decrypt the supplied ciphertext with a key derived from the
+     * provided password, as for encrypt(byte[], String).
+     */
+    public static byte[] decrypt(byte[] response, String password) {
+        return decrypt(response, passwordToKey(password));
+    }
     
     //////////////////////////////////////////////////////////////////////
     //
@@ -522,7 +1182,7 @@ public class DES {
             return 0;
         }
     }
-    private static byte[] parseBytes(String s) {
+    static byte[] parseBytes(String s) {
         s = s.replace(" ", "");
         byte[] ba = new byte[s.length()/2];
         if (s.length()%2 > 0) { s = s+'0'; }
@@ -531,11 +1191,19 @@ public class DES {
         }
         return ba;
     }
-    private static String hex(byte[] bytes) {
-        StringBuilder sb = new StringBuilder();
-        for (int i=0; i<bytes.length; i++) {
-            sb.append(String.format("%02X ",bytes[i]));
-        }
+    private static byte[] encryptReference(byte[] message, DESKey key) {
+        byte[] ciphertext = new byte[message.length];
+        for (int i=0; i<message.length; i+=8) {
+            long m = getLongFromBytes(message, i);
+            getBytesFromLong(ciphertext, i, encryptBlockReference(m, key));
+        }
+        return ciphertext;
+    }
+    static String hex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder();
+        for (int i=0; i<bytes.length; i++) {
+            sb.append(String.format("%02X ",bytes[i]));
+        }
         return sb.toString();
     }
 
@@ -544,6 +1212,17 @@ public class DES {
     }
     
     private static int testCount = 0;
+    private static int failCount = 0;
+    
+    /**
+     * Count a test result, and return the word to print for it.
+     */
+    private static String verdict(boolean result) {
+        if (!result) {
+            failCount++;
+        }
+        return result ? "PASS" : "FAIL";
+    }
     public static boolean test(byte[] message, byte[] expected, byte[] key) {
         System.out.println("Test #"+(++testCount)+":");
         System.out.println("\tmessage:  "+hex(message));
@@ -551,8 +1230,1262 @@ public class DES {
         System.out.println("\texpected: "+hex(expected));
         byte[] received = encrypt(message, key);
         System.out.println("\treceived: "+hex(received));
-        boolean result = Arrays.equals(expected, received);
-        System.out.println("\tverdict: "+(result?"PASS":"FAIL"));
+        byte[] reference = encryptReference(message, new DESKey(key));
+        System.out.println("\treference: "+hex(reference));
+        byte[] decrypted = decrypt(received, key);
+        System.out.println("\tdecrypted: "+hex(decrypted));
+        boolean result = Arrays.equals(expected, received)
+            && Arrays.equals(expected, reference)
+            && Arrays.equals(message, decrypted);
+        System.out.println("\tverdict: "+verdict(result));
+        return result;
+    }
+    
+    /**
+     * Check the delta-swap permutations against the table-based ones
+     * for every single-bit input.  Since both are bit permutations,
+     * agreement on all 64 unit vectors implies agreement everywhere.
+     */
+    public static boolean testPermutations() {
+        System.out.println("Test #"+(++testCount)+": IP/FP delta swaps");
+        boolean result = true;
+        for (int i=0; i<64; i++) {
+            long bit = 1L<<i;
+            if (fastIP(bit) != IP(bit)) {
+                System.out.println("\tIP mismatch at bit "+i);
+                result = false;
+            }
+            if (fastFP(bit) != FP(bit)) {
+                System.out.println("\tFP mismatch at bit "+i);
+                result = false;
+            }
+        }
+        System.out.println("\tverdict: "+verdict(result));
+        return result;
+    }
+    
+    /**
+     * Run the offset/length and ByteBuffer bulk methods over the
+     * supplied message, in place and into heap and direct buffers,
+     * with both byte orders.
+     */
+    public static boolean testBuffers(byte[] message, byte[] expected, byte[] key) {
+        System.out.println("Test #"+(++testCount)+": bulk buffers");
+        DESKey k = new DESKey(key);
+        boolean result = true;
+
+        // in-place, at an offset
+        byte[] array = new byte[message.length+3];
+        System.arraycopy(message, 0, array, 3, message.length);
+        encrypt(array, 3, message.length, array, 3, k);
+        result &= Arrays.equals(expected, Arrays.copyOfRange(array, 3, array.length));
+        decrypt(array, 3, message.length, array, 3, k);
+        result &= Arrays.equals(message, Arrays.copyOfRange(array, 3, array.length));
+
+        // heap to direct, and direct to heap
+        ByteOrder[] orders = { ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN };
+        for (ByteOrder order : orders) {
+            ByteBuffer src = ByteBuffer.wrap(message).order(order);
+            ByteBuffer ct = ByteBuffer.allocateDirect(message.length).order(order);
+            ByteBuffer pt = ByteBuffer.allocate(message.length).order(order);
+            encrypt(src, ct, k);
+            ct.flip();
+            byte[] received = new byte[message.length];
+            ct.duplicate().get(received);
+            result &= Arrays.equals(expected, received);
+            decrypt(ct, pt, k);
+            result &= Arrays.equals(message, pt.array());
+            result &= !src.hasRemaining() && !ct.hasRemaining() && !pt.hasRemaining();
+        }
+        System.out.println("\tverdict: "+verdict(result));
+        return result;
+    }
+    
+    /**
+     * Create a DESMode for testModes() by name.
+     */
+    private static DESMode mode(String name, DESKey key, long iv, boolean encrypt) {
+        if (name.equals("ECB")) return DESMode.ecb(key, encrypt);
+        if (name.equals("CBC")) return DESMode.cbc(key, iv, encrypt);
+        if (name.equals("CFB")) return DESMode.cfb(key, iv, encrypt);
+        if (name.equals("OFB")) return DESMode.ofb(key, iv, encrypt);
+        if (name.equals("CTR")) return DESMode.ctr(key, iv, encrypt);
+        throw new IllegalArgumentException(name);
+    }
+    
+    /**
+     * Known-answer test for a mode of operation.  The message is fed
+     * to the mode in uneven chunks, to exercise the handling of
+     * partial blocks, and then decrypted again through a ByteBuffer.
+     */
+    public static boolean testMode(String name, byte[] message, byte[] expected, byte[] key, long iv) {
+        System.out.println("Test #"+(++testCount)+": "+name);
+        DESKey k = new DESKey(key);
+        
+        byte[] received = new byte[message.length];
+        DESMode enc = mode(name, k, iv, true);
+        int[] chunks = { 1, 5, 11 };
+        int in = 0, out = 0;
+        for (int i=0; in<message.length; i++) {
+            int n = Math.min(i<chunks.length ? chunks[i] : message.length, message.length-in);
+            out += enc.update(message, in, n, received, out);
+            in += n;
+        }
+        System.out.println("\texpected: "+hex(expected));
+        System.out.println("\treceived: "+hex(received));
+        
+        ByteBuffer decrypted = ByteBuffer.allocateDirect(message.length);
+        mode(name, k, iv, false).update(ByteBuffer.wrap(received), decrypted);
+        byte[] roundTrip = new byte[message.length];
+        decrypted.flip();
+        decrypted.get(roundTrip);
+        
+        boolean result = (out == message.length)
+            && Arrays.equals(expected, received)
+            && Arrays.equals(message, roundTrip);
+        System.out.println("\tverdict: "+verdict(result));
+        return result;
+    }
+    
+    /**
+     * Check that a mode works with the input and output in the same
+     * region of the same array (or buffer), including when a partial
+     * block from an earlier update is pending.  Each update writes its
+     * output over its own input; the output is copied aside and
+     * compared with an out-of-place encryption.  (The output of an
+     * update may run up to 7 bytes past its input, so each update
+     * gets a fresh copy of the message, with room to spare.)
+     */
+    public static boolean testInPlace(String name) {
+        System.out.println("Test #"+(++testCount)+": "+name+" in place");
+        DESKey k = new DESKey(0x0123456789abcdefL);
+        long iv = 0x1234567890abcdefL;
+        byte[] message = new byte[64];
+        new Random(6).nextBytes(message);
+        byte[] expected = new byte[message.length];
+        mode(name, k, iv, true).update(message, 0, message.length, expected, 0);
+
+        boolean result = true;
+        for (int buffers=0; buffers<2; buffers++) {
+            for (int first=0; first<8; first++) {
+                int[] chunks = { first, 16, 19, 9, message.length-first-44 };
+                DESMode enc = mode(name, k, iv, true);
+                byte[] buf = new byte[message.length+8];
+                byte[] received = new byte[message.length];
+                int in = 0, out = 0;
+                for (int n : chunks) {
+                    int produced;
+                    System.arraycopy(message, 0, buf, 0, message.length);
+                    if (buffers == 0) {
+                        produced = enc.update(buf, in, n, buf, in);
+                    } else {
+                        ByteBuffer src = ByteBuffer.wrap(buf, in, n);
+                        ByteBuffer dst = ByteBuffer.wrap(buf, in, buf.length-in);
+                        produced = enc.update(src, dst);
+                    }
+                    System.arraycopy(buf, in, received, out, produced);
+                    in += n;
+                    out += produced;
+                }
+                if (out != message.length || !Arrays.equals(expected, received)) {
+                    System.out.println("\t"+(buffers == 0 ? "byte[]" : "ByteBuffer")
+                        +" mismatch after "+first+" bytes: "+hex(received));
+                    result = false;
+                }
+            }
+        }
+        
+        // a negative length is rejected without disturbing the state
+        DESMode enc = mode(name, k, iv, true);
+        byte[] received = new byte[message.length];
+        int out = enc.update(message, 0, 3, received, 0);
+        try {
+            enc.update(message, 3, -1, received, out);
+            result = false;
+        } catch (IllegalArgumentException e) {
+        }
+        out += enc.update(message, 3, message.length-3, received, out);
+        result &= (out == message.length) && Arrays.equals(expected, received);
+        System.out.println("\tverdict: "+verdict(result));
+        return result;
+    }
+
+    /**
+     * Check that DESParallel produces the same output as the
+     * sequential methods, using a tiny split threshold so that even a
+     * small payload is spread across several threads.
+     */
+    public static boolean testParallel() {
+        System.out.println("Test #"+(++testCount)+": parallel bulk");
+        Random random = new Random(1);
+        byte[] message = new byte[8*1001];
+        random.nextBytes(message);
+        DESKey key = new DESKey(random.nextLong());
+        long counter = random.nextLong();
+        
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            DESParallel parallel = new DESParallel(executor, 4, 64);
+            boolean result = true;
+            
+            byte[] expected = new byte[message.length];
+            byte[] received = new byte[message.length];
+            encrypt(message, 0, message.length, expected, 0, key);
+            parallel.encrypt(message, 0, message.length, received, 0, key);
+            result &= Arrays.equals(expected, received);
+            parallel.decrypt(received, 0, received.length, received, 0, key);
+            result &= Arrays.equals(message, received);
+            
+            ByteBuffer dst = ByteBuffer.allocateDirect(message.length);
+            parallel.encrypt(ByteBuffer.wrap(message), dst, key);
+            dst.flip();
+            dst.get(received);
+            result &= Arrays.equals(expected, received);
+            
+            // CTR, with a length that isn't a multiple of the block size
+            int length = message.length - 3;
+            expected = new byte[length];
+            received = new byte[length];
+            DESMode.ctr(key, counter, true).update(message, 0, length, expected, 0);
+            parallel.ctr(message, 0, length, received, 0, key, counter);
+            result &= Arrays.equals(expected, received);
+            dst.clear();
+            parallel.ctr(ByteBuffer.wrap(message, 0, length), dst, key, counter);
+            dst.flip();
+            dst.get(received);
+            result &= Arrays.equals(expected, received);
+            
+            try {
+                parallel.ctr(message, 0, -8, received, 0, key, counter);
+                result = false;
+            } catch (IllegalArgumentException e) {
+            }
+            
+            // a failure on the calling thread must still wait for the
+            // other chunks to finish before it is rethrown
+            final DESKey inner = key;
+            final long poison = readLong(message, 0);
+            final RuntimeException failure = new IllegalStateException("poison block");
+            DESBlockCipher failing = new DESBlockCipher() {
+                public long encryptBlock(long block) {
+                    if (block == poison) {
+                        throw failure;
+                    }
+                    return DES.encryptBlock(block, inner);
+                }
+                public long decryptBlock(long block) {
+                    return DES.decryptBlock(block, inner);
+                }
+            };
+            expected = new byte[message.length];
+            received = new byte[message.length];
+            encrypt(message, 0, message.length, expected, 0, key);
+            try {
+                parallel.encrypt(message, 0, message.length, received, 0, failing);
+                result = false;
+            } catch (IllegalStateException e) {
+                result &= (e == failure);
+            }
+            // only the calling thread's chunk (the first quarter) is missing
+            int quarter = message.length / 4 & ~7;
+            result &= Arrays.equals(
+                Arrays.copyOfRange(expected, quarter + 8, message.length),
+                Arrays.copyOfRange(received, quarter + 8, message.length));
+            
+            // an executor which rejects the second chunk: the first must
+            // be finished when the rejection is rethrown
+            ExecutorService rejecting = new AbstractExecutorService() {
+                private int submitted = 0;
+                public void execute(Runnable task) {
+                    if (++submitted > 1) {
+                        throw new RejectedExecutionException("full");
+                    }
+                    new Thread(task).start();
+                }
+                public void shutdown() {
+                }
+                public List<Runnable> shutdownNow() {
+                    return new ArrayList<Runnable>();
+                }
+                public boolean isShutdown() {
+                    return false;
+                }
+                public boolean isTerminated() {
+                    return false;
+                }
+                public boolean awaitTermination(long timeout, TimeUnit unit) {
+                    return false;
+                }
+            };
+            received = new byte[message.length];
+            try {
+                new DESParallel(rejecting, 4, 64).encrypt(message, 0, message.length, received, 0, key);
+                result = false;
+            } catch (RejectedExecutionException e) {
+                result &= Arrays.equals(
+                    Arrays.copyOfRange(expected, quarter + 8, 2*(quarter + 8)),
+                    Arrays.copyOfRange(received, quarter + 8, 2*(quarter + 8)));
+            }
+            
+            System.out.println("\tverdict: "+verdict(result));
+            return result;
+        } finally {
+            executor.shutdown();
+        }
+    }
+    
+    /**
+     * Check every lane of the bitsliced engine against encryptBlock(),
+     * with a batch size that leaves the last group of 64 partially
+     * filled.
+     */
+    public static boolean testBitslice() {
+        System.out.println("Test #"+(++testCount)+": bitsliced engine");
+        Random random = new Random(2);
+        int n = 200;
+        long[] blocks = new long[n];
+        long[] keys = new long[n];
+        for (int i=0; i<n; i++) {
+            blocks[i] = random.nextLong();
+            keys[i] = random.nextLong();
+        }
+        long key = keys[0];
+        
+        long[] out = new long[n];
+        long[] single = new long[n];
+        DESBitslice.encrypt(blocks, keys, out);
+        DESBitslice.encrypt(blocks, key, single);
+        boolean result = true;
+        for (int i=0; i<n; i++) {
+            result &= (out[i] == encryptBlock(blocks[i], keys[i]));
+            result &= (single[i] == encryptBlock(blocks[i], key));
+        }
+        DESBitslice.decrypt(out, keys, out);
+        DESBitslice.decrypt(single, key, single);
+        result &= Arrays.equals(blocks, out) && Arrays.equals(blocks, single);
+        System.out.println("\tverdict: "+verdict(result));
+        return result;
+    }
+    
+    /**
+     * Check the multi-key batch API against encryptBlock(), with a mix
+     * of cached and derived schedules, and a batch size that leaves
+     * the last group of 64 partially filled.
+     */
+    public static boolean testBatch() {
+        System.out.println("Test #"+(++testCount)+": multi-key batch");
+        Random random = new Random(3);
+        int n = 150;
+        long[] blocks = new long[n];
+        long[] keys = new long[n];
+        DESKey[] schedules = new DESKey[n];
+        for (int i=0; i<n; i++) {
+            blocks[i] = random.nextLong();
+            keys[i] = random.nextLong();
+            if (i % 3 == 0 || i < 64) {
+                schedules[i] = new DESKey(keys[i]);
+            }
+        }
+        // the second group mixes cached and derived schedules; a
+        // cached schedule wins over a (wrong) key value.
+        keys[0] = ~keys[0];
+        
+        long[] out = new long[n];
+        long[] derived = new long[n];
+        DESBatch.encrypt(blocks, keys, schedules, out);
+        keys[0] = ~keys[0];
+        DESBatch.encrypt(blocks, keys, derived);
+        boolean result = true;
+        for (int i=0; i<n; i++) {
+            long expected = encryptBlock(blocks[i], keys[i]);
+            result &= (out[i] == expected) && (derived[i] == expected);
+        }
+        DESBatch.decrypt(out, keys, schedules, out);
+        DESBatch.decrypt(derived, keys, derived);
+        result &= Arrays.equals(blocks, out) && Arrays.equals(blocks, derived);
+        System.out.println("\tverdict: "+verdict(result));
+        return result;
+    }
+    
+    /**
+     * Check every lane count of the multi-lane engine, and the Vector
+     * API backend if it can be loaded, against the sequential range
+     * methods, with a length that exercises each of the narrower
+     * tails.
+     */
+    public static boolean testLanes() {
+        System.out.println("Test #"+(++testCount)+": multi-lane engine");
+        Random random = new Random(4);
+        DESKey key = new DESKey(random.nextLong());
+        byte[] message = new byte[8*(64+15)];
+        random.nextBytes(message);
+        byte[] expected = new byte[message.length];
+        encrypt(message, 0, message.length, expected, 0, key);
+        
+        boolean result = true;
+        for (int lanes : DESLanes.getSupportedLanes()) {
+            DESLanes engine = new DESLanes(lanes);
+            byte[] received = new byte[message.length];
+            engine.encrypt(message, 0, message.length, received, 0, key);
+            boolean pass = Arrays.equals(expected, received);
+            engine.decrypt(received, 0, received.length, received, 0, key);
+            pass &= Arrays.equals(message, received);
+            System.out.println("\t"+lanes+" lanes: "+(pass?"ok":"MISMATCH"));
+            result &= pass;
+        }
+        
+        // the Vector API backend, at the preferred size and each fixed
+        // size; the build sets des.test.vector, so that it must load.
+        for (int bits : new int[] { 0, 128, 256, 512 }) {
+            String label = (bits == 0) ? "preferred vector" : "vector"+bits;
+            DESEngine engine = DESLanes.loadVector(bits);
+            if (engine == null) {
+                boolean required = Boolean.getBoolean("des.test.vector");
+                System.out.println("\t"+label+": not available"+(required?" (REQUIRED)":""));
+                result &= !required;
+                continue;
+            }
+            byte[] received = new byte[message.length];
+            engine.encrypt(message, 0, message.length, received, 0, key);
+            boolean pass = Arrays.equals(expected, received);
+            engine.decrypt(received, 0, received.length, received, 0, key);
+            pass &= Arrays.equals(message, received);
+            System.out.println("\t"+label+" ("+engine.getName()+"): "+(pass?"ok":"MISMATCH"));
+            result &= pass;
+        }
+        
+        // an invalid des.lanes value falls back to 4 lanes
+        result &= (DESLanes.parseDefault(null).getLanes() == 4);
+        result &= (DESLanes.parseDefault("8").getLanes() == 8);
+        result &= (DESLanes.parseDefault("vector256").getLanes() == 4);
+        result &= (DESLanes.parseDefault("3").getLanes() == 4);
+        result &= (DESLanes.parseDefault("many").getLanes() == 4);
+        System.out.println("\tverdict: "+verdict(result));
+        return result;
+    }
+    
+    /**
+     * Run the key search over a few work units around known keys: a
+     * plain known-plaintext search that is interrupted and resumed
+     * from a checkpoint, a search using the complementation property,
+     * and a search for the key behind the recorded VNC handshake.
+     */
+    public static boolean testKeySearch(byte[] challenge, byte[] response, String password) {
+        System.out.println("Test #"+(++testCount)+": key search");
+        long mask = 0xFEFEFEFEFEFEFEFEL;
+        Random random = new Random(5);
+        long key = random.nextLong() & mask;
+        long p = random.nextLong();
+        long c = encryptBlock(p, key);
+        long unit = DESKeySearch.unitOf(key);
+        boolean result = true;
+        
+        File checkpoint = null;
+        try {
+            checkpoint = File.createTempFile("keysearch", ".txt");
+            checkpoint.delete();
+            DESKeySearch search = DESKeySearch.knownPlaintext(p, c);
+            long first = search.search(unit-1, unit, 2, checkpoint);
+            result &= (first == -1) && (search.getLowestIncompleteUnit() == unit);
+            search = DESKeySearch.knownPlaintext(p, c);
+            long found = search.search(unit-1, unit+1, 2, checkpoint);
+            System.out.println("\tknown plaintext: "+Long.toHexString(found)
+                +String.format(", %.0f keys/s", search.getKeysPerSecond()));
+            result &= (found == key) && (search.getKeysTested() <= 1L << DESKeySearch.UNIT_BITS);
+        } catch (IOException e) {
+            System.out.println("\t"+e);
+            result = false;
+        } finally {
+            if (checkpoint != null) {
+                checkpoint.delete();
+            }
+        }
+        
+        // ~key is the one in the lower half of the keyspace
+        long complementKey = ~key & mask;
+        long c2 = encryptBlock(~p, key);
+        long half = Math.min(unit, DESKeySearch.unitOf(complementKey));
+        DESKeySearch search = DESKeySearch.knownPlaintext(p, c, c2);
+        try {
+            long found = search.search(half, half+1, 2, null);
+            System.out.println("\tcomplementation: "+Long.toHexString(found));
+            result &= (found == key);
+            
+            long vncKey = VNCAuth.passwordToKey(password) & mask;
+            long vncUnit = DESKeySearch.unitOf(vncKey);
+            found = DESKeySearch.vncAuth(challenge, response).search(vncUnit, vncUnit+1, 2, null);
+            System.out.println("\tVNC: "+Long.toHexString(found));
+            result &= (found == vncKey);
+        } catch (IOException e) {
+            System.out.println("\t"+e);
+            result = false;
+        }
+        
+        System.out.println("\tverdict: "+verdict(result));
+        return result;
+    }
+    
+    /**
+     * Check that the generated tables in DESTables match the ones
+     * derived from the standard tables, and time both.
+     */
+    public static boolean testTables() {
+        System.out.println("Test #"+(++testCount)+": generated tables");
+        long t0 = System.nanoTime();
+        int[][] sp = deriveSP();
+        long[] keyBits = deriveKeyBits();
+        long t1 = System.nanoTime();
+        boolean result = Arrays.deepEquals(sp, DESTables.SP);
+        result &= Arrays.equals(keyBits, DESTables.KEY_BITS);
+        System.out.println(String.format("\tderivation: %.2fms", (t1 - t0) / 1e6));
+        if (!result) {
+            System.out.println("\tDESTables is out of date; run DESTableGenerator");
+        }
+        System.out.println("\tverdict: "+verdict(result));
+        return result;
+    }
+    
+    /**
+     * Check the table-driven key schedule against the reference
+     * version, for every single-bit key and a set of random keys.
+     */
+    public static boolean testKeySchedule() {
+        System.out.println("Test #"+(++testCount)+": table-driven key schedule");
+        Random random = new Random(6);
+        long[] expected = new long[16];
+        long[] received = new long[16];
+        boolean result = true;
+        for (int i=0; i<64+10000; i++) {
+            long key = (i < 64) ? 1L << i : random.nextLong();
+            createSubkeysReference(key, expected, 0);
+            createSubkeys(key, received, 0);
+            result &= Arrays.equals(expected, received);
+        }
+        System.out.println("\tverdict: "+verdict(result));
+        return result;
+    }
+    
+    /**
+     * Check the metrics histogram bucketing and the snapshot API.  The
+     * instrumentation itself is only checked when the JVM is run with
+     * -Ddes.metrics=true.
+     */
+    public static boolean testMetrics() {
+        System.out.println("Test #"+(++testCount)+": metrics (enabled="+DESMetrics.ENABLED+")");
+        boolean result = true;
+        
+        // buckets are contiguous, and no wider than 1/16 of their values
+        for (long v=0; v<(1L<<40); v=v*5/4+1) {
+            int b = DESMetrics.bucket(v);
+            long low = DESMetrics.lowerBound(b);
+            long high = DESMetrics.lowerBound(b+1);
+            result &= (low <= v) && (v < high) && (high - low <= Math.max(1, low/16));
+        }
+        result &= (DESMetrics.bucket(Long.MAX_VALUE) == 959);
+        
+        DESMetrics.resetAll();
+        for (int i=1; i<=100; i++) {
+            DESMetrics.record(true, 2, 16, System.nanoTime() - i*1000);
+        }
+        DESMetrics.Snapshot snapshot = DESMetrics.snapshot();
+        result &= (snapshot.getBlocksEncrypted() == 200) && (snapshot.getBytesProcessed() == 1600);
+        result &= (snapshot.getCallCount() == 100);
+        long p50 = snapshot.getLatencyPercentile(50);
+        result &= (p50 >= 50000) && (p50 <= snapshot.getLatencyMax());
+        
+        if (DESMetrics.ENABLED) {
+            DESMetrics.resetAll();
+            DESKey key = new DESKey(0x133457799BBCDFF1L);
+            byte[] buffer = new byte[1000];
+            encrypt(buffer, 0, buffer.length, buffer, 0, key);
+            decrypt(buffer, 0, buffer.length, buffer, 0, key);
+            encryptBlock(0, key);
+            DESMode.ctr(key, 0, true).update(buffer, 0, 20, buffer, 0);
+            VNCAuth auth = new VNCAuth();
+            auth.getKey("mypass");
+            auth.getKey("mypass");
+            snapshot = DESMetrics.snapshot();
+            System.out.println("\t"+snapshot);
+            result &= (snapshot.getBlocksEncrypted() == 125+1+3);
+            result &= (snapshot.getBlocksDecrypted() == 125);
+            result &= (snapshot.getScheduleBuilds() == 2);
+            result &= (snapshot.getScheduleCacheHits() == 1) && (snapshot.getScheduleCacheMisses() == 1);
+            result &= (snapshot.getCallCount() == 3);
+        }
+        DESMetrics.resetAll();
+        
+        System.out.println("\tverdict: "+verdict(result));
+        return result;
+    }
+    
+    /**
+     * ISO/IEC 9797-1 MACs: the ANSI X9.9 CBC-MAC example; a one-block
+     * Retail MAC, which equals two-key Triple-DES encryption; and a
+     * longer message, fed whole, byte by byte, in random pieces and
+     * through a direct ByteBuffer, compared with CBC mode encryption.
+     */
+    public static boolean testMac() {
+        System.out.println("Test #"+(++testCount)+": MAC");
+        boolean result = true;
+        
+        byte[] message = "7654321 Now is the time for ".getBytes();
+        DESMac mac = DESMac.cbcMac(new DESKey(0x0123456789ABCDEFL), DESMac.Padding.METHOD_1);
+        mac.update(message, 0, message.length);
+        long value = mac.doFinal();
+        System.out.println(String.format("\tX9.9 CBC-MAC: %016x", value));
+        result &= ((value >>> 32) == 0xF1D30F68L);
+        
+        Random random = new Random(23);
+        byte[] key = new byte[16];
+        random.nextBytes(key);
+        DESKey k1 = new DESKey(readLong(key, 0));
+        DESKey k2 = new DESKey(readLong(key, 8));
+        long block = random.nextLong();
+        DESMac retail = DESMac.retailMac(key, DESMac.Padding.METHOD_1);
+        byte[] blockBytes = new byte[8];
+        writeLong(blockBytes, 0, block);
+        retail.update(blockBytes, 0, 8);
+        result &= (retail.doFinal() == new TripleDESKey(key).encryptBlock(block));
+        
+        message = new byte[1003];
+        random.nextBytes(message);
+        for (DESMac.Padding padding : DESMac.Padding.values()) {
+            for (int length : new int[] { 0, 7, 8, 1000, 1003 }) {
+                byte[] padded = new byte[Math.max(8, (length + (padding == DESMac.Padding.METHOD_2 ? 8 : 7)) & ~7)];
+                System.arraycopy(message, 0, padded, 0, length);
+                if (padding == DESMac.Padding.METHOD_2) {
+                    padded[length] = (byte) 0x80;
+                }
+                byte[] cbc = new byte[padded.length];
+                DESMode.cbc(k1, 0, true).update(padded, 0, padded.length, cbc, 0);
+                long expected = readLong(cbc, cbc.length - 8);
+                long expectedRetail = k1.encryptBlock(k2.decryptBlock(expected));
+                
+                DESMac m = DESMac.cbcMac(k1, padding);
+                DESMac r = DESMac.retailMac(k1, k2, padding);
+                boolean pass = true;
+                for (int round=0; round<2; round++) {
+                    // whole, then again to check the reset
+                    m.update(message, 0, length);
+                    r.update(message, 0, length);
+                    pass &= (m.doFinal() == expected);
+                    pass &= (r.doFinal() == expectedRetail);
+                }
+                for (int i=0; i<length; i++) {
+                    m.update(message[i]);
+                }
+                pass &= (m.doFinal() == expected);
+                for (int i=0; i<length; ) {
+                    int n = Math.min(length - i, random.nextInt(20));
+                    r.update(message, i, n);
+                    i += n;
+                }
+                pass &= (r.doFinal() == expectedRetail);
+                ByteBuffer direct = ByteBuffer.allocateDirect(length + 3);
+                direct.put(message, 0, length).flip();
+                r.update(direct);
+                pass &= (direct.remaining() == 0);
+                byte[] out = new byte[DESMac.MAC_LENGTH];
+                r.doFinal(out, 0);
+                pass &= (readLong(out, 0) == expectedRetail);
+                DESMac t = DESMac.cbcMac(new TripleDESKey(key), padding);
+                t.update(message, 0, length);
+                byte[] tcbc = new byte[padded.length];
+                DESMode.cbc(new TripleDESKey(key), 0, true).update(padded, 0, padded.length, tcbc, 0);
+                pass &= (t.doFinal() == readLong(tcbc, tcbc.length - 8));
+                if (!pass) {
+                    System.out.println("\tmismatch: "+padding+", "+length+" bytes");
+                }
+                result &= pass;
+            }
+        }
+        System.out.println("\tverdict: "+verdict(result));
+        return result;
+    }
+    
+    /**
+     * Store schedules off-heap, across several small segments, and
+     * compare with DESKey; then save the store, reopen it as a mapped
+     * file, add to it, and reopen it again.
+     */
+    public static boolean testScheduleStore() {
+        System.out.println("Test #"+(++testCount)+": schedule store");
+        Random random = new Random(24);
+        int n = 100;
+        long[] keys = new long[n];
+        long[] blocks = new long[n];
+        for (int i=0; i<n; i++) {
+            keys[i] = random.nextLong();
+            blocks[i] = random.nextLong();
+        }
+        byte[] message = new byte[64];
+        random.nextBytes(message);
+        
+        boolean result = true;
+        File saved = null;
+        File mapped = null;
+        try {
+            DESScheduleStore store = new DESScheduleStore(4);
+            for (int i=0; i<n; i++) {
+                result &= (store.add(keys[i]) == i);
+            }
+            result &= checkScheduleStore(store, keys, blocks, n, message);
+            
+            saved = File.createTempFile("des", ".schedules");
+            store.save(saved);
+            result &= (saved.length() == DESScheduleStore.HEADER_BYTES + n*DESScheduleStore.SCHEDULE_BYTES);
+            DESScheduleStore reopened = DESScheduleStore.open(saved, 3);
+            result &= checkScheduleStore(reopened, keys, blocks, n, message);
+            reopened.close();
+            
+            mapped = File.createTempFile("des", ".schedules");
+            mapped.delete();
+            DESScheduleStore persistent = DESScheduleStore.open(mapped, 4);
+            for (int i=0; i<n/2; i++) {
+                persistent.add(keys[i]);
+            }
+            persistent.close();
+            persistent = DESScheduleStore.open(mapped, 4);
+            for (int i=n/2; i<n; i++) {
+                persistent.add(keys[i]);
+            }
+            // until flushed, the file still holds only the first half
+            DESScheduleStore view = DESScheduleStore.open(mapped, 4);
+            result &= (view.size() == n/2);
+            view.close();
+            persistent.close();
+            persistent = DESScheduleStore.open(mapped);
+            result &= checkScheduleStore(persistent, keys, blocks, n, message);
+            try {
+                persistent.encryptBlock(n, 0);
+                result = false;
+            } catch (IllegalArgumentException e) {
+                // expected: no such handle
+            }
+            persistent.close();
+            System.out.println("\tschedules: "+n+", file: "+saved.length()+" bytes");
+            
+            FileOutputStream garbage = new FileOutputStream(saved);
+            garbage.write(new byte[DESScheduleStore.HEADER_BYTES]);
+            garbage.close();
+            try {
+                DESScheduleStore.open(saved);
+                result = false;
+            } catch (IOException e) {
+                // expected: not a schedule store
+            }
+        } catch (IOException e) {
+            System.out.println("\terror: "+e);
+            result = false;
+        } finally {
+            if (saved != null) {
+                saved.delete();
+            }
+            if (mapped != null) {
+                mapped.delete();
+            }
+        }
+        System.out.println("\tverdict: "+verdict(result));
+        return result;
+    }
+    
+    private static boolean checkScheduleStore(DESScheduleStore store, long[] keys, long[] blocks,
+                                              int n, byte[] message) {
+        boolean result = (store.size() == n);
+        for (int i=0; i<n; i++) {
+            DESKey key = new DESKey(keys[i]);
+            result &= (store.encryptBlock(i, blocks[i]) == encryptBlock(blocks[i], key));
+            result &= (store.decryptBlock(i, blocks[i]) == decryptBlock(blocks[i], key));
+        }
+        DESKey key = new DESKey(keys[n-1]);
+        byte[] expected = new byte[message.length];
+        encrypt(message, 0, message.length, expected, 0, key);
+        byte[] received = new byte[message.length];
+        store.encrypt(n-1, message, 0, message.length, received, 0);
+        result &= Arrays.equals(expected, received);
+        store.decrypt(n-1, received, 0, received.length, received, 0);
+        result &= Arrays.equals(message, received);
+        DESMac mac = DESMac.cbcMac(store.getCipher(n-1), DESMac.Padding.METHOD_2);
+        mac.update(message, 0, message.length);
+        DESMac reference = DESMac.cbcMac(key, DESMac.Padding.METHOD_2);
+        reference.update(message, 0, message.length);
+        result &= (mac.doFinal() == reference.doFinal());
+        return result;
+    }
+    
+    /**
+     * Share one DESCipher (DES and Triple-DES) between several threads,
+     * each running one-shot ECB, CBC (continued across two calls) and
+     * CTR operations, and compare with the DESMode results.
+     */
+    public static boolean testCipher() {
+        System.out.println("Test #"+(++testCount)+": shared cipher context");
+        Random random = new Random(7);
+        final byte[] message = new byte[8*257];
+        random.nextBytes(message);
+        final long iv = random.nextLong();
+        byte[] tdeaKey = new byte[24];
+        random.nextBytes(tdeaKey);
+        
+        boolean result = true;
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            for (final DESCipher cipher : new DESCipher[] {
+                    new DESCipher(new DESKey(random.nextLong())), new DESCipher(tdeaKey) }) {
+                final byte[] ecb = new byte[message.length];
+                final byte[] cbc = new byte[message.length];
+                final byte[] ctr = new byte[message.length - 5];
+                cipher.ecb(true).update(message, 0, message.length, ecb, 0);
+                cipher.cbc(iv, true).update(message, 0, message.length, cbc, 0);
+                cipher.ctr(iv, true).update(message, 0, ctr.length, ctr, 0);
+                
+                List<Future<Boolean>> futures = new ArrayList<Future<Boolean>>();
+                for (int t=0; t<8; t++) {
+                    futures.add(executor.submit(new Callable<Boolean>() {
+                        public Boolean call() {
+                            byte[] buffer = new byte[message.length];
+                            cipher.encrypt(message, 0, message.length, buffer, 0);
+                            boolean pass = Arrays.equals(ecb, buffer);
+                            cipher.decrypt(buffer, 0, buffer.length, buffer, 0);
+                            pass &= Arrays.equals(message, buffer);
+                            
+                            int half = 8*100;
+                            long chain = cipher.encryptCBC(iv, message, 0, half, buffer, 0);
+                            cipher.encryptCBC(chain, message, half, message.length-half, buffer, half);
+                            pass &= Arrays.equals(cbc, buffer);
+                            cipher.decryptCBC(iv, buffer, 0, buffer.length, buffer, 0);
+                            pass &= Arrays.equals(message, buffer);
+                            
+                            byte[] stream = new byte[ctr.length];
+                            cipher.ctr(iv, message, 0, stream.length, stream, 0);
+                            pass &= Arrays.equals(ctr, stream);
+                            return pass;
+                        }
+                    }));
+                }
+                for (Future<Boolean> future : futures) {
+                    result &= future.get();
+                }
+                
+                byte[] guard = new byte[16];
+                try {
+                    cipher.ctr(iv, message, 0, -1, guard, 8);
+                    result = false;
+                } catch (IllegalArgumentException e) {
+                    result &= Arrays.equals(new byte[16], guard);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            result = false;
+        } catch (ExecutionException e) {
+            System.out.println("\t"+e.getCause());
+            result = false;
+        } finally {
+            executor.shutdown();
+        }
+        System.out.println("\tverdict: "+verdict(result));
+        return result;
+    }
+    
+    /**
+     * Check every engine's key schedule, block and bulk operations
+     * against the table-driven DES methods, and report the engine
+     * chosen for each size class.
+     */
+    public static boolean testEngines() {
+        System.out.println("Test #"+(++testCount)+": engines");
+        Random random = new Random(8);
+        long keyValue = random.nextLong();
+        DESKey key = new DESKey(keyValue);
+        byte[] message = new byte[8*70];
+        random.nextBytes(message);
+        byte[] expected = new byte[message.length];
+        encrypt(message, 0, message.length, expected, 0, key);
+        long block = random.nextLong();
+        
+        boolean result = true;
+        for (DESEngine engine : DESEngines.getEngines()) {
+            DESKey k = engine.createKey(keyValue);
+            boolean pass = Arrays.equals(key.subkeys, k.subkeys);
+            pass &= (engine.encryptBlock(block, k) == encryptBlock(block, key));
+            pass &= (engine.decryptBlock(block, k) == decryptBlock(block, key));
+            byte[] received = new byte[message.length];
+            engine.encrypt(message, 0, message.length, received, 0, k);
+            pass &= Arrays.equals(expected, received);
+            engine.decrypt(received, 0, received.length, received, 0, k);
+            pass &= Arrays.equals(message, received);
+            System.out.println("\t"+engine.getName()+": "+(pass?"ok":"MISMATCH"));
+            result &= pass;
+        }
+        System.out.println("\tselected: "+DESEngines.getProfile());
+        result &= (DESEngines.forLength(message.length) != null);
+        System.out.println("\tverdict: "+verdict(result));
+        return result;
+    }
+    
+    /**
+     * Run a short differential fuzzing pass across all implementations,
+     * and check that the minimizer reduces an injected fault (a wrong
+     * output bit whenever key bit 10 and block bit 20 are both set) to
+     * those two bits.
+     */
+    public static boolean testFuzz() {
+        System.out.println("Test #"+(++testCount)+": differential fuzzing");
+        long batches = Long.getLong("des.fuzz.batches", 200);
+        long divergences = DESFuzz.run(batches, Runtime.getRuntime().availableProcessors(), 22, System.out);
+        System.out.println("\tbatches: "+batches+", divergences: "+divergences);
+        boolean result = (divergences == 0);
+        
+        DESFuzz.Implementation reference = DESFuzz.implementations().get(0);
+        DESFuzz.Implementation faulty = new DESFuzz.Implementation("faulty") {
+            void crypt(long[] keys, long[] in, long[] out, boolean decrypt) {
+                for (int i=0; i<in.length; i++) {
+                    out[i] = decrypt ? decryptBlock(in[i], keys[i]) : encryptBlock(in[i], keys[i]);
+                    if ((keys[i] & (1L<<10)) != 0 && (in[i] & (1L<<20)) != 0) {
+                        out[i] ^= 1;
+                    }
+                }
+            }
+        };
+        long[] minimal = DESFuzz.minimize(reference, faulty, -1L, -1L);
+        System.out.println(String.format("\tinjected fault minimized to key=%016x block=%016x",
+            minimal[0], minimal[1]));
+        result &= (minimal[0] == (1L<<10) && minimal[1] == (1L<<20));
+        result &= (DESFuzz.minimize(reference, faulty, 0, -1L) == null);
+        System.out.println("\tverdict: "+verdict(result));
+        return result;
+    }
+    
+    /**
+     * Known-answer test for Triple-DES, in ECB mode through the
+     * TripleDES bulk methods, and in CBC mode through DESMode.  Also
+     * checks each block against three chained single-DES operations.
+     */
+    public static boolean testTripleDES(byte[] message, byte[] expectedECB, byte[] expectedCBC, byte[] key, long iv) {
+        System.out.println("Test #"+(++testCount)+": Triple-DES ("+(key.length==24?"EDE3":"EDE2")+")");
+        TripleDESKey k = new TripleDESKey(key);
+        System.out.println("\tmessage:  "+hex(message));
+        System.out.println("\tkey:      "+hex(key));
+        System.out.println("\texpected: "+hex(expectedECB));
+        byte[] received = TripleDES.encrypt(message, k);
+        System.out.println("\treceived: "+hex(received));
+        boolean result = Arrays.equals(expectedECB, received)
+            && Arrays.equals(message, TripleDES.decrypt(received, k));
+        
+        for (int i=0; i<message.length; i+=8) {
+            long m = readLong(message, i);
+            long c = encryptBlock(decryptBlock(encryptBlock(m, k.k1), k.k2), k.k3);
+            result &= (c == TripleDES.encryptBlock(m, k));
+        }
+        
+        byte[] cbc = new byte[message.length];
+        DESMode.cbc(k, iv, true).update(message, 0, message.length, cbc, 0);
+        System.out.println("\tCBC:      "+hex(cbc));
+        result &= Arrays.equals(expectedCBC, cbc);
+        DESMode.cbc(k, iv, false).update(cbc, 0, cbc.length, cbc, 0);
+        result &= Arrays.equals(message, cbc);
+        
+        System.out.println("\tverdict: "+verdict(result));
+        return result;
+    }
+    
+    /**
+     * Check VNCAuth against a recorded VNC handshake, including a
+     * repeat (cached) verification and a tampered response.
+     */
+    public static boolean testVNCAuth(byte[] challenge, byte[] response, String password) {
+        System.out.println("Test #"+(++testCount)+": VNC authentication");
+        VNCAuth auth = new VNCAuth(2);
+        boolean result = (VNCAuth.passwordToKey(password) == readLong(passwordToKey(password), 0));
+        byte[] computed = new byte[VNCAuth.CHALLENGE_LENGTH];
+        auth.respond(password, challenge, 0, computed, 0);
+        result &= Arrays.equals(response, computed);
+        result &= auth.verify(password, challenge, response);
+        result &= auth.verify(password, challenge, response);
+        result &= !auth.verify(password+"x", challenge, response);
+        computed[15] ^= 1;
+        result &= !auth.verify(password, challenge, computed);
+        // non-ASCII characters must map to the same key everywhere,
+        // whatever the platform charset.
+        String accented = "p\u00e2ss\u00e9\u00a3";
+        long accentedKey = VNCAuth.passwordToKey(accented);
+        result &= (accentedKey == readLong(passwordToKey(accented), 0));
+        result &= ((byte) (accentedKey >>> 48) == BIT_REVERSE[0xE2]);
+        auth.respond(accented, challenge, 0, computed, 0);
+        result &= Arrays.equals(encrypt(challenge, accented), computed);
+        result &= auth.verify(accented, challenge, computed);
+        // characters outside ISO-8859-1 can't be mapped to a key byte
+        try {
+            VNCAuth.passwordToKey("\u0101bc");
+            result = false;
+        } catch (IllegalArgumentException e) {
+        }
+        result &= (VNCAuth.passwordToKey("abcdefgh\u0101") == VNCAuth.passwordToKey("abcdefgh"));
+        
+        // a hit returns the cached schedule; after an invalidation,
+        // and with other passwords evicting entries from the small
+        // cache, the responses stay correct
+        DESKey cached = auth.getKey(password);
+        result &= (auth.getKey(password) == cached);
+        for (int i=0; i<200; i++) {
+            String other = "user"+(i % 50);
+            result &= auth.verify(other, challenge, encrypt(challenge, other));
+        }
+        auth.invalidate(password);
+        result &= (auth.getKey(password) != cached);
+        result &= auth.verify(password, challenge, response);
+        System.out.println("\tverdict: "+verdict(result));
+        return result;
+    }
+    
+    /**
+     * Round-trip a message through the stream and channel wrappers
+     * with the specified padding, writing and reading in uneven
+     * chunks, and compare the ciphertext with a padded message
+     * encrypted by DESMode directly.
+     */
+    public static boolean testStreams(String modeName, DESPadding padding, int length) {
+        System.out.println("Test #"+(++testCount)+": streams, "+modeName+"/"+padding+", "+length+" bytes");
+        Random random = new Random(length);
+        byte[] message = new byte[length];
+        random.nextBytes(message);
+        DESKey key = new DESKey(random.nextLong());
+        long iv = random.nextLong();
+        
+        // expected ciphertext
+        int padLength = (padding == DESPadding.PKCS5) ? 8 - (length & 7)
+                      : (padding == DESPadding.ZERO)  ? (8 - (length & 7)) & 7
+                      : 0;
+        byte[] padded = Arrays.copyOf(message, length + padLength);
+        if (padding == DESPadding.PKCS5) {
+            Arrays.fill(padded, length, padded.length, (byte) padLength);
+        }
+        byte[] expected = new byte[padded.length];
+        mode(modeName, key, iv, true).update(padded, 0, padded.length, expected, 0);
+        // zero padding is not removed on decryption
+        byte[] plaintext = (padding == DESPadding.ZERO) ? padded : message;
+        
+        boolean result = true;
+        try {
+            // streams
+            ByteArrayOutputStream sink = new ByteArrayOutputStream();
+            OutputStream out = new DESOutputStream(sink, mode(modeName, key, iv, true), padding);
+            for (int i=0, n=1; i<length; i+=n, n=n*3+1) {
+                out.write(message, i, Math.min(n, length-i));
+            }
+            out.close();
+            result &= Arrays.equals(expected, sink.toByteArray());
+            
+            InputStream in = new DESInputStream(
+                new ByteArrayInputStream(sink.toByteArray()), mode(modeName, key, iv, false), padding);
+            ByteArrayOutputStream decrypted = new ByteArrayOutputStream();
+            byte[] chunk = new byte[1000];
+            for (int n; (n = in.read(chunk, 0, 1 + decrypted.size() % chunk.length)) >= 0; ) {
+                decrypted.write(chunk, 0, n);
+            }
+            in.close();
+            result &= Arrays.equals(plaintext, decrypted.toByteArray());
+            
+            // channels
+            sink.reset();
+            WritableByteChannel wc = new DESWritableChannel(
+                Channels.newChannel(sink), mode(modeName, key, iv, true), padding);
+            wc.write(ByteBuffer.wrap(message));
+            wc.close();
+            result &= Arrays.equals(expected, sink.toByteArray());
+            
+            ReadableByteChannel rc = new DESReadableChannel(
+                Channels.newChannel(new ByteArrayInputStream(sink.toByteArray())),
+                mode(modeName, key, iv, false), padding);
+            ByteBuffer dst = ByteBuffer.allocate(plaintext.length + 1);
+            while (rc.read(dst) >= 0) {
+            }
+            rc.close();
+            result &= Arrays.equals(plaintext, Arrays.copyOf(dst.array(), dst.position()));
+        } catch (IOException e) {
+            System.out.println("\t"+e);
+            result = false;
+        }
+        System.out.println("\tverdict: "+verdict(result));
+        return result;
+    }
+    
+    /**
+     * Encrypt and decrypt a temporary file with DESFileCrypt, using a
+     * small region size so that several mappings are used, and
+     * compare the output with the in-memory methods.
+     */
+    public static boolean testFileCrypt() {
+        System.out.println("Test #"+(++testCount)+": memory-mapped files");
+        Random random = new Random(3);
+        byte[] message = new byte[10000+5];
+        random.nextBytes(message);
+        DESKey key = new DESKey(random.nextLong());
+        long counter = random.nextLong();
+        DESFileCrypt crypt = new DESFileCrypt(new DESParallel(), 4096);
+        boolean result = true;
+        File plain = null, cipher = null, decrypted = null;
+        try {
+            plain = File.createTempFile("des", ".plain");
+            cipher = File.createTempFile("des", ".cipher");
+            decrypted = File.createTempFile("des", ".decrypted");
+            FileOutputStream fos = new FileOutputStream(plain);
+            fos.write(message);
+            fos.close();
+            
+            crypt.ecb(plain, cipher, key, true);
+            byte[] padded = Arrays.copyOf(message, (message.length+7) & ~7);
+            result &= Arrays.equals(encrypt(padded, key), readFile(cipher));
+            crypt.ecb(cipher, decrypted, key, false);
+            result &= Arrays.equals(padded, readFile(decrypted));
+            
+            crypt.ctr(plain, cipher, key, counter);
+            byte[] expected = new byte[message.length];
+            DESMode.ctr(key, counter, true).update(message, 0, message.length, expected, 0);
+            result &= Arrays.equals(expected, readFile(cipher));
+            crypt.ctr(cipher, decrypted, key, counter);
+            result &= Arrays.equals(message, readFile(decrypted));
+        } catch (IOException e) {
+            System.out.println("\t"+e);
+            result = false;
+        } finally {
+            for (File f : new File[] { plain, cipher, decrypted }) {
+                if (f != null) {
+                    f.delete();
+                }
+            }
+        }
+        System.out.println("\tverdict: "+verdict(result));
+        return result;
+    }
+    private static byte[] readFile(File file) throws IOException {
+        byte[] data = new byte[(int) file.length()];
+        FileInputStream in = new FileInputStream(file);
+        try {
+            int n = 0;
+            for (int r; n < data.length && (r = in.read(data, n, data.length-n)) >= 0; ) {
+                n += r;
+            }
+        } finally {
+            in.close();
+        }
+        return data;
+    }
+    
+    /**
+     * Compare DESProvider with SunJCE for the specified transformation,
+     * using one-shot byte[] calls, and multi-part updates into direct
+     * ByteBuffers.
+     */
+    public static boolean testProvider(String transformation, int length) {
+        System.out.println("Test #"+(++testCount)+": JCA "+transformation+", "+length+" bytes");
+        Random random = new Random(length);
+        byte[] message = new byte[length];
+        random.nextBytes(message);
+        byte[] keyBytes = new byte[8];
+        random.nextBytes(keyBytes);
+        byte[] iv = new byte[8];
+        random.nextBytes(iv);
+        SecretKeySpec key = new SecretKeySpec(keyBytes, "DES");
+        IvParameterSpec ivSpec = transformation.contains("ECB") ? null : new IvParameterSpec(iv);
+        
+        boolean result = true;
+        try {
+            Cipher sun = Cipher.getInstance(transformation, "SunJCE");
+            Cipher ours = Cipher.getInstance(transformation, new DESProvider());
+            sun.init(Cipher.ENCRYPT_MODE, key, ivSpec);
+            ours.init(Cipher.ENCRYPT_MODE, key, ivSpec);
+            byte[] expected = sun.doFinal(message);
+            result &= Arrays.equals(expected, ours.doFinal(message));
+            // the cipher must be reusable after doFinal()
+            result &= Arrays.equals(expected, ours.doFinal(message));
+            
+            ours.init(Cipher.DECRYPT_MODE, key, ivSpec);
+            ByteBuffer src = ByteBuffer.allocateDirect(expected.length);
+            src.put(expected).flip();
+            ByteBuffer dst = ByteBuffer.allocateDirect(ours.getOutputSize(expected.length));
+            int limit = src.limit();
+            for (int n=1; src.position() < limit; n=n*2+3) {
+                src.limit(Math.min(limit, src.position()+n));
+                ours.update(src, dst);
+            }
+            src.limit(limit);
+            ours.doFinal(src, dst);
+            dst.flip();
+            byte[] decrypted = new byte[dst.remaining()];
+            dst.get(decrypted);
+            result &= Arrays.equals(message, decrypted);
+            
+            // in place, one block at a time, with the input and output
+            // at the same offset of the same array or buffer
+            ours.init(Cipher.DECRYPT_MODE, key, ivSpec);
+            byte[] block = new byte[16];
+            ByteArrayOutputStream sink = new ByteArrayOutputStream();
+            for (int i=0; i<expected.length; i+=8) {
+                int n = Math.min(8, expected.length-i);
+                System.arraycopy(expected, i, block, 0, n);
+                int written = (i+n < expected.length)
+                    ? ours.update(block, 0, n, block, 0)
+                    : ours.doFinal(block, 0, n, block, 0);
+                sink.write(block, 0, written);
+            }
+            result &= Arrays.equals(message, sink.toByteArray());
+            sink.reset();
+            ByteBuffer shared = ByteBuffer.allocateDirect(16);
+            for (int i=0; i<expected.length; i+=8) {
+                int n = Math.min(8, expected.length-i);
+                shared.clear();
+                shared.put(expected, i, n).flip();
+                ByteBuffer output = shared.duplicate();
+                output.clear();
+                if (i+n < expected.length) {
+                    ours.update(shared, output);
+                } else {
+                    ours.doFinal(shared, output);
+                }
+                output.flip();
+                output.get(block, 0, output.remaining());
+                sink.write(block, 0, output.position());
+            }
+            result &= Arrays.equals(message, sink.toByteArray());
+        } catch (GeneralSecurityException e) {
+            System.out.println("\t"+e);
+            result = false;
+        }
+        System.out.println("\tverdict: "+verdict(result));
+        return result;
+    }
+    
+    /**
+     * Check that the provider, like SunJCE, refuses to pad CTR mode,
+     * whichever order the mode and padding are set in.
+     */
+    public static boolean testProviderCTRPadding() {
+        System.out.println("Test #"+(++testCount)+": JCA DES/CTR/PKCS5Padding rejected");
+        boolean result = false;
+        try {
+            Cipher.getInstance("DES/CTR/PKCS5Padding", new DESProvider());
+        } catch (NoSuchPaddingException e) {
+            result = true;
+        } catch (GeneralSecurityException e) {
+            System.out.println("\t"+e);
+        }
+        // the SPI itself, with the padding set first
+        boolean rejected = false;
+        try {
+            DESCipherSpi spi = new DESCipherSpi();
+            spi.engineSetPadding("PKCS5Padding");
+            spi.engineSetMode("CTR");
+            spi.engineInit(Cipher.ENCRYPT_MODE, new SecretKeySpec(new byte[8], "DES"),
+                new IvParameterSpec(new byte[8]), null);
+        } catch (InvalidAlgorithmParameterException e) {
+            rejected = true;
+        } catch (GeneralSecurityException e) {
+            System.out.println("\t"+e);
+        }
+        result &= rejected;
+        System.out.println("\tverdict: "+verdict(result));
         return result;
     }
     
@@ -582,6 +2515,92 @@ public class DES {
             parseBytes("133457799BBCDFF1")
         );
         
+        testVNCAuth(
+            parseBytes("a4b2 c9ef 0876 c1ce 438d e282 3820 dbde"),
+            parseBytes("fa60 69b9 85fa 1cf7 0bea a041 9137 a6d3"),
+            "mypass"
+        );
+        testPermutations();
+        testKeySchedule();
+        testTables();
+        testBuffers(
+            parseBytes("0123456789ABCDEF 0123456789ABCDEF"),
+            parseBytes("85E813540F0AB405 85E813540F0AB405"),
+            parseBytes("133457799BBCDFF1")
+        );
+        
+        // Modes of operation.  ECB, CBC, CFB and OFB are the examples
+        // from FIPS 81, Appendices B-E ("Now is the time for all ").
+        // CTR, which FIPS 81 predates, uses the same inputs, with
+        // the expected output taken from SunJCE's DES/CTR/NoPadding.
+        byte[] fipsKey = parseBytes("0123456789abcdef");
+        long fipsIV = 0x1234567890abcdefL;
+        byte[] fipsMessage = parseBytes("4e6f772069732074 68652074696d6520 666f7220616c6c20");
+        testMode("ECB", fipsMessage, parseBytes("3fa40e8a984d4815 6a271787ab8883f9 893d51ec4b563b53"), fipsKey, fipsIV);
+        testMode("CBC", fipsMessage, parseBytes("e5c7cdde872bf27c 43e934008c389c0f 683788499a7c05f6"), fipsKey, fipsIV);
+        testMode("CFB", fipsMessage, parseBytes("f3096249c7f46e51 a69e839b1a92f784 03467133898ea622"), fipsKey, fipsIV);
+        testMode("OFB", fipsMessage, parseBytes("f3096249c7f46e51 35f24a242eeb3d3f 3d6d5be3255af8c3"), fipsKey, fipsIV);
+        testMode("CTR", fipsMessage, parseBytes("f3096249c7f46e51 163a8ca0ffc94c27 fa2f80f480b86f75"), fipsKey, fipsIV);
+        testMode("CTR", fipsMessage, parseBytes("171c54769a1cfe72 bdb16f834905582d 96e32500f4ff9293"), fipsKey, -1L);
+        for (String name : new String[] { "ECB", "CBC", "CFB", "OFB", "CTR" }) {
+            testInPlace(name);
+        }
+        
+        testStreams("CBC", DESPadding.PKCS5, 20000);
+        testStreams("CBC", DESPadding.PKCS5, 20003);
+        testStreams("ECB", DESPadding.ZERO, 20003);
+        testStreams("CTR", DESPadding.NONE, 20003);
+        testStreams("CFB", DESPadding.PKCS5, 5);
+        
+        testProvider("DES/ECB/NoPadding", 1000);
+        testProvider("DES/ECB/PKCS5Padding", 1003);
+        testProvider("DES/CBC/NoPadding", 1000);
+        testProvider("DES/CBC/PKCS5Padding", 1000);
+        testProvider("DES/CBC/PKCS5Padding", 1005);
+        testProvider("DES/CTR/NoPadding", 1005);
+        testProviderCTRPadding();
+        
+        testParallel();
+        testFileCrypt();
+        testBitslice();
+        testBatch();
+        testLanes();
+        testMetrics();
+        testCipher();
+        testMac();
+        testScheduleStore();
+        testEngines();
+        testFuzz();
+        testKeySearch(
+            parseBytes("a4b2 c9ef 0876 c1ce 438d e282 3820 dbde"),
+            parseBytes("fa60 69b9 85fa 1cf7 0bea a041 9137 a6d3"),
+            "mypass"
+        );
+        
+        // Triple-DES.  The EDE3 ECB example is from NIST SP 800-67,
+        // Appendix B; the CBC and EDE2 results were generated with
+        // SunJCE's DESede.
+        byte[] tdeaMessage = parseBytes("5468652071756663 6B2062726F776E20 666F78206A756D70");
+        testTripleDES(
+            tdeaMessage,
+            parseBytes("A826FD8CE53B855F CCE21C8112256FE6 68D5C05DD9B6B900"),
+            parseBytes("38413d4ba2325cf1 141f707471ac2ced 57db530f0123b5ac"),
+            parseBytes("0123456789ABCDEF 23456789ABCDEF01 456789ABCDEF0123"),
+            fipsIV
+        );
+        testTripleDES(
+            tdeaMessage,
+            parseBytes("c44862f70cf2fbdc 9077d0909fa91b88 4cabd61fc58e0cbb"),
+            parseBytes("b0ed7d5e6849dc73 cfb0c1915e64897f 8182f143185f6cf1"),
+            parseBytes("0123456789ABCDEF 23456789ABCDEF01"),
+            fipsIV
+        );
+        
+        // report failures through the exit status, for the build
+        if (failCount > 0) {
+            System.out.println(failCount+" of "+testCount+" tests FAILED");
+            System.exit(1);
+        }
     }
 
 }
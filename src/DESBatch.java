@@ -0,0 +1,123 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Batch encryption of many single blocks under many different keys.
+ *
+ * Encrypting a short message under a fresh key is dominated by the
+ * key schedule, and DES.encryptBlock(long, long) also allocates a new
+ * DESKey for every block.  This class takes parallel arrays of blocks
+ * and keys, and derives the schedules 64 keys at a time into one flat
+ * array, which is reused for the whole batch.  The blocks are then
+ * run through the same table-driven rounds as DES.encryptBlock().
+ *
+ * A previously built DESKey may be supplied for any entry, in which
+ * case its schedule is copied into the flat array as is, and the
+ * corresponding key value is ignored; only the entries without one
+ * have their schedules derived (and counted by DESMetrics).
+ */
+public final class DESBatch {
+
+    private DESBatch() {
+    }
+
+    /**
+     * Encrypt each of the supplied blocks with the key at the same
+     * index, writing the ciphertext to the same index of out.  The
+     * output array may be the same as the input array.  Equivalent to
+     * calling DES.encryptBlock(blocks[i], keys[i]) for every i.
+     *
+     * @param schedules cached key schedules, or null.  If non-null, it
+     *     must be the same length as blocks, and any non-null entry is
+     *     used instead of the key value at the same index.
+     */
+    public static void encrypt(long[] blocks, long[] keys, DESKey[] schedules, long[] out) {
+        crypt(blocks, keys, schedules, out, false);
+    }
+
+    /**
+     * Decrypt each of the supplied blocks with the key at the same
+     * index.  The inverse of encrypt(long[], long[], DESKey[], long[]).
+     */
+    public static void decrypt(long[] blocks, long[] keys, DESKey[] schedules, long[] out) {
+        crypt(blocks, keys, schedules, out, true);
+    }
+
+    /**
+     * Encrypt each of the supplied blocks with the key at the same
+     * index, deriving every key schedule.
+     */
+    public static void encrypt(long[] blocks, long[] keys, long[] out) {
+        crypt(blocks, keys, null, out, false);
+    }
+
+    /**
+     * Decrypt each of the supplied blocks with the key at the same
+     * index, deriving every key schedule.
+     */
+    public static void decrypt(long[] blocks, long[] keys, long[] out) {
+        crypt(blocks, keys, null, out, true);
+    }
+
+    private static void crypt(long[] blocks, long[] keys, DESKey[] schedules, long[] out, boolean decrypt) {
+        if (keys.length != blocks.length) {
+            throw new IllegalArgumentException(
+                "expected "+blocks.length+" keys, got "+keys.length);
+        }
+        if (schedules != null && schedules.length != blocks.length) {
+            throw new IllegalArgumentException(
+                "expected "+blocks.length+" schedules, got "+schedules.length);
+        }
+        if (out.length < blocks.length) {
+            throw new IllegalArgumentException(
+                "output array too small: "+out.length+" < "+blocks.length);
+        }
+
+        long start = DESMetrics.start();
+
+        // 64 packed schedules of 16 subkeys each
+        long[] subkeys = new long[64*16];
+
+        for (int offset=0; offset<blocks.length; offset+=64) {
+            int n = Math.min(64, blocks.length - offset);
+
+            // gather the group's schedules into the flat array, deriving
+            // only those which weren't supplied
+            int derived = 0;
+            for (int i=0; i<n; i++) {
+                DESKey schedule = (schedules == null) ? null : schedules[offset+i];
+                if (schedule == null) {
+                    DES.createSubkeys(keys[offset+i], subkeys, 16*i);
+                    derived++;
+                } else {
+                    System.arraycopy(schedule.subkeys, 0, subkeys, 16*i, 16);
+                }
+            }
+            if (DESMetrics.ENABLED && derived > 0) {
+                DESMetrics.scheduleBuilt(derived);
+            }
+
+            for (int i=0; i<n; i++) {
+                out[offset+i] = decrypt
+                    ? DES.decryptBlock(blocks[offset+i], subkeys, 16*i)
+                    : DES.encryptBlock(blocks[offset+i], subkeys, 16*i);
+            }
+        }
+
+        if (DESMetrics.ENABLED) {
+            DESMetrics.record(!decrypt, blocks.length, 8L*blocks.length, start);
+        }
+    }
+
+}
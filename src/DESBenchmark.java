@@ -0,0 +1,555 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.Provider;
+import java.security.Security;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Quick in-process micro-benchmarks for the DES implementation.
+ *
+ * This is a convenience for comparing the many code paths at a glance
+ * from a plain class path.  It runs every benchmark in this one JVM,
+ * without forking, so each benchmark's JIT profile is shaped by the
+ * ones that ran before it, and results are only kept alive by summing
+ * them into a volatile field.  The JMH benchmarks (gradle jmh) are the
+ * measurements of record: they fork, use a Blackhole, sample the
+ * latency of individual operations, and report allocation with the GC
+ * profiler.
+ *
+ * Each benchmark is warmed up, and then run in short timed batches for
+ * a fixed period.  For each benchmark, this reports:
+ *
+ *   ops/s  - throughput, in operations per second
+ *   MB/s   - throughput in payload bytes, where that makes sense
+ *   B/op   - bytes allocated on the heap per operation
+ *   p50/p99/max - the distribution of the batch averages, in
+ *            nanoseconds per operation.  This smooths out the latency
+ *            of individual operations, and is not a substitute for
+ *            JMH's SampleTime mode.
+ *
+ * Allocation is measured with the HotSpot-specific ThreadMXBean
+ * extension, and reported as "n/a" on JVMs that lack it.
+ *
+ * Usage:
+ *
+ *   java DESBenchmark [-w warmupSeconds] [-t seconds] [filter...]
+ *
+ * Only benchmarks whose names contain one of the filter strings are
+ * run.  With no filters, every benchmark is run.
+ *
+ * The "startup" benchmarks measure time to first encryption, which is
+ * what matters to short-lived processes: each one starts STARTUP_RUNS
+ * fresh JVMs, which time one encryption through an entry point from
+ * the start of main(), including class loading, table setup, key
+ * schedule and (for DESCipher) engine selection, which uses the
+ * default profile since calibration is opt-in.  Both that time and
+ * the wall-clock time of the whole process are reported.
+ */
+public class DESBenchmark {
+
+    //////////////////////////////////////////////////////////////////////
+    //
+    // Benchmarks
+    //
+    //////////////////////////////////////////////////////////////////////
+
+    /**
+     * A single benchmark.  run() performs the operation the requested
+     * number of times, and returns a value derived from the results
+     * so that the JIT can't discard the work.
+     */
+    static abstract class Benchmark {
+        final String name;
+        final int bytesPerOp;
+
+        Benchmark(String name, int bytesPerOp) {
+            this.name = name;
+            this.bytesPerOp = bytesPerOp;
+        }
+
+        abstract long run(int iterations);
+    }
+
+    /** Payload sizes for the bulk benchmarks: a block, a VNC challenge, 1KB and 1MB. */
+    static final int[] SIZES = { 8, 16, 1024, 1024*1024 };
+
+    static List<Benchmark> benchmarks() {
+        final Random random = new Random(42);
+        final long keyValue = random.nextLong();
+        final DESKey key = new DESKey(keyValue);
+        final byte[] keyBytes = new byte[8];
+        DES.writeLong(keyBytes, 0, keyValue);
+
+        List<Benchmark> list = new ArrayList<Benchmark>();
+
+        list.add(new Benchmark("createSubkeys", 0) {
+            long run(int iterations) {
+                long x = 0;
+                for (int i=0; i<iterations; i++) {
+                    x += DES.createSubkeys(keyValue + i)[15];
+                }
+                return x;
+            }
+        });
+        list.add(new Benchmark("createSubkeysReference", 0) {
+            final long[] subkeys = new long[16];
+            long run(int iterations) {
+                long x = 0;
+                for (int i=0; i<iterations; i++) {
+                    DES.createSubkeysReference(keyValue + i, subkeys, 0);
+                    x += subkeys[15];
+                }
+                return x;
+            }
+        });
+        list.add(new Benchmark("feistel", 0) {
+            long run(int iterations) {
+                int r = 0;
+                for (int i=0; i<iterations; i++) {
+                    r = DES.feistel(r + i, keyValue);
+                }
+                return r;
+            }
+        });
+        list.add(new Benchmark("feistelSP", 0) {
+            long run(int iterations) {
+                int r = 0;
+                for (int i=0; i<iterations; i++) {
+                    r = DES.feistelSP(r + i, keyValue);
+                }
+                return r;
+            }
+        });
+        list.add(new Benchmark("encryptBlock(long,long)", 8) {
+            long run(int iterations) {
+                long m = 0;
+                for (int i=0; i<iterations; i++) {
+                    m = DES.encryptBlock(m, keyValue);
+                }
+                return m;
+            }
+        });
+        list.add(new Benchmark("encryptBlock(long,DESKey)", 8) {
+            long run(int iterations) {
+                long m = 0;
+                for (int i=0; i<iterations; i++) {
+                    m = DES.encryptBlock(m, key);
+                }
+                return m;
+            }
+        });
+        list.add(new Benchmark("encryptBlockReference(long,DESKey)", 8) {
+            long run(int iterations) {
+                long m = 0;
+                for (int i=0; i<iterations; i++) {
+                    m = DES.encryptBlockReference(m, key);
+                }
+                return m;
+            }
+        });
+        list.add(new Benchmark("encryptBlock(byte[],byte[])", 8) {
+            final byte[] block = new byte[8];
+            long run(int iterations) {
+                for (int i=0; i<iterations; i++) {
+                    DES.encryptBlock(block, 0, block, 0, keyBytes);
+                }
+                return block[0];
+            }
+        });
+
+        // one block per key, as for many short messages under many keys
+        final int batch = 1024;
+        final long[] batchBlocks = new long[batch];
+        final long[] batchKeys = new long[batch];
+        final long[] batchOut = new long[batch];
+        for (int i=0; i<batch; i++) {
+            batchBlocks[i] = random.nextLong();
+            batchKeys[i] = random.nextLong();
+        }
+        list.add(new Benchmark("encryptBlock(long,long) x"+batch+" keys", 8*batch) {
+            long run(int iterations) {
+                long x = 0;
+                for (int i=0; i<iterations; i++) {
+                    for (int j=0; j<batch; j++) {
+                        x += DES.encryptBlock(batchBlocks[j], batchKeys[j]);
+                    }
+                }
+                return x;
+            }
+        });
+        list.add(new Benchmark("DESBatch.encrypt x"+batch+" keys", 8*batch) {
+            long run(int iterations) {
+                for (int i=0; i<iterations; i++) {
+                    DESBatch.encrypt(batchBlocks, batchKeys, batchOut);
+                }
+                return batchOut[0];
+            }
+        });
+
+        // the same keys, with schedules on the heap and off it
+        final DESKey[] batchSchedules = new DESKey[batch];
+        final DESScheduleStore store = new DESScheduleStore();
+        try {
+            for (int i=0; i<batch; i++) {
+                batchSchedules[i] = new DESKey(batchKeys[i]);
+                store.add(batchKeys[i]);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        list.add(new Benchmark("encryptBlock(long,DESKey) x"+batch+" keys", 8*batch) {
+            long run(int iterations) {
+                long x = 0;
+                for (int i=0; i<iterations; i++) {
+                    for (int j=0; j<batch; j++) {
+                        x += DES.encryptBlock(batchBlocks[j], batchSchedules[j]);
+                    }
+                }
+                return x;
+            }
+        });
+        list.add(new Benchmark("DESScheduleStore.encryptBlock x"+batch+" keys", 8*batch) {
+            long run(int iterations) {
+                long x = 0;
+                for (int i=0; i<iterations; i++) {
+                    for (int j=0; j<batch; j++) {
+                        x += store.encryptBlock(j, batchBlocks[j]);
+                    }
+                }
+                return x;
+            }
+        });
+
+        for (final int size : SIZES) {
+            final byte[] message = new byte[size];
+            random.nextBytes(message);
+            final byte[] out = new byte[size];
+
+            list.add(new Benchmark("encrypt(byte[],byte[]) "+label(size), size) {
+                long run(int iterations) {
+                    long x = 0;
+                    for (int i=0; i<iterations; i++) {
+                        x += DES.encrypt(message, keyBytes)[0];
+                    }
+                    return x;
+                }
+            });
+            list.add(new Benchmark("encrypt(byte[],int,int,byte[],int,DESKey) "+label(size), size) {
+                long run(int iterations) {
+                    for (int i=0; i<iterations; i++) {
+                        DES.encrypt(message, 0, size, out, 0, key);
+                    }
+                    return out[0];
+                }
+            });
+            for (final DESEngine engine : DESEngines.getEngines()) {
+                list.add(new Benchmark("DESEngine "+engine.getName()+" "+label(size), size) {
+                    long run(int iterations) {
+                        for (int i=0; i<iterations; i++) {
+                            engine.encrypt(message, 0, size, out, 0, key);
+                        }
+                        return out[0];
+                    }
+                });
+            }
+            for (int lanes : DESLanes.getSupportedLanes()) {
+                final DESLanes engine = new DESLanes(lanes);
+                list.add(new Benchmark("DESLanes("+lanes+").encrypt "+label(size), size) {
+                    long run(int iterations) {
+                        for (int i=0; i<iterations; i++) {
+                            engine.encrypt(message, 0, size, out, 0, key);
+                        }
+                        return out[0];
+                    }
+                });
+            }
+            // only one vector size per run: once the JIT has seen more
+            // than one, the Vector API calls are no longer intrinsified.
+            // Use -Ddes.lanes=vector128 (etc.) to compare sizes.
+            DESEngine selected = DESLanes.getDefaultVector();
+            final DESEngine vector = (selected != null) ? selected : DESLanes.loadVector(0);
+            if (vector != null) {
+                list.add(new Benchmark("DESVectorLanes "+vector.getName()+" "+label(size), size) {
+                    long run(int iterations) {
+                        for (int i=0; i<iterations; i++) {
+                            vector.encrypt(message, 0, size, out, 0, key);
+                        }
+                        return out[0];
+                    }
+                });
+            }
+            final DESMac mac = DESMac.retailMac(key, new DESKey(~keyValue), DESMac.Padding.METHOD_2);
+            list.add(new Benchmark("DESMac retail "+label(size), size) {
+                long run(int iterations) {
+                    long x = 0;
+                    for (int i=0; i<iterations; i++) {
+                        mac.update(message, 0, size);
+                        x += mac.doFinal();
+                    }
+                    return x;
+                }
+            });
+        }
+
+        // JCA, head to head with SunJCE
+        Provider[] providers = { Security.getProvider("SunJCE"), new DESProvider() };
+        for (final Provider provider : providers) {
+            if (provider == null) {
+                continue;
+            }
+            for (final int size : new int[] { 16, 1024, 1024*1024 }) {
+                final Cipher cipher;
+                try {
+                    cipher = Cipher.getInstance("DES/CBC/NoPadding", provider);
+                    cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(keyBytes, "DES"),
+                        new IvParameterSpec(new byte[8]));
+                } catch (GeneralSecurityException e) {
+                    throw new RuntimeException(e);
+                }
+                final ByteBuffer src = ByteBuffer.allocateDirect(size);
+                final ByteBuffer dst = ByteBuffer.allocateDirect(size);
+                list.add(new Benchmark("Cipher DES/CBC "+provider.getName()+" "+label(size), size) {
+                    long run(int iterations) {
+                        try {
+                            for (int i=0; i<iterations; i++) {
+                                src.clear();
+                                dst.clear();
+                                cipher.doFinal(src, dst);
+                            }
+                        } catch (GeneralSecurityException e) {
+                            throw new RuntimeException(e);
+                        }
+                        return dst.get(0);
+                    }
+                });
+            }
+        }
+
+        return list;
+    }
+
+    static String label(int size) {
+        if (size >= 1024*1024) {
+            return (size/(1024*1024))+"MB";
+        } else if (size >= 1024) {
+            return (size/1024)+"KB";
+        }
+        return size+"B";
+    }
+
+    //////////////////////////////////////////////////////////////////////
+    //
+    // Harness
+    //
+    //////////////////////////////////////////////////////////////////////
+
+    /** Target duration of one timed batch, in nanoseconds. */
+    static final long BATCH_NANOS = 100*1000L;
+
+    /** Defeats dead-code elimination of benchmark results. */
+    static volatile long sink;
+
+    /**
+     * Return the number of bytes allocated so far by the current
+     * thread, or -1 if the JVM can't tell us.
+     */
+    static long allocatedBytes() {
+        try {
+            ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+            if (bean instanceof com.sun.management.ThreadMXBean) {
+                return ((com.sun.management.ThreadMXBean) bean)
+                    .getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        } catch (LinkageError e) {
+            // not a HotSpot-derived JVM
+        }
+        return -1;
+    }
+
+    /**
+     * Find a batch size that takes roughly BATCH_NANOS, running the
+     * benchmark for the specified warmup period in the process.
+     */
+    static int warmup(Benchmark b, long warmupNanos) {
+        int iterations = 1;
+        long end = System.nanoTime() + warmupNanos;
+        while (System.nanoTime() < end) {
+            long start = System.nanoTime();
+            sink += b.run(iterations);
+            long elapsed = System.nanoTime() - start;
+            if (elapsed < BATCH_NANOS && iterations < (1<<30)) {
+                iterations <<= 1;
+            } else if (elapsed > 4*BATCH_NANOS && iterations > 1) {
+                iterations >>= 1;
+            }
+        }
+        return iterations;
+    }
+
+    static void measure(Benchmark b, long warmupNanos, long measureNanos) {
+        int iterations = warmup(b, warmupNanos);
+
+        long[] samples = new long[1024];
+        int count = 0;
+        long ops = 0;
+        long alloc0 = allocatedBytes();
+        long start = System.nanoTime();
+        long end = start + measureNanos;
+        long now = start;
+        while (now < end) {
+            long t0 = System.nanoTime();
+            sink += b.run(iterations);
+            now = System.nanoTime();
+            if (count == samples.length) {
+                samples = Arrays.copyOf(samples, count*2);
+            }
+            samples[count++] = (now - t0) / iterations;
+            ops += iterations;
+        }
+        long elapsed = now - start;
+        long alloc1 = allocatedBytes();
+
+        Arrays.sort(samples, 0, count);
+        double opsPerSec = ops * 1e9 / elapsed;
+        String mbps = (b.bytesPerOp > 0)
+            ? String.format("%10.2f", opsPerSec * b.bytesPerOp / 1e6)
+            : String.format("%10s", "-");
+        String bpo = (alloc0 >= 0)
+            ? String.format("%10.1f", (double)(alloc1 - alloc0) / ops)
+            : String.format("%10s", "n/a");
+        System.out.println(String.format("%-50s %14.1f %s %s %10d %10d %10d",
+            b.name, opsPerSec, mbps, bpo,
+            samples[count/2], samples[(int)(count*0.99)], samples[count-1]));
+    }
+
+    //////////////////////////////////////////////////////////////////////
+    //
+    // Startup
+    //
+    //////////////////////////////////////////////////////////////////////
+
+    /** The number of JVMs started for each startup benchmark. */
+    static final int STARTUP_RUNS = 10;
+
+    /** The entry points timed by the startup benchmarks. */
+    static final String[] STARTUP_ENTRY_POINTS = { "DES.encryptBlock", "DESCipher", "JCA" };
+
+    /**
+     * Run in a fresh JVM by measureStartup(): perform one encryption
+     * through the named entry point, and print the nanoseconds taken
+     * since the start of main().
+     */
+    static final class FirstEncryption {
+        public static void main(String[] args) throws GeneralSecurityException {
+            long start = System.nanoTime();
+            byte[] key = { 1, 35, 69, 103, -119, -85, -51, -17 };
+            byte[] message = new byte[64];
+            long x;
+            if (args[0].equals("DES.encryptBlock")) {
+                x = DES.encryptBlock(0x0123456789ABCDEFL, 0x133457799BBCDFF1L);
+            } else if (args[0].equals("DESCipher")) {
+                new DESCipher(key).encrypt(message, 0, message.length, message, 0);
+                x = message[0];
+            } else {
+                Cipher cipher = Cipher.getInstance("DES/ECB/NoPadding", new DESProvider());
+                cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(key, "DES"));
+                x = cipher.doFinal(message)[0];
+            }
+            long elapsed = System.nanoTime() - start;
+            System.out.println(elapsed+" "+x);
+        }
+    }
+
+    static void measureStartup(String entryPoint) throws IOException, InterruptedException {
+        String java = System.getProperty("java.home")+File.separator+"bin"+File.separator+"java";
+        long[] first = new long[STARTUP_RUNS];
+        long[] process = new long[STARTUP_RUNS];
+        for (int i=0; i<STARTUP_RUNS; i++) {
+            long start = System.nanoTime();
+            Process p = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                FirstEncryption.class.getName(), entryPoint).redirectErrorStream(true).start();
+            BufferedReader reader = new BufferedReader(new InputStreamReader(p.getInputStream()));
+            String line = reader.readLine();
+            reader.close();
+            if (p.waitFor() != 0 || line == null) {
+                throw new IOException("startup benchmark failed: "+entryPoint+": "+line);
+            }
+            process[i] = System.nanoTime() - start;
+            first[i] = Long.parseLong(line.split(" ")[0]);
+        }
+        Arrays.sort(first);
+        Arrays.sort(process);
+        printStartup("startup "+entryPoint+" (first encryption)", first);
+        printStartup("startup "+entryPoint+" (process)", process);
+    }
+
+    private static void printStartup(String name, long[] samples) {
+        System.out.println(String.format("%-50s %14s %10s %10s %10d %10d %10d",
+            name, "-", "-", "-",
+            samples[samples.length/2], samples[(int)(samples.length*0.99)], samples[samples.length-1]));
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        double warmupSeconds = 1;
+        double seconds = 2;
+        List<String> filters = new ArrayList<String>();
+        for (int i=0; i<args.length; i++) {
+            if (args[i].equals("-w") && i+1 < args.length) {
+                warmupSeconds = Double.parseDouble(args[++i]);
+            } else if (args[i].equals("-t") && i+1 < args.length) {
+                seconds = Double.parseDouble(args[++i]);
+            } else {
+                filters.add(args[i]);
+            }
+        }
+
+        System.out.println(String.format("%-50s %14s %10s %10s %10s %10s %10s",
+            "benchmark", "ops/s", "MB/s", "B/op", "p50 ns", "p99 ns", "max ns"));
+        for (Benchmark b : benchmarks()) {
+            boolean selected = filters.isEmpty();
+            for (String f : filters) {
+                selected |= b.name.contains(f);
+            }
+            if (selected) {
+                measure(b, (long)(warmupSeconds*1e9), (long)(seconds*1e9));
+            }
+        }
+        for (String entryPoint : STARTUP_ENTRY_POINTS) {
+            boolean selected = filters.isEmpty();
+            for (String f : filters) {
+                selected |= ("startup "+entryPoint).contains(f);
+            }
+            if (selected) {
+                measureStartup(entryPoint);
+            }
+        }
+    }
+
+}
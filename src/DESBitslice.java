@@ -0,0 +1,315 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Bitsliced DES, which encrypts 64 independent blocks at once.
+ *
+ * Instead of holding one block in a long, a bitsliced implementation
+ * holds one bit position of 64 different blocks in a long (a "bit
+ * plane"), so that a block is spread across 64 longs, and each bit of
+ * those longs is a separate "lane".  Every operation on a plane is
+ * then applied to all 64 lanes at once.
+ *
+ * In this representation the bit permutations of DES (IP, FP, E, P,
+ * and the whole key schedule) cost nothing at all, since they only
+ * decide which plane is read next.  The S-boxes are evaluated as
+ * networks of AND, XOR and NOT gates over the planes.  Each lane may
+ * use a different key, which suits batches of many short messages
+ * under many keys.
+ *
+ * All of the wiring is derived from the tables in DES (IP, FP, E, S,
+ * P, PC1, PC2 and rotations) at class initialization time.  The
+ * S-box networks are built from the S tables as multiplexer trees:
+ * the 16 possible functions of the last two input bits are computed
+ * once per S-box, and then each output bit selects among them with a
+ * 15-multiplexer tree over the first four input bits.
+ */
+public final class DESBitslice {
+
+    private DESBitslice() {
+    }
+
+    //////////////////////////////////////////////////////////////////////
+    //
+    // Wiring tables derived from DES
+    //
+    //////////////////////////////////////////////////////////////////////
+
+    /**
+     * KEY_BITS[i][b] is the key bit (0-63, counting from the left)
+     * that ends up in bit b (0-47, counting from the left) of the
+     * subkey for round i.
+     */
+    private static final int[][] KEY_BITS = new int[16][48];
+
+    /**
+     * P_INV[q] is the output position (0-31) of the P permutation
+     * that bit q of the S-box output is sent to.
+     */
+    private static final int[] P_INV = new int[32];
+
+    /**
+     * LEAVES[j][o][u] is the truth table (over the last two input
+     * bits) selected by output bit o of S-box j+1 when the first four
+     * input bits have the value u.
+     */
+    private static final int[][][] LEAVES = new int[8][4][16];
+
+    static {
+        // key schedule: follow each subkey bit back through PC2, the
+        // accumulated rotations, and PC1.
+        int shift = 0;
+        for (int i=0; i<16; i++) {
+            shift += DES.rotations[i];
+            for (int b=0; b<48; b++) {
+                int cd = DES.PC2[b] - 1; // 0-55
+                int half = (cd < 28) ? 0 : 28;
+                int source = half + (cd - half + shift) % 28;
+                KEY_BITS[i][b] = DES.PC1[source] - 1;
+            }
+        }
+
+        for (int k=0; k<32; k++) {
+            P_INV[DES.P[k]-1] = k;
+        }
+
+        for (int j=0; j<8; j++) {
+            for (int u=0; u<16; u++) {
+                for (int w=0; w<4; w++) {
+                    int s = DES.S(j+1, (byte)(u<<2 | w));
+                    for (int o=0; o<4; o++) {
+                        if ((s >> (3-o) & 1) != 0) {
+                            LEAVES[j][o][u] |= 1 << w;
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    //////////////////////////////////////////////////////////////////////
+    //
+    // Public interface
+    //
+    //////////////////////////////////////////////////////////////////////
+
+    /**
+     * Encrypt each of the supplied blocks with the key at the same
+     * index, writing the ciphertext to the same index of out.  The
+     * output array may be the same as the input array.  Equivalent to
+     * calling DES.encryptBlock(blocks[i], keys[i]) for every i.
+     */
+    public static void encrypt(long[] blocks, long[] keys, long[] out) {
+        crypt(blocks, keys, 0, out, false);
+    }
+
+    /**
+     * Decrypt each of the supplied blocks with the key at the same
+     * index.  The inverse of encrypt(long[], long[], long[]).
+     */
+    public static void decrypt(long[] blocks, long[] keys, long[] out) {
+        crypt(blocks, keys, 0, out, true);
+    }
+
+    /**
+     * Encrypt each of the supplied blocks with the same key.
+     */
+    public static void encrypt(long[] blocks, long key, long[] out) {
+        crypt(blocks, null, key, out, false);
+    }
+
+    /**
+     * Decrypt each of the supplied blocks with the same key.
+     */
+    public static void decrypt(long[] blocks, long key, long[] out) {
+        crypt(blocks, null, key, out, true);
+    }
+
+    //////////////////////////////////////////////////////////////////////
+    //
+    // Implementation
+    //
+    //////////////////////////////////////////////////////////////////////
+
+    /**
+     * Process the blocks 64 at a time.  If keys is null, every lane
+     * uses the single key value.
+     */
+    private static void crypt(long[] blocks, long[] keys, long key, long[] out, boolean decrypt) {
+        if (keys != null && keys.length != blocks.length) {
+            throw new IllegalArgumentException(
+                "expected "+blocks.length+" keys, got "+keys.length);
+        }
+        if (out.length < blocks.length) {
+            throw new IllegalArgumentException(
+                "output array too small: "+out.length+" < "+blocks.length);
+        }
+
+        long start = DESMetrics.start();
+        long[] planes = new long[64];
+        long[] keyPlanes = new long[64];
+        long[] scratch = new long[64+32+16];
+
+        if (keys == null) {
+            for (int q=0; q<64; q++) {
+                keyPlanes[q] = -(key >>> (63-q) & 1);
+            }
+        }
+
+        for (int offset=0; offset<blocks.length; offset+=64) {
+            int n = Math.min(64, blocks.length - offset);
+
+            System.arraycopy(blocks, offset, planes, 0, n);
+            for (int i=n; i<64; i++) {
+                planes[i] = 0;
+            }
+            transpose(planes);
+
+            if (keys != null) {
+                System.arraycopy(keys, offset, keyPlanes, 0, n);
+                for (int i=n; i<64; i++) {
+                    keyPlanes[i] = 0;
+                }
+                transpose(keyPlanes);
+            }
+
+            rounds(planes, keyPlanes, scratch, decrypt);
+
+            transpose(planes);
+            System.arraycopy(planes, 0, out, offset, n);
+        }
+
+        if (DESMetrics.ENABLED) {
+            DESMetrics.record(!decrypt, blocks.length, 8L*blocks.length, start);
+        }
+    }
+
+    /**
+     * Transpose a 64x64 bit matrix in place.  Before the call, long i
+     * holds lane i; afterwards, long p holds bit p (counting from the
+     * left) of every lane, with lane i in bit 63-i.  The operation is
+     * its own inverse.
+     */
+    static void transpose(long[] a) {
+        long m = 0x00000000FFFFFFFFL;
+        for (int j=32; j!=0; j>>>=1, m^=(m<<j)) {
+            for (int k=0; k<64; k=((k|j)+1)&~j) {
+                long t = (a[k] ^ (a[k|j]>>>j)) & m;
+                a[k] ^= t;
+                a[k|j] ^= (t<<j);
+            }
+        }
+    }
+
+    /**
+     * Run IP, the 16 rounds, and FP over a set of 64 bit planes, in
+     * place.
+     */
+    private static void rounds(long[] planes, long[] keyPlanes, long[] scratch, boolean decrypt) {
+        // scratch holds the previous planes, the Feistel output, and
+        // the 16 two-input functions used by the S-box networks.
+        final int F = 64, LOW = 96;
+
+        // initial permutation: left half in planes[0..31], right half
+        // in planes[32..63]
+        System.arraycopy(planes, 0, scratch, 0, 64);
+        for (int k=0; k<64; k++) {
+            planes[k] = scratch[DES.IP[k]-1];
+        }
+
+        int l = 0, r = 32;
+        for (int round=0; round<16; round++) {
+            int[] keyBits = KEY_BITS[decrypt ? 15-round : round];
+
+            for (int j=0; j<8; j++) {
+                // expansion and key mixing
+                int e = 6*j;
+                long x0 = planes[r + DES.E[e  ]-1] ^ keyPlanes[keyBits[e  ]];
+                long x1 = planes[r + DES.E[e+1]-1] ^ keyPlanes[keyBits[e+1]];
+                long x2 = planes[r + DES.E[e+2]-1] ^ keyPlanes[keyBits[e+2]];
+                long x3 = planes[r + DES.E[e+3]-1] ^ keyPlanes[keyBits[e+3]];
+                long x4 = planes[r + DES.E[e+4]-1] ^ keyPlanes[keyBits[e+4]];
+                long x5 = planes[r + DES.E[e+5]-1] ^ keyPlanes[keyBits[e+5]];
+
+                // every function of (x4, x5), indexed by truth table
+                long n4 = ~x4, n5 = ~x5;
+                long m0 = n4 & n5, m1 = n4 & x5, m2 = x4 & n5, m3 = x4 & x5;
+                scratch[LOW   ] = 0;
+                scratch[LOW+ 1] = m0;
+                scratch[LOW+ 2] = m1;
+                scratch[LOW+ 3] = m0 | m1;
+                scratch[LOW+ 4] = m2;
+                scratch[LOW+ 5] = m0 | m2;
+                scratch[LOW+ 6] = m1 | m2;
+                scratch[LOW+ 7] = m0 | m1 | m2;
+                scratch[LOW+ 8] = m3;
+                scratch[LOW+ 9] = m0 | m3;
+                scratch[LOW+10] = m1 | m3;
+                scratch[LOW+11] = m0 | m1 | m3;
+                scratch[LOW+12] = m2 | m3;
+                scratch[LOW+13] = m0 | m2 | m3;
+                scratch[LOW+14] = m1 | m2 | m3;
+                scratch[LOW+15] = -1L;
+
+                // substitution: select among them by (x0, x1, x2, x3),
+                // and route each output bit through P
+                int[][] leaves = LEAVES[j];
+                for (int o=0; o<4; o++) {
+                    int[] leaf = leaves[o];
+                    long a0 = mux(scratch[LOW+leaf[ 0]], scratch[LOW+leaf[ 1]], x3);
+                    long a1 = mux(scratch[LOW+leaf[ 2]], scratch[LOW+leaf[ 3]], x3);
+                    long a2 = mux(scratch[LOW+leaf[ 4]], scratch[LOW+leaf[ 5]], x3);
+                    long a3 = mux(scratch[LOW+leaf[ 6]], scratch[LOW+leaf[ 7]], x3);
+                    long a4 = mux(scratch[LOW+leaf[ 8]], scratch[LOW+leaf[ 9]], x3);
+                    long a5 = mux(scratch[LOW+leaf[10]], scratch[LOW+leaf[11]], x3);
+                    long a6 = mux(scratch[LOW+leaf[12]], scratch[LOW+leaf[13]], x3);
+                    long a7 = mux(scratch[LOW+leaf[14]], scratch[LOW+leaf[15]], x3);
+                    long b0 = mux(a0, a1, x2);
+                    long b1 = mux(a2, a3, x2);
+                    long b2 = mux(a4, a5, x2);
+                    long b3 = mux(a6, a7, x2);
+                    long c0 = mux(b0, b1, x1);
+                    long c1 = mux(b2, b3, x1);
+                    scratch[F + P_INV[4*j+o]] = mux(c0, c1, x0);
+                }
+            }
+
+            // the old right half becomes the new left half, and the
+            // old left half mixed with the Feistel output becomes the
+            // new right half.
+            for (int k=0; k<32; k++) {
+                planes[l+k] ^= scratch[F+k];
+            }
+            int t = l;
+            l = r;
+            r = t;
+        }
+
+        // undo the final swap (the FP input is R16 L16), and apply
+        // the final permutation.
+        System.arraycopy(planes, r, scratch, 0, 32);
+        System.arraycopy(planes, l, scratch, 32, 32);
+        for (int k=0; k<64; k++) {
+            planes[k] = scratch[DES.FP[k]-1];
+        }
+    }
+
+    /**
+     * Select a where s is 0, and b where s is 1.
+     */
+    private static long mux(long a, long b, long s) {
+        return a ^ ((a ^ b) & s);
+    }
+
+}
@@ -0,0 +1,34 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * A keyed 64-bit block cipher: either a single DES key schedule
+ * (DESKey) or a Triple-DES one (TripleDESKey).  The modes of operation
+ * and the parallel bulk methods work with either.
+ *
+ * Implementations must be immutable and thread-safe.
+ */
+public interface DESBlockCipher {
+
+    /**
+     * Encrypt a 64-bit block.
+     */
+    long encryptBlock(long block);
+
+    /**
+     * Decrypt a 64-bit block.
+     */
+    long decryptBlock(long block);
+
+}
@@ -0,0 +1,268 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.nio.ByteBuffer;
+
+/**
+ * A reusable cipher context: a DES or Triple-DES key schedule, with
+ * the operations that can be performed with it.
+ *
+ * A DESCipher is immutable, so one instance can be built when a key
+ * becomes known, and then shared by any number of threads without
+ * locking.  The methods here keep any chaining state (the CBC chaining
+ * value, or the CTR counter) in local variables for the duration of
+ * the call, so they need no per-thread or per-call objects, and do not
+ * allocate.  To continue a message across several calls, pass the
+ * value returned by one call to the next.
+ *
+ * ECB on byte arrays with a single DES key is performed by the engine
+ * that DESEngines selects for the payload size.  (The bitsliced
+ * engine, if selected, allocates working space for each call.)
+ *
+ * For streaming use, where the data arrives in arbitrary pieces, the
+ * mode factory methods create a DESMode holding the running state of
+ * one message.  Those are cheap to create, since the key schedule is
+ * shared, but are not thread-safe.
+ */
+public final class DESCipher {
+
+    private final DESBlockCipher key;
+
+    /**
+     * Create a context for a DESKey, a TripleDESKey, or any other
+     * DESBlockCipher.
+     */
+    public DESCipher(DESBlockCipher key) {
+        if (key == null) {
+            throw new NullPointerException("key");
+        }
+        this.key = key;
+    }
+
+    /**
+     * Create a context from a raw key: 8 bytes for DES, or 16 or 24
+     * bytes for Triple-DES.
+     */
+    public DESCipher(byte[] key) {
+        this((key.length == 8) ? new DESKey(key) : new TripleDESKey(key));
+    }
+
+    /**
+     * Return the key schedule used by this context.
+     */
+    public DESBlockCipher getKey() {
+        return key;
+    }
+
+    //////////////////////////////////////////////////////////////////////
+    //
+    // Single blocks
+    //
+    //////////////////////////////////////////////////////////////////////
+
+    public long encryptBlock(long block) {
+        return key.encryptBlock(block);
+    }
+
+    public long decryptBlock(long block) {
+        return key.decryptBlock(block);
+    }
+
+    //////////////////////////////////////////////////////////////////////
+    //
+    // ECB
+    //
+    //////////////////////////////////////////////////////////////////////
+
+    /**
+     * Encrypt length bytes (a multiple of 8) in ECB mode.  The input
+     * and output may be the same region of the same array.
+     */
+    public void encrypt(byte[] in, int inOffset, int length, byte[] out, int outOffset) {
+        if (key instanceof DESKey) {
+            DESEngines.forLength(length).encrypt(in, inOffset, length, out, outOffset, (DESKey) key);
+        } else if (key instanceof TripleDESKey) {
+            TripleDES.encrypt(in, inOffset, length, out, outOffset, (TripleDESKey) key);
+        } else {
+            DES.checkBlockLength(length);
+            DESMode.ecb(key, true).update(in, inOffset, length, out, outOffset);
+        }
+    }
+
+    /**
+     * Decrypt length bytes (a multiple of 8) in ECB mode.
+     */
+    public void decrypt(byte[] in, int inOffset, int length, byte[] out, int outOffset) {
+        if (key instanceof DESKey) {
+            DESEngines.forLength(length).decrypt(in, inOffset, length, out, outOffset, (DESKey) key);
+        } else if (key instanceof TripleDESKey) {
+            TripleDES.decrypt(in, inOffset, length, out, outOffset, (TripleDESKey) key);
+        } else {
+            DES.checkBlockLength(length);
+            DESMode.ecb(key, false).update(in, inOffset, length, out, outOffset);
+        }
+    }
+
+    /**
+     * Encrypt the remaining bytes of src (a multiple of 8) into dst
+     * in ECB mode, advancing the position of both.
+     */
+    public void encrypt(ByteBuffer src, ByteBuffer dst) {
+        if (key instanceof DESKey) {
+            DES.encrypt(src, dst, (DESKey) key);
+        } else if (key instanceof TripleDESKey) {
+            TripleDES.encrypt(src, dst, (TripleDESKey) key);
+        } else {
+            DES.checkBlockLength(src.remaining());
+            DESMode.ecb(key, true).update(src, dst);
+        }
+    }
+
+    /**
+     * Decrypt the remaining bytes of src (a multiple of 8) into dst
+     * in ECB mode, advancing the position of both.
+     */
+    public void decrypt(ByteBuffer src, ByteBuffer dst) {
+        if (key instanceof DESKey) {
+            DES.decrypt(src, dst, (DESKey) key);
+        } else if (key instanceof TripleDESKey) {
+            TripleDES.decrypt(src, dst, (TripleDESKey) key);
+        } else {
+            DES.checkBlockLength(src.remaining());
+            DESMode.ecb(key, false).update(src, dst);
+        }
+    }
+
+    //////////////////////////////////////////////////////////////////////
+    //
+    // One-shot CBC and CTR
+    //
+    //////////////////////////////////////////////////////////////////////
+
+    /**
+     * Encrypt length bytes (a multiple of 8) in CBC mode, with the
+     * specified IV.  The input and output may be the same region of
+     * the same array.
+     *
+     * @return the last ciphertext block, which is the IV with which
+     *     to encrypt the rest of the message.
+     */
+    public long encryptCBC(long iv, byte[] in, int inOffset, int length, byte[] out, int outOffset) {
+        DES.checkBlockLength(length);
+        long start = DESMetrics.start();
+        long chain = iv;
+        for (int i=0; i<length; i+=8) {
+            chain = key.encryptBlock(DES.readLong(in, inOffset+i) ^ chain);
+            DES.writeLong(out, outOffset+i, chain);
+        }
+        if (DESMetrics.ENABLED) {
+            DESMetrics.record(true, length/8, length, start);
+        }
+        return chain;
+    }
+
+    /**
+     * Decrypt length bytes (a multiple of 8) in CBC mode, with the
+     * specified IV.  The input and output may be the same region of
+     * the same array.
+     *
+     * @return the last ciphertext block, which is the IV with which
+     *     to decrypt the rest of the message.
+     */
+    public long decryptCBC(long iv, byte[] in, int inOffset, int length, byte[] out, int outOffset) {
+        DES.checkBlockLength(length);
+        long start = DESMetrics.start();
+        long chain = iv;
+        for (int i=0; i<length; i+=8) {
+            long c = DES.readLong(in, inOffset+i);
+            DES.writeLong(out, outOffset+i, key.decryptBlock(c) ^ chain);
+            chain = c;
+        }
+        if (DESMetrics.ENABLED) {
+            DESMetrics.record(false, length/8, length, start);
+        }
+        return chain;
+    }
+
+    /**
+     * Encrypt or decrypt (the same operation) length bytes in CTR
+     * mode, with the counter starting at the specified value.  The
+     * length need not be a multiple of 8; the unused keystream of a
+     * final partial block is discarded.
+     *
+     * @return the counter value for the block following the last one
+     *     used, with which to process the rest of the message (if the
+     *     length was a multiple of 8).
+     */
+    public long ctr(long counter, byte[] in, int inOffset, int length, byte[] out, int outOffset) {
+        DES.checkStreamLength(length);
+        long start = DESMetrics.start();
+        int whole = length & ~7;
+        for (int i=0; i<whole; i+=8) {
+            DES.writeLong(out, outOffset+i, DES.readLong(in, inOffset+i) ^ key.encryptBlock(counter++));
+        }
+        if (whole < length) {
+            long keystream = key.encryptBlock(counter++);
+            for (int i=whole; i<length; i++) {
+                out[outOffset+i] = (byte) (in[inOffset+i] ^ (keystream >>> (56 - 8*(i-whole))));
+            }
+        }
+        if (DESMetrics.ENABLED) {
+            DESMetrics.record(true, (length+7)/8, length, start);
+        }
+        return counter;
+    }
+
+    //////////////////////////////////////////////////////////////////////
+    //
+    // Streaming modes
+    //
+    //////////////////////////////////////////////////////////////////////
+
+    /**
+     * Create an ECB encryptor or decryptor using this key.
+     */
+    public DESMode ecb(boolean encrypt) {
+        return DESMode.ecb(key, encrypt);
+    }
+
+    /**
+     * Create a CBC encryptor or decryptor using this key.
+     */
+    public DESMode cbc(long iv, boolean encrypt) {
+        return DESMode.cbc(key, iv, encrypt);
+    }
+
+    /**
+     * Create a CFB encryptor or decryptor using this key.
+     */
+    public DESMode cfb(long iv, boolean encrypt) {
+        return DESMode.cfb(key, iv, encrypt);
+    }
+
+    /**
+     * Create an OFB encryptor or decryptor using this key.
+     */
+    public DESMode ofb(long iv, boolean encrypt) {
+        return DESMode.ofb(key, iv, encrypt);
+    }
+
+    /**
+     * Create a CTR encryptor or decryptor using this key.
+     */
+    public DESMode ctr(long counter, boolean encrypt) {
+        return DESMode.ctr(key, counter, encrypt);
+    }
+
+}
@@ -0,0 +1,306 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.nio.ByteBuffer;
+import java.security.AlgorithmParameters;
+import java.security.InvalidAlgorithmParameterException;
+import java.security.InvalidKeyException;
+import java.security.Key;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.security.spec.AlgorithmParameterSpec;
+import java.security.spec.InvalidParameterSpecException;
+import java.util.Arrays;
+
+import javax.crypto.BadPaddingException;
+import javax.crypto.Cipher;
+import javax.crypto.CipherSpi;
+import javax.crypto.IllegalBlockSizeException;
+import javax.crypto.NoSuchPaddingException;
+import javax.crypto.ShortBufferException;
+import javax.crypto.spec.IvParameterSpec;
+
+/**
+ * The JCA cipher implementation behind DESProvider: "DES" in ECB, CBC
+ * or CTR mode, with NoPadding or PKCS5Padding.  The default, as with
+ * SunJCE, is ECB with PKCS5Padding.  CTR turns DES into a stream
+ * cipher, so, as with SunJCE, it must be used with NoPadding.
+ *
+ * The work is done by a DESMode wrapped in a DESPaddedMode.  The
+ * ByteBuffer update and doFinal methods are overridden so that heap
+ * and direct buffers are processed in place, instead of through the
+ * temporary arrays used by the CipherSpi defaults.
+ *
+ * As with every Cipher, instances are not thread-safe.
+ */
+public final class DESCipherSpi extends CipherSpi {
+
+    private static final int ECB = 0, CBC = 1, CTR = 2;
+
+    private int mode = ECB;
+    private DESPadding padding = DESPadding.PKCS5;
+
+    private DESKey key;
+    private long iv;
+    private boolean encrypting;
+
+    /** The state of the current message, or null if not initialized. */
+    private DESPaddedMode state;
+
+    public DESCipherSpi() {
+    }
+
+    //////////////////////////////////////////////////////////////////////
+    //
+    // Configuration
+    //
+    //////////////////////////////////////////////////////////////////////
+
+    protected void engineSetMode(String name) throws NoSuchAlgorithmException {
+        if (name.equalsIgnoreCase("ECB")) {
+            mode = ECB;
+        } else if (name.equalsIgnoreCase("CBC")) {
+            mode = CBC;
+        } else if (name.equalsIgnoreCase("CTR")) {
+            mode = CTR;
+        } else {
+            throw new NoSuchAlgorithmException("unsupported mode: "+name);
+        }
+    }
+
+    protected void engineSetPadding(String name) throws NoSuchPaddingException {
+        if (name.equalsIgnoreCase("NoPadding")) {
+            padding = DESPadding.NONE;
+        } else if (name.equalsIgnoreCase("PKCS5Padding")) {
+            if (mode == CTR) {
+                throw new NoSuchPaddingException("CTR mode must be used with NoPadding");
+            }
+            padding = DESPadding.PKCS5;
+        } else {
+            throw new NoSuchPaddingException("unsupported padding: "+name);
+        }
+    }
+
+    protected int engineGetBlockSize() {
+        return 8;
+    }
+
+    protected int engineGetOutputSize(int inputLen) {
+        return (state == null) ? inputLen + 8 : state.getFinalOutputSize(inputLen);
+    }
+
+    protected byte[] engineGetIV() {
+        if (mode == ECB || key == null) {
+            return null;
+        }
+        byte[] bytes = new byte[8];
+        DES.writeLong(bytes, 0, iv);
+        return bytes;
+    }
+
+    protected AlgorithmParameters engineGetParameters() {
+        byte[] bytes = engineGetIV();
+        if (bytes == null) {
+            return null;
+        }
+        try {
+            AlgorithmParameters params = AlgorithmParameters.getInstance("DES");
+            params.init(new IvParameterSpec(bytes));
+            return params;
+        } catch (NoSuchAlgorithmException e) {
+            return null;
+        } catch (InvalidParameterSpecException e) {
+            return null;
+        }
+    }
+
+    protected void engineInit(int opmode, Key key, SecureRandom random)
+        throws InvalidKeyException
+    {
+        try {
+            engineInit(opmode, key, (AlgorithmParameterSpec) null, random);
+        } catch (InvalidAlgorithmParameterException e) {
+            throw new InvalidKeyException(e.getMessage());
+        }
+    }
+
+    protected void engineInit(int opmode, Key key, AlgorithmParameters params, SecureRandom random)
+        throws InvalidKeyException, InvalidAlgorithmParameterException
+    {
+        AlgorithmParameterSpec spec = null;
+        if (params != null) {
+            try {
+                spec = params.getParameterSpec(IvParameterSpec.class);
+            } catch (InvalidParameterSpecException e) {
+                throw new InvalidAlgorithmParameterException(e.getMessage());
+            }
+        }
+        engineInit(opmode, key, spec, random);
+    }
+
+    protected void engineInit(int opmode, Key key, AlgorithmParameterSpec params, SecureRandom random)
+        throws InvalidKeyException, InvalidAlgorithmParameterException
+    {
+        byte[] encoded = key.getEncoded();
+        if (encoded == null || encoded.length < 8) {
+            throw new InvalidKeyException("DES keys must be at least 8 bytes");
+        }
+        if (mode == CTR && padding != DESPadding.NONE) {
+            // the padding may have been set before the mode
+            throw new InvalidAlgorithmParameterException("CTR mode must be used with NoPadding");
+        }
+        boolean encrypt = (opmode == Cipher.ENCRYPT_MODE || opmode == Cipher.WRAP_MODE);
+
+        long newIV = 0;
+        if (mode != ECB) {
+            if (params instanceof IvParameterSpec) {
+                byte[] bytes = ((IvParameterSpec) params).getIV();
+                if (bytes.length != 8) {
+                    throw new InvalidAlgorithmParameterException("IV must be 8 bytes");
+                }
+                newIV = DES.readLong(bytes, 0);
+            } else if (params != null) {
+                throw new InvalidAlgorithmParameterException("IvParameterSpec required");
+            } else if (encrypt) {
+                newIV = ((random != null) ? random : new SecureRandom()).nextLong();
+            } else {
+                throw new InvalidAlgorithmParameterException("IV required for decryption");
+            }
+        } else if (params != null) {
+            throw new InvalidAlgorithmParameterException("ECB mode does not use an IV");
+        }
+
+        this.key = new DESKey(DES.readLong(encoded, 0));
+        this.iv = newIV;
+        this.encrypting = encrypt;
+        reset();
+    }
+
+    /**
+     * Start a new message with the current key and IV.
+     */
+    private void reset() {
+        DESMode m;
+        switch (mode) {
+        case CBC:
+            m = DESMode.cbc(key, iv, encrypting);
+            break;
+        case CTR:
+            m = DESMode.ctr(key, iv, encrypting);
+            break;
+        default:
+            m = DESMode.ecb(key, encrypting);
+            break;
+        }
+        state = new DESPaddedMode(m, padding);
+    }
+
+    private void checkInitialized() {
+        if (state == null) {
+            throw new IllegalStateException("cipher not initialized");
+        }
+    }
+
+    //////////////////////////////////////////////////////////////////////
+    //
+    // byte[] operations
+    //
+    //////////////////////////////////////////////////////////////////////
+
+    protected byte[] engineUpdate(byte[] input, int inputOffset, int inputLen) {
+        checkInitialized();
+        byte[] output = new byte[state.getOutputSize(inputLen)];
+        int n = state.update(input, inputOffset, inputLen, output, 0);
+        return (n == output.length) ? output : Arrays.copyOf(output, n);
+    }
+
+    protected int engineUpdate(byte[] input, int inputOffset, int inputLen,
+                               byte[] output, int outputOffset)
+        throws ShortBufferException
+    {
+        checkInitialized();
+        if (output.length - outputOffset < state.getOutputSize(inputLen)) {
+            throw new ShortBufferException();
+        }
+        return state.update(input, inputOffset, inputLen, output, outputOffset);
+    }
+
+    protected byte[] engineDoFinal(byte[] input, int inputOffset, int inputLen)
+        throws IllegalBlockSizeException, BadPaddingException
+    {
+        checkInitialized();
+        byte[] output = new byte[state.getFinalOutputSize(inputLen)];
+        int n;
+        try {
+            n = doFinal(input, inputOffset, inputLen, output, 0);
+        } catch (ShortBufferException e) {
+            throw new IllegalStateException(e);
+        }
+        return (n == output.length) ? output : Arrays.copyOf(output, n);
+    }
+
+    protected int engineDoFinal(byte[] input, int inputOffset, int inputLen,
+                                byte[] output, int outputOffset)
+        throws ShortBufferException, IllegalBlockSizeException, BadPaddingException
+    {
+        checkInitialized();
+        return doFinal(input, inputOffset, inputLen, output, outputOffset);
+    }
+
+    private int doFinal(byte[] input, int inputOffset, int inputLen, byte[] output, int outputOffset)
+        throws ShortBufferException, IllegalBlockSizeException, BadPaddingException
+    {
+        if (output.length - outputOffset < state.getFinalOutputSize(inputLen)) {
+            throw new ShortBufferException();
+        }
+        try {
+            int n = (inputLen > 0)
+                ? state.update(input, inputOffset, inputLen, output, outputOffset)
+                : 0;
+            return n + state.doFinal(output, outputOffset + n);
+        } finally {
+            reset();
+        }
+    }
+
+    //////////////////////////////////////////////////////////////////////
+    //
+    // ByteBuffer operations
+    //
+    //////////////////////////////////////////////////////////////////////
+
+    protected int engineUpdate(ByteBuffer input, ByteBuffer output) throws ShortBufferException {
+        checkInitialized();
+        if (output.remaining() < state.getOutputSize(input.remaining())) {
+            throw new ShortBufferException();
+        }
+        return state.update(input, output);
+    }
+
+    protected int engineDoFinal(ByteBuffer input, ByteBuffer output)
+        throws ShortBufferException, IllegalBlockSizeException, BadPaddingException
+    {
+        checkInitialized();
+        if (output.remaining() < state.getFinalOutputSize(input.remaining())) {
+            throw new ShortBufferException();
+        }
+        try {
+            int n = state.update(input, output);
+            return n + state.doFinal(output);
+        } finally {
+            reset();
+        }
+    }
+
+}
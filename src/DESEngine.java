@@ -0,0 +1,61 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * One implementation of the DES algorithm: a key schedule, single
+ * block operations, and ECB bulk operations.  Every engine produces
+ * the same results; they differ only in speed, which depends on the
+ * payload size and the machine.  DESEngines lists the available
+ * engines, and picks the fastest one for a given payload size.
+ *
+ * Key schedules (DESKey) are interchangeable between engines.
+ *
+ * Implementations must be immutable and thread-safe.
+ */
+public interface DESEngine {
+
+    /**
+     * Return the short name of this engine, as used by the
+     * "des.engine" system property.
+     */
+    String getName();
+
+    /**
+     * Build the key schedule for a 64-bit key value.
+     */
+    DESKey createKey(long key);
+
+    /**
+     * Encrypt a 64-bit block.
+     */
+    long encryptBlock(long block, DESKey key);
+
+    /**
+     * Decrypt a 64-bit block.
+     */
+    long decryptBlock(long block, DESKey key);
+
+    /**
+     * Encrypt length bytes (a multiple of 8) in ECB mode.  The input
+     * and output may be the same region of the same array.
+     */
+    void encrypt(byte[] in, int inOffset, int length, byte[] out, int outOffset, DESKey key);
+
+    /**
+     * Decrypt length bytes (a multiple of 8) in ECB mode.  The input
+     * and output may be the same region of the same array.
+     */
+    void decrypt(byte[] in, int inOffset, int length, byte[] out, int outOffset, DESKey key);
+
+}
@@ -0,0 +1,503 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.CompilationMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Registry of the available DES engines, which selects the fastest one
+ * for each payload size.
+ *
+ * The engines are:
+ *
+ *   reference - the textbook implementation: bit-by-bit permutations
+ *               and key schedule (DES.encryptBlockReference()).
+ *   table     - SP tables, delta-swap IP/FP and the table-driven key
+ *               schedule (DES.encryptBlock()).
+ *   lanes     - the table engine with several blocks interleaved
+ *               (DESLanes.getDefault()), or the Vector API backend
+ *               if the "des.lanes" property selects it.
+ *   bitslice  - 64 blocks at a time in bit planes (DESBitslice).
+ *
+ * Payloads are divided into size classes: small (under 256 bytes),
+ * medium (under 16KB) and large.  By default, a built-in profile is
+ * used, which selects the lanes engine for every class: that is what
+ * calibration picks on typical x86 machines.
+ *
+ * Calibration is opt-in, since it spends up to several seconds of CPU
+ * time, which short-lived processes can't afford.  When it is enabled,
+ * the first time an engine is asked for, a background thread starts
+ * timing the engines on a typical payload of each class, and when it
+ * finishes its choices are used from then on; until then, the default
+ * profile is used.  Calibration never delays the caller.
+ *
+ * The timings are only trusted when they are clear.  The engines are
+ * first warmed up until the JIT has stopped compiling (as reported by
+ * the CompilationMXBean), since until then their relative speeds
+ * change from one run to the next, and on a machine with few cores the
+ * compiler threads take time away from the timing.  Then each class is timed several times with the engines
+ * taking turns, and the median of each engine's rates is compared.
+ * Another engine replaces the default for a class only if it is at
+ * least 10% faster, so engines which are really equal for a size class
+ * don't flip back and forth between runs.  The reference engine is
+ * never chosen by calibration.
+ *
+ * The choice can be controlled with these system properties:
+ *
+ *   des.engine            force the named engine for every size, for
+ *                         debugging or comparison.
+ *   des.engine.calibrate  "true" to calibrate in the background.
+ *   des.engine.profile    a file to load the choices from, instead of
+ *                         calibrating.  If the file does not exist,
+ *                         calibration is enabled and its results are
+ *                         saved to the file, for later runs.  The file
+ *                         is a Properties file mapping each size class
+ *                         name to an engine name.
+ */
+public final class DESEngines {
+
+    /** System property naming an engine to use for every size. */
+    public static final String ENGINE_PROPERTY = "des.engine";
+
+    /** System property naming a calibration profile file. */
+    public static final String PROFILE_PROPERTY = "des.engine.profile";
+
+    /** System property which enables background calibration. */
+    public static final String CALIBRATE_PROPERTY = "des.engine.calibrate";
+
+    /** The size class names, smallest first. */
+    private static final String[] SIZE_CLASSES = { "small", "medium", "large" };
+
+    /** The payload size timed for each size class. */
+    private static final int[] CALIBRATION_SIZES = { 64, 4096, 64*1024 };
+
+    /** How long each engine runs in each round of warm-up, in nanoseconds. */
+    private static final long WARMUP_NANOS = 100*1000*1000L;
+
+    /** The most time to spend warming up, in nanoseconds. */
+    private static final long MAX_WARMUP_NANOS = 5000*1000*1000L;
+
+    /** How many times to time each engine on each size class. */
+    private static final int TRIALS = 7;
+
+    /** How long each timing lasts, in nanoseconds. */
+    private static final long TRIAL_NANOS = 10*1000*1000L;
+
+    /** How much faster than the default another engine must be. */
+    private static final double MARGIN = 1.10;
+
+    private static final List<DESEngine> ENGINES = Collections.unmodifiableList(Arrays.<DESEngine>asList(
+        new ReferenceEngine(), new TableEngine(), new LanesEngine(), new BitsliceEngine()));
+
+    /** The engine used for each size class, unless calibrated. */
+    private static final String[] DEFAULT_PROFILE = { "lanes", "lanes", "lanes" };
+
+    /** The engine chosen for each size class, once known. */
+    private static volatile DESEngine[] selected;
+
+    /** The background calibration thread, if one has been started. */
+    private static Thread calibrator;
+
+    private DESEngines() {
+    }
+
+    //////////////////////////////////////////////////////////////////////
+    //
+    // Public interface
+    //
+    //////////////////////////////////////////////////////////////////////
+
+    /**
+     * Return all of the available engines.
+     */
+    public static List<DESEngine> getEngines() {
+        return ENGINES;
+    }
+
+    /**
+     * Return the engine with the specified name.
+     *
+     * @throws IllegalArgumentException if there is no such engine.
+     */
+    public static DESEngine getEngine(String name) {
+        for (DESEngine engine : ENGINES) {
+            if (engine.getName().equals(name)) {
+                return engine;
+            }
+        }
+        throw new IllegalArgumentException("unknown DES engine: "+name);
+    }
+
+    /**
+     * Return the engine to use for a payload of the specified length.
+     * This never waits for calibration: unless it has been enabled and
+     * has finished, the engine from the default profile is returned.
+     */
+    public static DESEngine forLength(int length) {
+        DESEngine[] engines = selected;
+        if (engines == null) {
+            engines = select();
+        }
+        return engines[sizeClass(length)];
+    }
+
+    /**
+     * Return the engine selected for each size class, as a Properties
+     * object in the format of the profile file.  Unlike forLength(),
+     * this waits for calibration to finish, if necessary.  If the
+     * thread is interrupted while waiting, the current selection is
+     * returned, with the interrupt status set.
+     */
+    public static Properties getProfile() {
+        forLength(0);
+        Thread thread;
+        synchronized (DESEngines.class) {
+            thread = calibrator;
+        }
+        if (thread != null) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        DESEngine[] engines = selected;
+        Properties profile = new Properties();
+        for (int i=0; i<SIZE_CLASSES.length; i++) {
+            profile.setProperty(SIZE_CLASSES[i], engines[i].getName());
+        }
+        return profile;
+    }
+
+    //////////////////////////////////////////////////////////////////////
+    //
+    // Selection
+    //
+    //////////////////////////////////////////////////////////////////////
+
+    private static int sizeClass(int length) {
+        return (length < 256) ? 0 : (length < 16*1024) ? 1 : 2;
+    }
+
+    private static synchronized DESEngine[] select() {
+        if (selected != null) {
+            return selected;
+        }
+        DESEngine[] engines = new DESEngine[SIZE_CLASSES.length];
+        String forced = System.getProperty(ENGINE_PROPERTY);
+        final String profile = System.getProperty(PROFILE_PROPERTY);
+        if (forced != null) {
+            Arrays.fill(engines, getEngine(forced));
+        } else if (profile != null && new File(profile).exists()) {
+            engines = loadProfile(new File(profile));
+        } else if (profile == null && !Boolean.getBoolean(CALIBRATE_PROPERTY)) {
+            engines = defaultProfile();
+        } else {
+            // use the default profile until calibration is done
+            engines = defaultProfile();
+            calibrator = new Thread("DES engine calibration") {
+                public void run() {
+                    DESEngine[] best = calibrate();
+                    selected = best;
+                    if (profile != null) {
+                        try {
+                            saveProfile(new File(profile), best);
+                        } catch (IOException e) {
+                            // the profile is only a cache; calibrate again next time
+                        }
+                    }
+                }
+            };
+            calibrator.setDaemon(true);
+            calibrator.start();
+        }
+        selected = engines;
+        return engines;
+    }
+
+    private static DESEngine[] defaultProfile() {
+        DESEngine[] engines = new DESEngine[SIZE_CLASSES.length];
+        for (int i=0; i<SIZE_CLASSES.length; i++) {
+            engines[i] = getEngine(DEFAULT_PROFILE[i]);
+        }
+        return engines;
+    }
+
+    /**
+     * Time the engines on each size class, and return the fastest for
+     * each, as described above.  This usually takes one to three
+     * seconds.
+     */
+    static DESEngine[] calibrate() {
+        DESEngine[] best = defaultProfile();
+        List<DESEngine> candidates = new ArrayList<DESEngine>();
+        for (DESEngine engine : ENGINES) {
+            if (!engine.getName().equals("reference")) {
+                candidates.add(engine);
+            }
+        }
+        DESKey key = new DESKey(0x133457799BBCDFF1L);
+        byte[][] buffers = new byte[SIZE_CLASSES.length][];
+        for (int c=0; c<SIZE_CLASSES.length; c++) {
+            buffers[c] = new byte[CALIBRATION_SIZES[c]];
+        }
+
+        // warm up every engine on every size, in rounds, until a whole
+        // round passes without the JIT compiling anything
+        CompilationMXBean jit = ManagementFactory.getCompilationMXBean();
+        boolean monitored = (jit != null) && jit.isCompilationTimeMonitoringSupported();
+        long warmupStart = System.nanoTime();
+        long compileTime = -1;
+        while (true) {
+            for (DESEngine engine : candidates) {
+                long start = System.nanoTime();
+                do {
+                    for (byte[] buffer : buffers) {
+                        engine.encrypt(buffer, 0, buffer.length, buffer, 0, key);
+                    }
+                } while (System.nanoTime() - start < WARMUP_NANOS);
+            }
+            long previous = compileTime;
+            compileTime = monitored ? jit.getTotalCompilationTime() : 0;
+            if (compileTime == previous || System.nanoTime() - warmupStart > MAX_WARMUP_NANOS) {
+                break;
+            }
+        }
+
+        double[][] rates = new double[candidates.size()][TRIALS];
+        for (int c=0; c<SIZE_CLASSES.length; c++) {
+            byte[] buffer = buffers[c];
+            for (int t=0; t<TRIALS; t++) {
+                for (int e=0; e<candidates.size(); e++) {
+                    rates[e][t] = rate(candidates.get(e), buffer, key);
+                }
+            }
+            double bestRate = MARGIN * median(rates[candidates.indexOf(best[c])]);
+            for (int e=0; e<candidates.size(); e++) {
+                double rate = median(rates[e]);
+                if (rate > bestRate) {
+                    bestRate = rate;
+                    best[c] = candidates.get(e);
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Run an engine on the buffer repeatedly for TRIAL_NANOS, and
+     * return the rate in bytes per nanosecond.
+     */
+    private static double rate(DESEngine engine, byte[] buffer, DESKey key) {
+        long bytes = 0;
+        long start = System.nanoTime();
+        long elapsed;
+        do {
+            engine.encrypt(buffer, 0, buffer.length, buffer, 0, key);
+            bytes += buffer.length;
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < TRIAL_NANOS);
+        return (double) bytes / elapsed;
+    }
+
+    private static double median(double[] values) {
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length/2];
+    }
+
+    private static DESEngine[] loadProfile(File file) {
+        Properties profile = new Properties();
+        try {
+            InputStream in = new FileInputStream(file);
+            try {
+                profile.load(in);
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            throw new IllegalArgumentException("cannot read DES engine profile: "+file, e);
+        }
+        DESEngine[] engines = new DESEngine[SIZE_CLASSES.length];
+        for (int i=0; i<SIZE_CLASSES.length; i++) {
+            String name = profile.getProperty(SIZE_CLASSES[i]);
+            if (name == null) {
+                throw new IllegalArgumentException(
+                    "DES engine profile "+file+" has no entry for "+SIZE_CLASSES[i]);
+            }
+            engines[i] = getEngine(name.trim());
+        }
+        return engines;
+    }
+
+    private static void saveProfile(File file, DESEngine[] engines) throws IOException {
+        Properties profile = new Properties();
+        for (int i=0; i<SIZE_CLASSES.length; i++) {
+            profile.setProperty(SIZE_CLASSES[i], engines[i].getName());
+        }
+        OutputStream out = new FileOutputStream(file);
+        try {
+            profile.store(out, "DES engine calibration");
+        } finally {
+            out.close();
+        }
+    }
+
+    //////////////////////////////////////////////////////////////////////
+    //
+    // Engines
+    //
+    //////////////////////////////////////////////////////////////////////
+
+    static final class ReferenceEngine implements DESEngine {
+        public String getName() {
+            return "reference";
+        }
+        public DESKey createKey(long key) {
+            long[] subkeys = new long[16];
+            DES.createSubkeysReference(key, subkeys, 0);
+            return new DESKey(key, subkeys);
+        }
+        public long encryptBlock(long block, DESKey key) {
+            return DES.encryptBlockReference(block, key);
+        }
+        public long decryptBlock(long block, DESKey key) {
+            return DES.decryptBlockReference(block, key);
+        }
+        public void encrypt(byte[] in, int inOffset, int length, byte[] out, int outOffset, DESKey key) {
+            DES.checkBlockLength(length);
+            long start = DESMetrics.start();
+            for (int i=0; i<length; i+=8) {
+                DES.writeLong(out, outOffset+i, DES.encryptBlockReference(DES.readLong(in, inOffset+i), key));
+            }
+            if (DESMetrics.ENABLED) {
+                DESMetrics.record(true, length/8, length, start);
+            }
+        }
+        public void decrypt(byte[] in, int inOffset, int length, byte[] out, int outOffset, DESKey key) {
+            DES.checkBlockLength(length);
+            long start = DESMetrics.start();
+            for (int i=0; i<length; i+=8) {
+                DES.writeLong(out, outOffset+i, DES.decryptBlockReference(DES.readLong(in, inOffset+i), key));
+            }
+            if (DESMetrics.ENABLED) {
+                DESMetrics.record(false, length/8, length, start);
+            }
+        }
+    }
+
+    static final class TableEngine implements DESEngine {
+        public String getName() {
+            return "table";
+        }
+        public DESKey createKey(long key) {
+            return new DESKey(key);
+        }
+        public long encryptBlock(long block, DESKey key) {
+            return DES.encryptBlock(block, key);
+        }
+        public long decryptBlock(long block, DESKey key) {
+            return DES.decryptBlock(block, key);
+        }
+        public void encrypt(byte[] in, int inOffset, int length, byte[] out, int outOffset, DESKey key) {
+            DES.encrypt(in, inOffset, length, out, outOffset, key);
+        }
+        public void decrypt(byte[] in, int inOffset, int length, byte[] out, int outOffset, DESKey key) {
+            DES.decrypt(in, inOffset, length, out, outOffset, key);
+        }
+    }
+
+    static final class LanesEngine implements DESEngine {
+        private final DESEngine vector = DESLanes.getDefaultVector();
+        public String getName() {
+            return "lanes";
+        }
+        public DESKey createKey(long key) {
+            return new DESKey(key);
+        }
+        public long encryptBlock(long block, DESKey key) {
+            return DES.encryptBlock(block, key);
+        }
+        public long decryptBlock(long block, DESKey key) {
+            return DES.decryptBlock(block, key);
+        }
+        public void encrypt(byte[] in, int inOffset, int length, byte[] out, int outOffset, DESKey key) {
+            if (vector != null) {
+                vector.encrypt(in, inOffset, length, out, outOffset, key);
+            } else {
+                DESLanes.getDefault().encrypt(in, inOffset, length, out, outOffset, key);
+            }
+        }
+        public void decrypt(byte[] in, int inOffset, int length, byte[] out, int outOffset, DESKey key) {
+            if (vector != null) {
+                vector.decrypt(in, inOffset, length, out, outOffset, key);
+            } else {
+                DESLanes.getDefault().decrypt(in, inOffset, length, out, outOffset, key);
+            }
+        }
+    }
+
+    static final class BitsliceEngine implements DESEngine {
+        public String getName() {
+            return "bitslice";
+        }
+        public DESKey createKey(long key) {
+            return new DESKey(key);
+        }
+        public long encryptBlock(long block, DESKey key) {
+            long[] blocks = { block };
+            DESBitslice.encrypt(blocks, key.key, blocks);
+            return blocks[0];
+        }
+        public long decryptBlock(long block, DESKey key) {
+            long[] blocks = { block };
+            DESBitslice.decrypt(blocks, key.key, blocks);
+            return blocks[0];
+        }
+        public void encrypt(byte[] in, int inOffset, int length, byte[] out, int outOffset, DESKey key) {
+            crypt(in, inOffset, length, out, outOffset, key, false);
+        }
+        public void decrypt(byte[] in, int inOffset, int length, byte[] out, int outOffset, DESKey key) {
+            crypt(in, inOffset, length, out, outOffset, key, true);
+        }
+        private static void crypt(byte[] in, int inOffset, int length, byte[] out, int outOffset,
+                                  DESKey key, boolean decrypt) {
+            DES.checkBlockLength(length);
+            long[] blocks = new long[length/8];
+            for (int i=0; i<blocks.length; i++) {
+                blocks[i] = DES.readLong(in, inOffset+8*i);
+            }
+            if (decrypt) {
+                DESBitslice.decrypt(blocks, key.key, blocks);
+            } else {
+                DESBitslice.encrypt(blocks, key.key, blocks);
+            }
+            for (int i=0; i<blocks.length; i++) {
+                DES.writeLong(out, outOffset+8*i, blocks[i]);
+            }
+        }
+    }
+
+}
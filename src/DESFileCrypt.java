@@ -0,0 +1,195 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Encrypt or decrypt whole files through memory mappings.
+ *
+ * The input and output files are mapped one region at a time with
+ * FileChannel.map(), and each region is handed to DESParallel, which
+ * splits it across threads and encrypts straight from the input
+ * mapping into the output mapping.  No file data is copied onto the
+ * Java heap, and files larger than 2GB (the limit of a byte[] or a
+ * single mapping) are supported.
+ *
+ * Only ECB and CTR are offered, since they are the modes whose blocks
+ * can be processed independently.  In ECB mode, an input whose length
+ * is not a multiple of 8 bytes has its final block padded with zeros
+ * when encrypting, as DES.encrypt() does, so the output is rounded up
+ * to a whole number of blocks.  CTR output is always the same length
+ * as the input.
+ *
+ * The output is forced to the storage device, mapped regions and all,
+ * before ecb() or ctr() returns, so a successful return means the
+ * output file is complete on disk.
+ *
+ * Usage:
+ *
+ *   java DESFileCrypt encrypt|decrypt ecb|ctr key in out [counter]
+ *
+ * where the key (8, 16 or 24 bytes, for DES or Triple-DES) and the
+ * optional initial counter (8 bytes) are given in hex.
+ */
+public class DESFileCrypt {
+
+    /** The default number of bytes mapped at a time. */
+    public static final int DEFAULT_REGION_SIZE = 64*1024*1024;
+
+    private final DESParallel parallel;
+    private final int regionSize;
+
+    /**
+     * Create an instance that maps DEFAULT_REGION_SIZE bytes at a time
+     * and uses the default DESParallel.
+     */
+    public DESFileCrypt() {
+        this(new DESParallel(), DEFAULT_REGION_SIZE);
+    }
+
+    /**
+     * Create an instance that maps regionSize bytes (a multiple of 8)
+     * at a time, and processes each region with the supplied
+     * DESParallel.
+     */
+    public DESFileCrypt(DESParallel parallel, int regionSize) {
+        if (regionSize < 8 || (regionSize & 7) != 0) {
+            throw new IllegalArgumentException(
+                "region size must be a positive multiple of 8: "+regionSize);
+        }
+        this.parallel = parallel;
+        this.regionSize = regionSize;
+    }
+
+    /**
+     * Encrypt or decrypt a file in ECB mode.
+     *
+     * @return the number of bytes written.
+     */
+    public long ecb(File in, File out, DESBlockCipher key, boolean encrypt) throws IOException {
+        return process(in, out, key, encrypt, false, 0);
+    }
+
+    /**
+     * Encrypt or decrypt (the same operation) a file in CTR mode, with
+     * the counter starting at the specified value.
+     *
+     * @return the number of bytes written.
+     */
+    public long ctr(File in, File out, DESBlockCipher key, long counter) throws IOException {
+        return process(in, out, key, true, true, counter);
+    }
+
+    private long process(File inFile, File outFile, DESBlockCipher key,
+                         boolean encrypt, boolean ctr, long counter) throws IOException {
+        RandomAccessFile inRaf = new RandomAccessFile(inFile, "r");
+        try {
+            RandomAccessFile outRaf = new RandomAccessFile(outFile, "rw");
+            try {
+                FileChannel inChannel = inRaf.getChannel();
+                FileChannel outChannel = outRaf.getChannel();
+                long length = inChannel.size();
+                long whole = ctr ? length : length & ~7L;
+                if (!ctr && whole != length && !encrypt) {
+                    throw new IllegalArgumentException(
+                        "ECB ciphertext length is not a multiple of 8: "+length);
+                }
+                long outLength = (whole == length) ? length : whole + 8;
+                outRaf.setLength(outLength);
+
+                // the mapped regions
+                for (long offset=0; offset<whole; offset+=regionSize) {
+                    int size = (int) Math.min(regionSize, whole - offset);
+                    MappedByteBuffer src = inChannel.map(FileChannel.MapMode.READ_ONLY, offset, size);
+                    MappedByteBuffer dst = outChannel.map(FileChannel.MapMode.READ_WRITE, offset, size);
+                    if (ctr) {
+                        parallel.ctr(src, dst, key, counter + offset/8);
+                    } else if (encrypt) {
+                        parallel.encrypt(src, dst, key);
+                    } else {
+                        parallel.decrypt(src, dst, key);
+                    }
+                    // FileChannel.force() doesn't cover changes made
+                    // through a mapping
+                    dst.force();
+                }
+
+                // a zero-padded partial block at the end (ECB only)
+                if (whole != length) {
+                    ByteBuffer block = ByteBuffer.allocate(8);
+                    // a read may return fewer bytes than remain; at the
+                    // end of the file, the rest of the block stays zero
+                    while (block.hasRemaining()) {
+                        if (inChannel.read(block, whole + block.position()) < 0) {
+                            break;
+                        }
+                    }
+                    block.clear();
+                    DES.writeLong(block, 0, key.encryptBlock(DES.readLong(block, 0)));
+                    while (block.hasRemaining()) {
+                        outChannel.write(block, whole + block.position());
+                    }
+                }
+                outChannel.force(true);
+
+                return outLength;
+            } finally {
+                outRaf.close();
+            }
+        } finally {
+            inRaf.close();
+        }
+    }
+
+    private static long parseHex(String s, int offset) {
+        return Long.parseLong(s.substring(offset, offset+8), 16) << 32
+             | Long.parseLong(s.substring(offset+8, offset+16), 16);
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 5) {
+            System.err.println("usage: java DESFileCrypt encrypt|decrypt ecb|ctr key in out [counter]");
+            System.exit(1);
+        }
+        boolean encrypt = args[0].equals("encrypt");
+        boolean ctr = args[1].equals("ctr");
+        String hexKey = args[2];
+        DESBlockCipher key;
+        if (hexKey.length() == 16) {
+            key = new DESKey(parseHex(hexKey, 0));
+        } else if (hexKey.length() == 32) {
+            key = new TripleDESKey(parseHex(hexKey, 0), parseHex(hexKey, 16));
+        } else if (hexKey.length() == 48) {
+            key = new TripleDESKey(parseHex(hexKey, 0), parseHex(hexKey, 16), parseHex(hexKey, 32));
+        } else {
+            throw new IllegalArgumentException("key must be 8, 16 or 24 bytes of hex");
+        }
+        long counter = (args.length > 5) ? parseHex(args[5], 0) : 0;
+
+        DESFileCrypt crypt = new DESFileCrypt();
+        File in = new File(args[3]);
+        File out = new File(args[4]);
+        long start = System.nanoTime();
+        long bytes = ctr ? crypt.ctr(in, out, key, counter) : crypt.ecb(in, out, key, encrypt);
+        long elapsed = System.nanoTime() - start;
+        System.out.println(String.format("%d bytes in %.3f s: %.2f MB/s",
+            bytes, elapsed/1e9, bytes/1e6/(elapsed/1e9)));
+    }
+
+}
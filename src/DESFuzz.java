@@ -0,0 +1,541 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.PrintStream;
+import java.security.GeneralSecurityException;
+import java.security.Provider;
+import java.security.Security;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Differential fuzzing of the DES implementations.
+ *
+ * Random batches of blocks are run through every implementation: the
+ * reference engine (which shares no code with the optimized paths
+ * beyond the tables), DES.encryptBlock(long, long), each DESEngine's
+ * bulk methods, DESLanes at every lane count, the Vector API backend
+ * at every vector size (if it can be loaded), DESParallel, DESBatch,
+ * DESBitslice, this library's JCA provider, and SunJCE's
+ * DES/ECB/NoPadding.  Each result is compared with the reference, in
+ * both directions.
+ *
+ * Each batch has between MIN_BATCH and MAX_BATCH blocks, so every lane
+ * of the 64-lane bitsliced code is used, as are partial groups of
+ * lanes and the narrower tails of the multi-lane engines.  Batches
+ * alternate between a single key for every block, and a different key
+ * for each block; implementations which take one key per call see the
+ * latter as a run of one-block calls, while DESBatch and DESBitslice
+ * get a different key in every lane.
+ *
+ * When an implementation disagrees, the failing key and block are
+ * minimized: each set bit is cleared in turn, and the change is kept
+ * if the implementations still disagree.  The result is usually a
+ * key and block with only a few bits set, which point straight at the
+ * faulty table entry or permutation step.
+ *
+ * The work is split across threads in chunks of batches, and the
+ * random number generator is seeded afresh for each chunk, so a run
+ * can be repeated exactly from its seed, with any number of threads.
+ *
+ * Usage:
+ *
+ *   java DESFuzz [-n batches] [-t threads] [-s seed]
+ *
+ * The budget (number of batches) defaults to the "des.fuzz.batches"
+ * system property, or 10000.  The exit status is 1 if any divergence
+ * was found, so the harness can be run as a step of a build ("gradle
+ * fuzz", which "gradle check" includes).
+ */
+public final class DESFuzz {
+
+    /** The fewest blocks in a batch. */
+    public static final int MIN_BATCH = 64;
+
+    /** The most blocks in a batch. */
+    public static final int MAX_BATCH = 200;
+
+    /** The number of batches claimed by a thread at a time. */
+    private static final int CHUNK = 64;
+
+    /** Stop reporting after this many divergences. */
+    private static final int MAX_REPORTS = 10;
+
+    /**
+     * Shared pool of daemon threads for the DESParallel
+     * implementations.  Created on first use.
+     */
+    private static class ParallelPool {
+        static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(
+            new ThreadFactory() {
+                private int count = 0;
+                public synchronized Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "DESFuzz-parallel-"+(++count));
+                    t.setDaemon(true);
+                    return t;
+                }
+            }
+        );
+    }
+
+    private DESFuzz() {
+    }
+
+    //////////////////////////////////////////////////////////////////////
+    //
+    // Implementations under test
+    //
+    //////////////////////////////////////////////////////////////////////
+
+    /**
+     * One implementation under test.  Instances are used by a single
+     * thread.
+     */
+    static abstract class Implementation {
+        final String name;
+
+        Implementation(String name) {
+            this.name = name;
+        }
+
+        /**
+         * Encrypt or decrypt each block with the key at the same index.
+         */
+        abstract void crypt(long[] keys, long[] in, long[] out, boolean decrypt);
+    }
+
+    /**
+     * An implementation which takes one key per call.  The blocks are
+     * passed to it in runs which share a key.
+     */
+    static abstract class SingleKey extends Implementation {
+        SingleKey(String name) {
+            super(name);
+        }
+
+        void crypt(long[] keys, long[] in, long[] out, boolean decrypt) {
+            int start = 0;
+            while (start < in.length) {
+                int end = start + 1;
+                while (end < in.length && keys[end] == keys[start]) {
+                    end++;
+                }
+                crypt(keys[start], in, start, end - start, out, decrypt);
+                start = end;
+            }
+        }
+
+        /**
+         * Encrypt or decrypt count blocks, starting at offset, with the
+         * key.
+         */
+        abstract void crypt(long key, long[] in, int offset, int count, long[] out, boolean decrypt);
+    }
+
+    /**
+     * A single-key implementation of the byte[] ECB methods.
+     */
+    static abstract class Bulk extends SingleKey {
+        final byte[] buffer = new byte[8*MAX_BATCH];
+
+        Bulk(String name) {
+            super(name);
+        }
+
+        void crypt(long key, long[] in, int offset, int count, long[] out, boolean decrypt) {
+            for (int i=0; i<count; i++) {
+                DES.writeLong(buffer, 8*i, in[offset+i]);
+            }
+            crypt(key, buffer, 8*count, decrypt);
+            for (int i=0; i<count; i++) {
+                out[offset+i] = DES.readLong(buffer, 8*i);
+            }
+        }
+
+        /**
+         * Encrypt or decrypt the first length bytes of the buffer in
+         * place.
+         */
+        abstract void crypt(long key, byte[] buffer, int length, boolean decrypt);
+    }
+
+    /**
+     * Create one instance of each implementation, for use by a single
+     * thread.  The first is the reference.
+     */
+    static List<Implementation> implementations() {
+        List<Implementation> list = new ArrayList<Implementation>();
+
+        final DESEngine reference = DESEngines.getEngine("reference");
+        list.add(new SingleKey("encryptBlockReference") {
+            void crypt(long key, long[] in, int offset, int count, long[] out, boolean decrypt) {
+                DESKey k = reference.createKey(key);
+                for (int i=offset; i<offset+count; i++) {
+                    out[i] = decrypt ? reference.decryptBlock(in[i], k) : reference.encryptBlock(in[i], k);
+                }
+            }
+        });
+        list.add(new Implementation("encryptBlock(long,long)") {
+            void crypt(long[] keys, long[] in, long[] out, boolean decrypt) {
+                for (int i=0; i<in.length; i++) {
+                    out[i] = decrypt ? DES.decryptBlock(in[i], keys[i]) : DES.encryptBlock(in[i], keys[i]);
+                }
+            }
+        });
+        for (final DESEngine engine : DESEngines.getEngines()) {
+            list.add(new Bulk("DESEngine "+engine.getName()) {
+                void crypt(long key, byte[] buffer, int length, boolean decrypt) {
+                    DESKey k = engine.createKey(key);
+                    if (decrypt) {
+                        engine.decrypt(buffer, 0, length, buffer, 0, k);
+                    } else {
+                        engine.encrypt(buffer, 0, length, buffer, 0, k);
+                    }
+                }
+            });
+        }
+        for (int lanes : DESLanes.getSupportedLanes()) {
+            final DESLanes engine = new DESLanes(lanes);
+            list.add(new Bulk("DESLanes("+lanes+")") {
+                void crypt(long key, byte[] buffer, int length, boolean decrypt) {
+                    DESKey k = new DESKey(key);
+                    if (decrypt) {
+                        engine.decrypt(buffer, 0, length, buffer, 0, k);
+                    } else {
+                        engine.encrypt(buffer, 0, length, buffer, 0, k);
+                    }
+                }
+            });
+        }
+        for (int bits : new int[] { 128, 256, 512 }) {
+            final DESEngine engine = DESLanes.loadVector(bits);
+            if (engine == null) {
+                continue;
+            }
+            list.add(new Bulk("DESVectorLanes("+bits+")") {
+                void crypt(long key, byte[] buffer, int length, boolean decrypt) {
+                    DESKey k = new DESKey(key);
+                    if (decrypt) {
+                        engine.decrypt(buffer, 0, length, buffer, 0, k);
+                    } else {
+                        engine.encrypt(buffer, 0, length, buffer, 0, k);
+                    }
+                }
+            });
+        }
+        // a small threshold, so that each batch is split over all four
+        // chunks, at uneven boundaries
+        final DESParallel parallel = new DESParallel(ParallelPool.EXECUTOR, 4, 8*5);
+        list.add(new Bulk("DESParallel") {
+            void crypt(long key, byte[] buffer, int length, boolean decrypt) {
+                DESKey k = new DESKey(key);
+                if (decrypt) {
+                    parallel.decrypt(buffer, 0, length, buffer, 0, k);
+                } else {
+                    parallel.encrypt(buffer, 0, length, buffer, 0, k);
+                }
+            }
+        });
+        list.add(new Implementation("DESBatch") {
+            void crypt(long[] keys, long[] in, long[] out, boolean decrypt) {
+                if (decrypt) {
+                    DESBatch.decrypt(in, keys, out);
+                } else {
+                    DESBatch.encrypt(in, keys, out);
+                }
+            }
+        });
+        list.add(new Implementation("DESBitslice") {
+            void crypt(long[] keys, long[] in, long[] out, boolean decrypt) {
+                if (decrypt) {
+                    DESBitslice.decrypt(in, keys, out);
+                } else {
+                    DESBitslice.encrypt(in, keys, out);
+                }
+            }
+        });
+        list.add(new SingleKey("DESBitslice (single key)") {
+            void crypt(long key, long[] in, int offset, int count, long[] out, boolean decrypt) {
+                long[] blocks = Arrays.copyOfRange(in, offset, offset + count);
+                if (decrypt) {
+                    DESBitslice.decrypt(blocks, key, blocks);
+                } else {
+                    DESBitslice.encrypt(blocks, key, blocks);
+                }
+                System.arraycopy(blocks, 0, out, offset, count);
+            }
+        });
+        addCipher(list, "JCA DESDemo", new DESProvider());
+        addCipher(list, "JCA SunJCE", Security.getProvider("SunJCE"));
+        return list;
+    }
+
+    /**
+     * Add a JCA DES/ECB/NoPadding implementation, if the provider is
+     * available.
+     */
+    private static void addCipher(List<Implementation> list, String name, Provider provider) {
+        final Cipher cipher;
+        try {
+            if (provider == null) {
+                return;
+            }
+            cipher = Cipher.getInstance("DES/ECB/NoPadding", provider);
+        } catch (GeneralSecurityException e) {
+            return;
+        }
+        list.add(new Bulk(name) {
+            final byte[] keyBytes = new byte[8];
+            void crypt(long key, byte[] buffer, int length, boolean decrypt) {
+                DES.writeLong(keyBytes, 0, key);
+                try {
+                    cipher.init(decrypt ? Cipher.DECRYPT_MODE : Cipher.ENCRYPT_MODE,
+                        new SecretKeySpec(keyBytes, "DES"));
+                    cipher.doFinal(buffer, 0, length, buffer, 0);
+                } catch (GeneralSecurityException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        });
+    }
+
+    //////////////////////////////////////////////////////////////////////
+    //
+    // Fuzzing
+    //
+    //////////////////////////////////////////////////////////////////////
+
+    /**
+     * Return true if the two implementations give different results
+     * for a single block, in either direction.
+     */
+    static boolean diverges(Implementation reference, Implementation candidate, long key, long block) {
+        long[] keys = { key };
+        long[] in = { block };
+        long[] expected = new long[1];
+        long[] received = new long[1];
+        for (boolean decrypt : new boolean[] { false, true }) {
+            reference.crypt(keys, in, expected, decrypt);
+            candidate.crypt(keys, in, received, decrypt);
+            if (expected[0] != received[0]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Reduce a diverging key and block by clearing one set bit at a
+     * time, as long as the implementations still disagree.  Returns
+     * the minimized key and block, or null if the divergence cannot be
+     * reproduced with a single block (in which case it depends on the
+     * other blocks of the batch).
+     */
+    static long[] minimize(Implementation reference, Implementation candidate, long key, long block) {
+        if (!diverges(reference, candidate, key, block)) {
+            return null;
+        }
+        boolean progress = true;
+        while (progress) {
+            progress = false;
+            for (int bit=0; bit<64; bit++) {
+                long mask = 1L << bit;
+                if ((key & mask) != 0 && diverges(reference, candidate, key & ~mask, block)) {
+                    key &= ~mask;
+                    progress = true;
+                }
+                if ((block & mask) != 0 && diverges(reference, candidate, key, block & ~mask)) {
+                    block &= ~mask;
+                    progress = true;
+                }
+            }
+        }
+        return new long[] { key, block };
+    }
+
+    /**
+     * Fuzz the specified number of batches on the specified number of
+     * threads, reporting any divergence to the supplied stream.
+     *
+     * @return the number of divergences found.
+     */
+    public static long run(final long batches, int threads, final long seed, final PrintStream report) {
+        final AtomicLong next = new AtomicLong();
+        final AtomicLong divergences = new AtomicLong();
+        final RuntimeException[] failure = new RuntimeException[1];
+        Thread[] workers = new Thread[threads];
+        for (int t=0; t<threads; t++) {
+            workers[t] = new Thread("DESFuzz-"+(t+1)) {
+                public void run() {
+                    try {
+                        fuzz(batches, seed, next, divergences, report);
+                    } catch (RuntimeException e) {
+                        synchronized (failure) {
+                            failure[0] = e;
+                        }
+                    }
+                }
+            };
+            workers[t].start();
+        }
+        for (Thread worker : workers) {
+            while (true) {
+                try {
+                    worker.join();
+                    break;
+                } catch (InterruptedException e) {
+                    // let the budget run out; the workers don't check
+                    next.set(batches);
+                }
+            }
+        }
+        synchronized (failure) {
+            if (failure[0] != null) {
+                throw failure[0];
+            }
+        }
+        return divergences.get();
+    }
+
+    /**
+     * The work of one thread: claim batches in chunks of CHUNK until
+     * the budget is used up.  The generator is reseeded from the run
+     * seed and the chunk number at the start of each chunk, so the
+     * keys and blocks tested depend only on the seed, not on the
+     * number of threads or how the chunks were shared out.
+     */
+    private static void fuzz(long batches, long seed, AtomicLong next,
+                             AtomicLong divergences, PrintStream report) {
+        List<Implementation> impls = implementations();
+        Implementation reference = impls.get(0);
+        Random random = new Random();
+
+        long start;
+        while ((start = next.getAndAdd(CHUNK)) < batches) {
+            random.setSeed(seed + start/CHUNK * 0x9E3779B97F4A7C15L);
+            long end = Math.min(batches, start + CHUNK);
+            for (long n=start; n<end; n++) {
+                int size = MIN_BATCH + random.nextInt(MAX_BATCH - MIN_BATCH + 1);
+                long[] keys = new long[size];
+                long[] blocks = new long[size];
+                long[] expected = new long[size];
+                long[] received = new long[size];
+                long key = random.nextLong();
+                for (int i=0; i<size; i++) {
+                    keys[i] = (n % 2 == 0) ? key : random.nextLong();
+                    blocks[i] = random.nextLong();
+                }
+                reference.crypt(keys, blocks, expected, false);
+                for (int j=1; j<impls.size(); j++) {
+                    Implementation impl = impls.get(j);
+                    impl.crypt(keys, blocks, received, false);
+                    int bad = firstDifference(expected, received);
+                    if (bad < 0) {
+                        impl.crypt(keys, expected, received, true);
+                        bad = firstDifference(blocks, received);
+                    }
+                    if (bad >= 0 && divergences.incrementAndGet() <= MAX_REPORTS) {
+                        report(report, reference, impl, keys[bad], blocks[bad], size);
+                    }
+                }
+            }
+        }
+    }
+
+    private static int firstDifference(long[] a, long[] b) {
+        for (int i=0; i<a.length; i++) {
+            if (a[i] != b[i]) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static void report(PrintStream out, Implementation reference, Implementation impl,
+                               long key, long block, int size) {
+        long[] minimal = minimize(reference, impl, key, block);
+        StringBuilder sb = new StringBuilder();
+        sb.append("DIVERGENCE: ").append(impl.name).append(" vs ").append(reference.name).append('\n');
+        sb.append(describe(reference, impl, key, block));
+        if (minimal == null) {
+            sb.append("\t(only reproducible within a batch of ").append(size).append(" blocks)\n");
+        } else {
+            sb.append("\tminimized:\n");
+            sb.append(describe(reference, impl, minimal[0], minimal[1]));
+        }
+        synchronized (out) {
+            out.print(sb);
+        }
+    }
+
+    private static String describe(Implementation reference, Implementation impl, long key, long block) {
+        long[] keys = { key };
+        long[] in = { block };
+        long[] expected = new long[1];
+        long[] received = new long[1];
+        reference.crypt(keys, in, expected, false);
+        impl.crypt(keys, in, received, false);
+        return String.format("\tkey=%016x block=%016x expected=%016x received=%016x%n",
+            key, block, expected[0], received[0]);
+    }
+
+    //////////////////////////////////////////////////////////////////////
+    //
+    // Command line
+    //
+    //////////////////////////////////////////////////////////////////////
+
+    public static void main(String[] args) {
+        long batches = Long.getLong("des.fuzz.batches", 10000);
+        int threads = Runtime.getRuntime().availableProcessors();
+        long seed = System.nanoTime();
+        for (int i=0; i<args.length; i++) {
+            if (args[i].equals("-n") && i+1 < args.length) {
+                batches = Long.parseLong(args[++i]);
+            } else if (args[i].equals("-t") && i+1 < args.length) {
+                threads = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("-s") && i+1 < args.length) {
+                seed = Long.parseLong(args[++i]);
+            } else {
+                System.err.println("usage: java DESFuzz [-n batches] [-t threads] [-s seed]");
+                System.exit(2);
+            }
+        }
+
+        List<String> names = new ArrayList<String>();
+        for (Implementation impl : implementations()) {
+            names.add(impl.name);
+        }
+        System.out.println("implementations: "+names);
+        System.out.println("batches: "+batches+" of "+MIN_BATCH+"-"+MAX_BATCH+" blocks, threads: "+threads+", seed: "+seed);
+
+        long start = System.nanoTime();
+        long divergences = run(batches, threads, seed, System.out);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        long blocks = batches * (MIN_BATCH + MAX_BATCH) / 2;
+        System.out.println(String.format("about %d blocks per implementation in %.1fs (%.0f blocks/s), %d divergences",
+            blocks, seconds, blocks/seconds, divergences));
+        System.exit(divergences == 0 ? 0 : 1);
+    }
+
+}
@@ -0,0 +1,125 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.GeneralSecurityException;
+
+/**
+ * An InputStream that reads from an underlying stream and decrypts (or
+ * encrypts) the data with a DESMode.
+ *
+ * Data passes through fixed-size internal buffers, so streams of any
+ * length are processed in constant memory.  The padding scheme is
+ * applied when the underlying stream reaches end-of-file.
+ *
+ * Instances are not thread-safe.
+ */
+public class DESInputStream extends FilterInputStream {
+
+    private final DESPaddedMode cipher;
+    private final byte[] input = new byte[DESOutputStream.BUFFER_SIZE];
+    private final byte[] output = new byte[DESOutputStream.BUFFER_SIZE + 16];
+    private final byte[] single = new byte[1];
+
+    /** The unread part of the output buffer. */
+    private int outputStart = 0, outputEnd = 0;
+
+    /** True once the underlying stream has reached end-of-file. */
+    private boolean eof = false;
+
+    /**
+     * Create a stream which reads from the underlying stream, passing
+     * the data through the supplied mode with the supplied padding
+     * scheme.
+     */
+    public DESInputStream(InputStream in, DESMode mode, DESPadding padding) {
+        super(in);
+        this.cipher = new DESPaddedMode(mode, padding);
+    }
+
+    /**
+     * Refill the output buffer.  Return false at the end of the
+     * stream.
+     */
+    private boolean fill() throws IOException {
+        while (outputStart == outputEnd) {
+            if (eof) {
+                return false;
+            }
+            outputStart = 0;
+            int n = in.read(input, 0, input.length);
+            if (n < 0) {
+                eof = true;
+                try {
+                    outputEnd = cipher.doFinal(output, 0);
+                } catch (GeneralSecurityException e) {
+                    throw new IOException(e.getMessage(), e);
+                }
+            } else {
+                outputEnd = cipher.update(input, 0, n, output, 0);
+            }
+        }
+        return true;
+    }
+
+    public int read() throws IOException {
+        int n = read(single, 0, 1);
+        return (n < 0) ? -1 : single[0] & 0xFF;
+    }
+
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!fill()) {
+            return -1;
+        }
+        int n = Math.min(len, outputEnd - outputStart);
+        System.arraycopy(output, outputStart, b, off, n);
+        outputStart += n;
+        return n;
+    }
+
+    public long skip(long n) throws IOException {
+        long skipped = 0;
+        while (skipped < n && fill()) {
+            int k = (int) Math.min(n - skipped, outputEnd - outputStart);
+            outputStart += k;
+            skipped += k;
+        }
+        return skipped;
+    }
+
+    /**
+     * Return the number of bytes that can be read without blocking,
+     * which is the number already decrypted.
+     */
+    public int available() throws IOException {
+        return outputEnd - outputStart;
+    }
+
+    public boolean markSupported() {
+        return false;
+    }
+
+    public void mark(int readlimit) {
+    }
+
+    public void reset() throws IOException {
+        throw new IOException("mark/reset not supported");
+    }
+
+}
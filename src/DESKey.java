@@ -0,0 +1,91 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * An immutable DES key schedule.
+ *
+ * The 16 48-bit subkeys only depend on the key, so a message of many
+ * blocks can be encrypted with a single schedule instead of deriving
+ * the subkeys again for every block.  Build one of these once per key
+ * and pass it to the DESKey variants of the DES methods.
+ *
+ * Instances hold no mutable state, and may be freely shared between
+ * threads.
+ */
+public final class DESKey implements DESBlockCipher {
+
+    /**
+     * The 16 48-bit subkeys, in encryption order.  Never modified
+     * after construction.
+     */
+    final long[] subkeys;
+
+    /**
+     * The 64-bit key value, for engines (such as the bitsliced one)
+     * which derive their own form of the schedule.
+     */
+    final long key;
+
+    /**
+     * Create a key schedule from a 64-bit key value.
+     */
+    public DESKey(/* 64 bits */ long key) {
+        this(key, DES.createSubkeys(key));
+    }
+
+    /**
+     * Wrap a key schedule which has already been generated from the
+     * specified key value.
+     */
+    DESKey(long key, long[] subkeys) {
+        this.key = key;
+        this.subkeys = subkeys;
+        if (DESMetrics.ENABLED) {
+            DESMetrics.scheduleBuilt(1);
+        }
+    }
+
+    /**
+     * Create a key schedule from the first eight bytes of the supplied
+     * byte array.  If the array is shorter than eight bytes, the
+     * missing bytes are regarded as zero padding.
+     */
+    public DESKey(byte[] key) {
+        this(DES.getLongFromBytes(key, 0));
+    }
+
+    /**
+     * Return the subkey for the specified round (0-15).
+     */
+    public long getSubkey(int round) {
+        return subkeys[round];
+    }
+
+    /**
+     * Encrypt a 64-bit block with this key.  Equivalent to
+     * DES.encryptBlock(block, this).
+     */
+    public long encryptBlock(long block) {
+        return DES.encryptBlock(block, subkeys, 0);
+    }
+
+    /**
+     * Decrypt a 64-bit block with this key.  Equivalent to
+     * DES.decryptBlock(block, this).
+     */
+    public long decryptBlock(long block) {
+        return DES.decryptBlock(block, subkeys, 0);
+    }
+
+}
@@ -0,0 +1,512 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Exhaustive key search, for auditing systems that still depend on
+ * single DES.
+ *
+ * Given a known plaintext/ciphertext pair, or a recorded VNC
+ * challenge and response, this tries every key until one reproduces
+ * the ciphertext.  DES ignores the low bit of each key byte (the
+ * parity bit), so there are 2^56 distinct keys.  Keys are returned
+ * with their parity bits cleared.
+ *
+ * The keyspace is cut into work units of 2^UNIT_BITS keys, which are
+ * handed out to the search threads in order.  Within a unit, the keys
+ * are visited in Gray code order, so that neighboring keys differ in
+ * exactly one bit.  Every subkey bit is a copy of one key bit, so the
+ * key schedule is linear, and flipping a key bit just XORs a fixed
+ * pattern into the 16 subkeys.  The schedule is therefore built once
+ * per unit instead of once per key.
+ *
+ * DES has the complementation property: encrypting the complement of
+ * a plaintext with the complement of a key gives the complement of
+ * the ciphertext.  If the ciphertext of the complemented plaintext is
+ * also known, then testing a key k against both ciphertexts also
+ * tests ~k, and only half of the keyspace needs to be searched.  This
+ * requires a chosen plaintext, so it does not apply to VNC, where
+ * the server picks the challenge.
+ *
+ * A search can be stopped and resumed with a checkpoint file, which
+ * holds the lowest work unit not yet completed.  The checkpoint does
+ * not record the target, so each search needs its own file.
+ *
+ * An instance runs a single search.  Its progress methods may be
+ * called from other threads while the search runs.
+ */
+public final class DESKeySearch {
+
+    /** Each work unit covers 2^UNIT_BITS keys. */
+    public static final int UNIT_BITS = 20;
+
+    /** How often the checkpoint file is rewritten, in milliseconds. */
+    private static final long CHECKPOINT_INTERVAL = 10*1000;
+
+    /** The 56 key bits that DES uses, excluding the parity bits. */
+    private static final long KEY_MASK = 0xFEFEFEFEFEFEFEFEL;
+
+    /** MASK[j] is the key bit for bit j of a 56-bit key index. */
+    private static final long[] MASK = new long[56];
+
+    /** DELTA[j] is the change to the subkeys when key bit MASK[j] flips. */
+    private static final long[][] DELTA = new long[56][];
+
+    static {
+        for (int j=0; j<56; j++) {
+            MASK[j] = 1L << (8*(j/7) + 1 + j%7);
+            DELTA[j] = DES.createSubkeys(MASK[j]);
+        }
+    }
+
+    // the target
+    private final long plaintext;
+    private final long ciphertext;
+    private final boolean complement;
+    private final long complementCiphertext;
+    private final long plaintext2;
+    private final long ciphertext2;
+    private final boolean second;
+
+    // the first block and its ciphertext(s), past IP, with the halves
+    // of the ciphertext swapped, as they are at the end of round 16
+    private final long ipPlaintext;
+    private final long target;
+    private final long complementTarget;
+
+    // search state
+    private final AtomicLong nextUnit = new AtomicLong();
+    private final AtomicLong keysTested = new AtomicLong();
+    private final TreeSet<Long> completed = new TreeSet<Long>();
+    private long lowestIncomplete;
+    private long lastCheckpoint;
+    private volatile long startTime;
+    private volatile long foundKey = -1;
+    private volatile boolean found = false;
+
+    private DESKeySearch(long plaintext, long ciphertext,
+                         boolean complement, long complementCiphertext,
+                         boolean second, long plaintext2, long ciphertext2) {
+        this.plaintext = plaintext;
+        this.ciphertext = ciphertext;
+        this.complement = complement;
+        this.complementCiphertext = complementCiphertext;
+        this.second = second;
+        this.plaintext2 = plaintext2;
+        this.ciphertext2 = ciphertext2;
+        this.ipPlaintext = DES.fastIP(plaintext);
+        this.target = swap(DES.fastIP(ciphertext));
+        this.complementTarget = swap(DES.fastIP(~complementCiphertext));
+    }
+
+    /**
+     * Search for the key that encrypts plaintext to ciphertext.
+     */
+    public static DESKeySearch knownPlaintext(long plaintext, long ciphertext) {
+        return new DESKeySearch(plaintext, ciphertext, false, 0, false, 0, 0);
+    }
+
+    /**
+     * Search for the key that encrypts plaintext to ciphertext, and
+     * the complement of plaintext to complementCiphertext.  Only half
+     * of the keyspace is searched.
+     */
+    public static DESKeySearch knownPlaintext(long plaintext, long ciphertext, long complementCiphertext) {
+        return new DESKeySearch(plaintext, ciphertext, true, complementCiphertext, false, 0, 0);
+    }
+
+    /**
+     * Search for the VNC password key that produced the 16-byte
+     * response to the 16-byte challenge.  The key is the password in
+     * the form produced by VNCAuth.passwordToKey().
+     */
+    public static DESKeySearch vncAuth(byte[] challenge, byte[] response) {
+        if (challenge.length != VNCAuth.CHALLENGE_LENGTH || response.length != VNCAuth.CHALLENGE_LENGTH) {
+            throw new IllegalArgumentException(
+                "challenge and response must be "+VNCAuth.CHALLENGE_LENGTH+" bytes");
+        }
+        return new DESKeySearch(DES.readLong(challenge, 0), DES.readLong(response, 0), false, 0,
+            true, DES.readLong(challenge, 8), DES.readLong(response, 8));
+    }
+
+    //////////////////////////////////////////////////////////////////////
+    //
+    // Public interface
+    //
+    //////////////////////////////////////////////////////////////////////
+
+    /**
+     * Return the number of work units in the keyspace: 2^(56 -
+     * UNIT_BITS), or half that when the complementation property is
+     * used.
+     */
+    public long getUnitCount() {
+        return 1L << (56 - UNIT_BITS - (complement ? 1 : 0));
+    }
+
+    /**
+     * Search the whole keyspace.
+     *
+     * @see #search(long, long, int, File)
+     */
+    public long search(int threads, File checkpoint) throws IOException {
+        return search(0, getUnitCount(), threads, checkpoint);
+    }
+
+    /**
+     * Search work units firstUnit (inclusive) to endUnit (exclusive) on
+     * the specified number of threads, stopping as soon as the key is
+     * found.
+     *
+     * @param checkpoint a file to record progress in, or null.  If it
+     *     exists, the search resumes from the unit it records.
+     * @return the key, with the parity bits cleared, or -1 if it is
+     *     not in the searched range.  If the calling thread is
+     *     interrupted, the search stops early, the checkpoint is
+     *     written, and -1 is returned with the interrupt status set.
+     */
+    public long search(long firstUnit, long endUnit, int threads, File checkpoint) throws IOException {
+        if (firstUnit < 0 || endUnit > getUnitCount() || firstUnit > endUnit) {
+            throw new IllegalArgumentException("invalid unit range: "+firstUnit+"-"+endUnit);
+        }
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be positive: "+threads);
+        }
+        if (checkpoint != null && checkpoint.exists()) {
+            firstUnit = Math.max(firstUnit, readCheckpoint(checkpoint));
+        }
+        nextUnit.set(firstUnit);
+        synchronized (completed) {
+            lowestIncomplete = firstUnit;
+            lastCheckpoint = System.currentTimeMillis();
+        }
+        startTime = System.nanoTime();
+
+        final long end = endUnit;
+        final File file = checkpoint;
+        final IOException[] failure = new IOException[1];
+        Thread[] workers = new Thread[threads];
+        for (int t=0; t<threads; t++) {
+            workers[t] = new Thread("DESKeySearch-"+(t+1)) {
+                public void run() {
+                    long[] subkeys = new long[16];
+                    long unit;
+                    while (!found && (unit = nextUnit.getAndIncrement()) < end) {
+                        searchUnit(unit, subkeys);
+                        try {
+                            completed(unit, file);
+                        } catch (IOException e) {
+                            synchronized (failure) {
+                                failure[0] = e;
+                            }
+                        }
+                    }
+                }
+            };
+            workers[t].setDaemon(true);
+            workers[t].start();
+        }
+        boolean interrupted = false;
+        for (Thread worker : workers) {
+            while (true) {
+                try {
+                    worker.join();
+                    break;
+                } catch (InterruptedException e) {
+                    // stop the workers, and report the interruption once
+                    // they have recorded their progress
+                    found = true;
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (failure) {
+            if (failure[0] != null) {
+                throw failure[0];
+            }
+        }
+        if (checkpoint != null) {
+            synchronized (completed) {
+                writeCheckpoint(checkpoint, lowestIncomplete);
+            }
+        }
+        return foundKey;
+    }
+
+    /**
+     * Return the number of keys tested so far.  With the
+     * complementation property, each test covers two keys.
+     */
+    public long getKeysTested() {
+        return keysTested.get() << (complement ? 1 : 0);
+    }
+
+    /**
+     * Return the average search rate since the search started, in
+     * keys per second.
+     */
+    public double getKeysPerSecond() {
+        long elapsed = System.nanoTime() - startTime;
+        return (elapsed > 0) ? getKeysTested() * 1e9 / elapsed : 0;
+    }
+
+    /**
+     * Return the lowest work unit not yet completed.
+     */
+    public long getLowestIncompleteUnit() {
+        synchronized (completed) {
+            return lowestIncomplete;
+        }
+    }
+
+    //////////////////////////////////////////////////////////////////////
+    //
+    // Implementation
+    //
+    //////////////////////////////////////////////////////////////////////
+
+    /**
+     * Try every key in the specified unit.  The subkeys array is
+     * scratch space for the key schedule.
+     */
+    private void searchUnit(long unit, long[] subkeys) {
+        long index = unit << UNIT_BITS;
+        long key = 0;
+        for (int j=UNIT_BITS; j<56; j++) {
+            if ((index >>> j & 1) != 0) {
+                key |= MASK[j];
+            }
+        }
+        DES.createSubkeys(key, subkeys, 0);
+
+        int ipl = (int) (ipPlaintext>>32);
+        int ipr = (int) ipPlaintext;
+        int size = 1 << UNIT_BITS;
+        for (int i=1; ; i++) {
+            int l = ipl, r = ipr;
+            for (int k=0; k<16; k+=2) {
+                l ^= DES.feistelSP(r, subkeys[k]);
+                r ^= DES.feistelSP(l, subkeys[k+1]);
+            }
+            long x = ((long)l << 32) | (r & 0xFFFFFFFFL);
+            if (x == target && verify(key)) {
+                foundKey = key;
+                found = true;
+            } else if (complement && x == complementTarget && verify(~key & KEY_MASK)) {
+                foundKey = ~key & KEY_MASK;
+                found = true;
+            }
+            if (i == size) {
+                break;
+            }
+            // step to the next key in Gray code order
+            int bit = Integer.numberOfTrailingZeros(i);
+            long[] delta = DELTA[bit];
+            for (int k=0; k<16; k++) {
+                subkeys[k] ^= delta[k];
+            }
+            key ^= MASK[bit];
+            if ((i & 0xFFFF) == 0) {
+                keysTested.addAndGet(0x10000);
+                if (found) {
+                    return;
+                }
+            }
+        }
+        keysTested.addAndGet(size - ((size - 1) & ~0xFFFF));
+    }
+
+    /**
+     * Return the work unit that contains the specified key, ignoring
+     * its parity bits.  With the complementation property, a key with
+     * its highest key bit set is found via its complement.
+     */
+    static long unitOf(long key) {
+        long index = 0;
+        for (int j=0; j<56; j++) {
+            if ((key & MASK[j]) != 0) {
+                index |= 1L << j;
+            }
+        }
+        return index >>> UNIT_BITS;
+    }
+
+    /**
+     * Check a candidate key against the rest of the target.
+     */
+    private boolean verify(long key) {
+        DESKey k = new DESKey(key);
+        return DES.encryptBlock(plaintext, k) == ciphertext
+            && (!complement || DES.encryptBlock(~plaintext, k) == complementCiphertext)
+            && (!second || DES.encryptBlock(plaintext2, k) == ciphertext2);
+    }
+
+    /**
+     * Record a completed unit, advance the lowest incomplete unit past
+     * any run of completed units, and rewrite the checkpoint file if
+     * it is due.
+     */
+    private void completed(long unit, File checkpoint) throws IOException {
+        synchronized (completed) {
+            if (found) {
+                // the unit may have been abandoned part way through
+                return;
+            }
+            completed.add(unit);
+            while (!completed.isEmpty() && completed.first() == lowestIncomplete) {
+                completed.pollFirst();
+                lowestIncomplete++;
+            }
+            long now = System.currentTimeMillis();
+            if (checkpoint != null && now - lastCheckpoint >= CHECKPOINT_INTERVAL) {
+                writeCheckpoint(checkpoint, lowestIncomplete);
+                lastCheckpoint = now;
+            }
+        }
+    }
+
+    /**
+     * Swap the 32-bit halves of a 64-bit value.
+     */
+    private static long swap(long x) {
+        return (x << 32) | (x >>> 32);
+    }
+
+    private static long readCheckpoint(File file) throws IOException {
+        BufferedReader reader = new BufferedReader(new FileReader(file));
+        try {
+            String line = reader.readLine();
+            if (line == null) {
+                throw new IOException("empty checkpoint file: "+file);
+            }
+            return Long.parseLong(line.trim());
+        } catch (NumberFormatException e) {
+            throw new IOException("invalid checkpoint file: "+file, e);
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Write the checkpoint to a temporary file, and rename it over the
+     * old one, so that an interrupted write never loses the previous
+     * checkpoint.
+     */
+    private static void writeCheckpoint(File file, long unit) throws IOException {
+        File temp = new File(file.getPath()+".tmp");
+        Writer writer = new FileWriter(temp);
+        try {
+            writer.write(unit+"\n");
+        } finally {
+            writer.close();
+        }
+        if (!temp.renameTo(file)) {
+            // Windows can't rename over an existing file
+            file.delete();
+            if (!temp.renameTo(file)) {
+                throw new IOException("cannot write checkpoint file: "+file);
+            }
+        }
+    }
+
+    //////////////////////////////////////////////////////////////////////
+    //
+    // Command line
+    //
+    //////////////////////////////////////////////////////////////////////
+
+    private static void usage() {
+        System.err.println("usage: java DESKeySearch [-t threads] [-c checkpoint] plaintext ciphertext [complement-ciphertext]");
+        System.err.println("       java DESKeySearch [-t threads] [-c checkpoint] -vnc challenge response");
+        System.err.println("(all values in hex)");
+        System.exit(1);
+    }
+
+    public static void main(String[] args) throws Exception {
+        int threads = Runtime.getRuntime().availableProcessors();
+        File checkpoint = null;
+        boolean vnc = false;
+        List<String> values = new ArrayList<String>();
+        for (int i=0; i<args.length; i++) {
+            if (args[i].equals("-t") && i+1 < args.length) {
+                threads = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("-c") && i+1 < args.length) {
+                checkpoint = new File(args[++i]);
+            } else if (args[i].equals("-vnc")) {
+                vnc = true;
+            } else {
+                values.add(args[i]);
+            }
+        }
+
+        final DESKeySearch search;
+        if (vnc && values.size() == 2) {
+            search = vncAuth(DES.parseBytes(values.get(0)), DES.parseBytes(values.get(1)));
+        } else if (!vnc && values.size() == 2) {
+            search = knownPlaintext(DES.readLong(DES.parseBytes(values.get(0)), 0),
+                DES.readLong(DES.parseBytes(values.get(1)), 0));
+        } else if (!vnc && values.size() == 3) {
+            search = knownPlaintext(DES.readLong(DES.parseBytes(values.get(0)), 0),
+                DES.readLong(DES.parseBytes(values.get(1)), 0),
+                DES.readLong(DES.parseBytes(values.get(2)), 0));
+        } else {
+            usage();
+            return;
+        }
+
+        final long units = search.getUnitCount();
+        Thread reporter = new Thread("DESKeySearch-reporter") {
+            public void run() {
+                try {
+                    while (true) {
+                        Thread.sleep(5000);
+                        System.err.println(String.format("%.2f%% complete, %.0f keys/s",
+                            100.0 * search.getLowestIncompleteUnit() / units,
+                            search.getKeysPerSecond()));
+                    }
+                } catch (InterruptedException e) {
+                    // done
+                }
+            }
+        };
+        reporter.setDaemon(true);
+        reporter.start();
+
+        long key = search.search(threads, checkpoint);
+        reporter.interrupt();
+        System.err.println(String.format("%d keys tested, %.0f keys/s",
+            search.getKeysTested(), search.getKeysPerSecond()));
+        if (key == -1) {
+            System.out.println("key not found");
+            System.exit(2);
+        }
+        byte[] bytes = new byte[8];
+        DES.writeLong(bytes, 0, key);
+        System.out.println("key: "+DES.hex(bytes));
+    }
+
+}
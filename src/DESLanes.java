@@ -0,0 +1,350 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.lang.reflect.Method;
+
+/**
+ * Multi-lane ECB engine, which runs several independent blocks through
+ * the rounds side by side.
+ *
+ * Each DES round depends on the result of the one before, so a single
+ * block leaves most of the processor idle while it waits for the
+ * SP-table lookups of the previous round to return.  In ECB mode the
+ * blocks are independent, and interleaving the rounds of 2, 4 or 8 of
+ * them ("lanes") in one loop gives the processor enough independent
+ * work to overlap those lookups, much as a SIMD unit would.  Each lane
+ * is held in ordinary int registers, so this needs nothing beyond the
+ * Java 7 class library.
+ *
+ * The best lane count depends on the processor (the number of
+ * registers and load ports), so it is chosen at runtime.  The default
+ * instance uses the "des.lanes" system property, or 4 if it is not
+ * set (or is not a supported lane count, in which case a warning is
+ * printed to standard error).  DESBenchmark reports each lane count
+ * side by side.
+ *
+ * On Java 17 and later, a Vector API backend (DESVectorLanes) can run
+ * one block in each lane of a SIMD register instead.  It is compiled
+ * separately, since it needs the jdk.incubator.vector module, and is
+ * loaded by name with loadVector().  Setting "des.lanes" to "vector"
+ * (the processor's preferred vector size) or to "vector128",
+ * "vector256" or "vector512" makes the "lanes" engine of DESEngines
+ * use it; if it can't be loaded (it isn't on the class path, or the
+ * JVM was started without --add-modules jdk.incubator.vector), the
+ * scalar engine with 4 lanes is used instead.
+ *
+ * The output is identical to that of the DES range methods.  Instances
+ * are immutable and thread-safe.
+ */
+public final class DESLanes {
+
+    /** The supported lane counts. */
+    private static final int[] LANES = { 1, 2, 4, 8 };
+
+    /** The system property selecting the default lane count or backend. */
+    static final String LANES_PROPERTY = "des.lanes";
+
+    /** The lane count used when "des.lanes" doesn't give a valid one. */
+    private static final int DEFAULT_LANES = 4;
+
+    private static final DESLanes DEFAULT = parseDefault(System.getProperty(LANES_PROPERTY));
+
+    /** The Vector API backend selected by "des.lanes", or null. */
+    private static final DESEngine DEFAULT_VECTOR = loadDefaultVector();
+
+    private final int lanes;
+
+    /**
+     * Create an engine which interleaves the specified number of
+     * blocks: 1, 2, 4 or 8.
+     */
+    public DESLanes(int lanes) {
+        if (lanes != 1 && lanes != 2 && lanes != 4 && lanes != 8) {
+            throw new IllegalArgumentException("lanes must be 1, 2, 4 or 8: "+lanes);
+        }
+        this.lanes = lanes;
+    }
+
+    /**
+     * Return the engine selected by the "des.lanes" system property.
+     */
+    public static DESLanes getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Return the Vector API backend selected by the "des.lanes" system
+     * property, or null if the property doesn't select it or it can't
+     * be loaded, in which case getDefault() should be used.
+     */
+    static DESEngine getDefaultVector() {
+        return DEFAULT_VECTOR;
+    }
+
+    /**
+     * Return the engine for a value of the "des.lanes" property (which
+     * may be null).  An invalid lane count falls back to the default,
+     * with a warning, rather than failing class initialization and
+     * with it every engine.
+     */
+    static DESLanes parseDefault(String value) {
+        if (value == null || value.startsWith("vector")) {
+            return new DESLanes(DEFAULT_LANES);
+        }
+        try {
+            return new DESLanes(Integer.parseInt(value.trim()));
+        } catch (IllegalArgumentException e) {
+            // NumberFormatException, or an unsupported count
+            System.err.println("DESLanes: ignoring "+LANES_PROPERTY+"="+value
+                +" (expected 1, 2, 4, 8 or vector); using "+DEFAULT_LANES+" lanes");
+            return new DESLanes(DEFAULT_LANES);
+        }
+    }
+
+    private static DESEngine loadDefaultVector() {
+        String value = System.getProperty(LANES_PROPERTY, "");
+        if (!value.startsWith("vector")) {
+            return null;
+        }
+        try {
+            int bits = (value.length() == 6) ? 0 : Integer.parseInt(value.substring(6));
+            return loadVector(bits);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Load the Vector API backend, using vectors of the specified size
+     * in bits (128, 256 or 512), or the processor's preferred size if
+     * bits is 0.  Returns null if the backend is not on the class path,
+     * can't be linked (Java 16 or earlier, or the jdk.incubator.vector
+     * module has not been added), or does not support the size.
+     */
+    public static DESEngine loadVector(int bits) {
+        try {
+            Method create = Class.forName("DESVectorLanes").getDeclaredMethod("create", int.class);
+            return (DESEngine) create.invoke(null, bits);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        } catch (LinkageError e) {
+            return null;
+        }
+    }
+
+    /**
+     * Return the supported lane counts, in increasing order.
+     */
+    public static int[] getSupportedLanes() {
+        return LANES.clone();
+    }
+
+    /**
+     * Return the number of blocks interleaved by this engine.
+     */
+    public int getLanes() {
+        return lanes;
+    }
+
+    /**
+     * Equivalent of DES.encrypt(byte[], int, int, byte[], int, DESKey).
+     * The length must be a multiple of 8; the input and output may be
+     * the same region of the same array.  Does not allocate any
+     * memory.
+     */
+    public void encrypt(byte[] in, int inOffset, int length, byte[] out, int outOffset, DESKey key) {
+        DES.checkBlockLength(length);
+        long start = DESMetrics.start();
+        crypt(in, inOffset, length, out, outOffset, key.subkeys, 0, 1);
+        if (DESMetrics.ENABLED) {
+            DESMetrics.record(true, length/8, length, start);
+        }
+    }
+
+    /**
+     * Equivalent of DES.decrypt(byte[], int, int, byte[], int, DESKey).
+     */
+    public void decrypt(byte[] in, int inOffset, int length, byte[] out, int outOffset, DESKey key) {
+        DES.checkBlockLength(length);
+        long start = DESMetrics.start();
+        crypt(in, inOffset, length, out, outOffset, key.subkeys, 15, -1);
+        if (DESMetrics.ENABLED) {
+            DESMetrics.record(false, length/8, length, start);
+        }
+    }
+
+    //////////////////////////////////////////////////////////////////////
+    //
+    // Implementation
+    //
+    //////////////////////////////////////////////////////////////////////
+
+    /**
+     * Run the subkeys from index first, stepping by step (1 to
+     * encrypt, -1 to decrypt).  Blocks left over at the end are
+     * handled with progressively fewer lanes.  Nothing is recorded in
+     * DESMetrics, so DESVectorLanes also uses this for its leftover
+     * blocks.
+     */
+    void crypt(byte[] in, int inOffset, int length, byte[] out, int outOffset,
+                       long[] subkeys, int first, int step) {
+        int done = 0;
+        if (lanes >= 8) {
+            done += crypt8(in, inOffset+done, length-done, out, outOffset+done, subkeys, first, step);
+        }
+        if (lanes >= 4) {
+            done += crypt4(in, inOffset+done, length-done, out, outOffset+done, subkeys, first, step);
+        }
+        if (lanes >= 2) {
+            done += crypt2(in, inOffset+done, length-done, out, outOffset+done, subkeys, first, step);
+        }
+        crypt1(in, inOffset+done, length-done, out, outOffset+done, subkeys, first, step);
+    }
+
+    /**
+     * Process one block at a time; returns the number of bytes
+     * processed, a multiple of 8.
+     */
+    private static int crypt1(byte[] in, int inOffset, int length, byte[] out, int outOffset,
+                              long[] subkeys, int first, int step) {
+        int end = length - length % 8;
+        for (int p=0; p<end; p+=8) {
+            long ip0 = DES.fastIP(DES.readLong(in, inOffset+p));
+            int l0 = (int) (ip0>>32), r0 = (int) ip0;
+            for (int i=first, round=0; round<16; round+=2, i+=2*step) {
+                long k0 = subkeys[i], k1 = subkeys[i+step];
+                l0 ^= DES.feistelSP(r0, k0);
+                r0 ^= DES.feistelSP(l0, k1);
+            }
+            DES.writeLong(out, outOffset+p+0, DES.fastFP((r0&0xFFFFFFFFL)<<32 | (l0&0xFFFFFFFFL)));
+        }
+        return end;
+    }
+
+    /**
+     * Process blocks 2 at a time; returns the number of bytes
+     * processed, a multiple of 16.
+     */
+    private static int crypt2(byte[] in, int inOffset, int length, byte[] out, int outOffset,
+                              long[] subkeys, int first, int step) {
+        int end = length - length % 16;
+        for (int p=0; p<end; p+=16) {
+            long ip0 = DES.fastIP(DES.readLong(in, inOffset+p));
+            long ip1 = DES.fastIP(DES.readLong(in, inOffset+p+8));
+            int l0 = (int) (ip0>>32), r0 = (int) ip0;
+            int l1 = (int) (ip1>>32), r1 = (int) ip1;
+            for (int i=first, round=0; round<16; round+=2, i+=2*step) {
+                long k0 = subkeys[i], k1 = subkeys[i+step];
+                l0 ^= DES.feistelSP(r0, k0);
+                l1 ^= DES.feistelSP(r1, k0);
+                r0 ^= DES.feistelSP(l0, k1);
+                r1 ^= DES.feistelSP(l1, k1);
+            }
+            DES.writeLong(out, outOffset+p+0, DES.fastFP((r0&0xFFFFFFFFL)<<32 | (l0&0xFFFFFFFFL)));
+            DES.writeLong(out, outOffset+p+8, DES.fastFP((r1&0xFFFFFFFFL)<<32 | (l1&0xFFFFFFFFL)));
+        }
+        return end;
+    }
+
+    /**
+     * Process blocks 4 at a time; returns the number of bytes
+     * processed, a multiple of 32.
+     */
+    private static int crypt4(byte[] in, int inOffset, int length, byte[] out, int outOffset,
+                              long[] subkeys, int first, int step) {
+        int end = length - length % 32;
+        for (int p=0; p<end; p+=32) {
+            long ip0 = DES.fastIP(DES.readLong(in, inOffset+p));
+            long ip1 = DES.fastIP(DES.readLong(in, inOffset+p+8));
+            long ip2 = DES.fastIP(DES.readLong(in, inOffset+p+16));
+            long ip3 = DES.fastIP(DES.readLong(in, inOffset+p+24));
+            int l0 = (int) (ip0>>32), r0 = (int) ip0;
+            int l1 = (int) (ip1>>32), r1 = (int) ip1;
+            int l2 = (int) (ip2>>32), r2 = (int) ip2;
+            int l3 = (int) (ip3>>32), r3 = (int) ip3;
+            for (int i=first, round=0; round<16; round+=2, i+=2*step) {
+                long k0 = subkeys[i], k1 = subkeys[i+step];
+                l0 ^= DES.feistelSP(r0, k0);
+                l1 ^= DES.feistelSP(r1, k0);
+                l2 ^= DES.feistelSP(r2, k0);
+                l3 ^= DES.feistelSP(r3, k0);
+                r0 ^= DES.feistelSP(l0, k1);
+                r1 ^= DES.feistelSP(l1, k1);
+                r2 ^= DES.feistelSP(l2, k1);
+                r3 ^= DES.feistelSP(l3, k1);
+            }
+            DES.writeLong(out, outOffset+p+0, DES.fastFP((r0&0xFFFFFFFFL)<<32 | (l0&0xFFFFFFFFL)));
+            DES.writeLong(out, outOffset+p+8, DES.fastFP((r1&0xFFFFFFFFL)<<32 | (l1&0xFFFFFFFFL)));
+            DES.writeLong(out, outOffset+p+16, DES.fastFP((r2&0xFFFFFFFFL)<<32 | (l2&0xFFFFFFFFL)));
+            DES.writeLong(out, outOffset+p+24, DES.fastFP((r3&0xFFFFFFFFL)<<32 | (l3&0xFFFFFFFFL)));
+        }
+        return end;
+    }
+
+    /**
+     * Process blocks 8 at a time; returns the number of bytes
+     * processed, a multiple of 64.
+     */
+    private static int crypt8(byte[] in, int inOffset, int length, byte[] out, int outOffset,
+                              long[] subkeys, int first, int step) {
+        int end = length - length % 64;
+        for (int p=0; p<end; p+=64) {
+            long ip0 = DES.fastIP(DES.readLong(in, inOffset+p));
+            long ip1 = DES.fastIP(DES.readLong(in, inOffset+p+8));
+            long ip2 = DES.fastIP(DES.readLong(in, inOffset+p+16));
+            long ip3 = DES.fastIP(DES.readLong(in, inOffset+p+24));
+            long ip4 = DES.fastIP(DES.readLong(in, inOffset+p+32));
+            long ip5 = DES.fastIP(DES.readLong(in, inOffset+p+40));
+            long ip6 = DES.fastIP(DES.readLong(in, inOffset+p+48));
+            long ip7 = DES.fastIP(DES.readLong(in, inOffset+p+56));
+            int l0 = (int) (ip0>>32), r0 = (int) ip0;
+            int l1 = (int) (ip1>>32), r1 = (int) ip1;
+            int l2 = (int) (ip2>>32), r2 = (int) ip2;
+            int l3 = (int) (ip3>>32), r3 = (int) ip3;
+            int l4 = (int) (ip4>>32), r4 = (int) ip4;
+            int l5 = (int) (ip5>>32), r5 = (int) ip5;
+            int l6 = (int) (ip6>>32), r6 = (int) ip6;
+            int l7 = (int) (ip7>>32), r7 = (int) ip7;
+            for (int i=first, round=0; round<16; round+=2, i+=2*step) {
+                long k0 = subkeys[i], k1 = subkeys[i+step];
+                l0 ^= DES.feistelSP(r0, k0);
+                l1 ^= DES.feistelSP(r1, k0);
+                l2 ^= DES.feistelSP(r2, k0);
+                l3 ^= DES.feistelSP(r3, k0);
+                l4 ^= DES.feistelSP(r4, k0);
+                l5 ^= DES.feistelSP(r5, k0);
+                l6 ^= DES.feistelSP(r6, k0);
+                l7 ^= DES.feistelSP(r7, k0);
+                r0 ^= DES.feistelSP(l0, k1);
+                r1 ^= DES.feistelSP(l1, k1);
+                r2 ^= DES.feistelSP(l2, k1);
+                r3 ^= DES.feistelSP(l3, k1);
+                r4 ^= DES.feistelSP(l4, k1);
+                r5 ^= DES.feistelSP(l5, k1);
+                r6 ^= DES.feistelSP(l6, k1);
+                r7 ^= DES.feistelSP(l7, k1);
+            }
+            DES.writeLong(out, outOffset+p+0, DES.fastFP((r0&0xFFFFFFFFL)<<32 | (l0&0xFFFFFFFFL)));
+            DES.writeLong(out, outOffset+p+8, DES.fastFP((r1&0xFFFFFFFFL)<<32 | (l1&0xFFFFFFFFL)));
+            DES.writeLong(out, outOffset+p+16, DES.fastFP((r2&0xFFFFFFFFL)<<32 | (l2&0xFFFFFFFFL)));
+            DES.writeLong(out, outOffset+p+24, DES.fastFP((r3&0xFFFFFFFFL)<<32 | (l3&0xFFFFFFFFL)));
+            DES.writeLong(out, outOffset+p+32, DES.fastFP((r4&0xFFFFFFFFL)<<32 | (l4&0xFFFFFFFFL)));
+            DES.writeLong(out, outOffset+p+40, DES.fastFP((r5&0xFFFFFFFFL)<<32 | (l5&0xFFFFFFFFL)));
+            DES.writeLong(out, outOffset+p+48, DES.fastFP((r6&0xFFFFFFFFL)<<32 | (l6&0xFFFFFFFFL)));
+            DES.writeLong(out, outOffset+p+56, DES.fastFP((r7&0xFFFFFFFFL)<<32 | (l7&0xFFFFFFFFL)));
+        }
+        return end;
+    }
+
+}
@@ -0,0 +1,320 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.nio.ByteBuffer;
+
+/**
+ * Message authentication codes from ISO/IEC 9797-1, computed
+ * incrementally.
+ *
+ * Two of the standard's MAC algorithms are supported:
+ *
+ * Algorithm 1 (CBC-MAC) - the message is encrypted in CBC mode with a
+ * zero IV, and the MAC is the last ciphertext block.  This works with
+ * any DESBlockCipher, including Triple-DES.
+ *
+ * Algorithm 3 (the "Retail MAC" of ANSI X9.19) - CBC-MAC with single
+ * DES under key K1, after which the last block is decrypted with K2 and
+ * encrypted again with K1.  This costs only two extra DES operations
+ * per message, but makes the final block as hard to attack as
+ * Triple-DES.
+ *
+ * and two of its padding methods:
+ *
+ * Method 1 - zero bytes up to the next multiple of 8 (none if the
+ * message is already a multiple of 8, but a whole block for an empty
+ * message).  Messages which differ only in trailing zeros have the
+ * same MAC, so this is only safe when the length is fixed or is
+ * authenticated some other way.
+ *
+ * Method 2 - a 0x80 byte followed by zero bytes up to the next multiple
+ * of 8.  This always adds at least one byte.
+ *
+ * The MAC is kept as a running CBC chaining value in a long, and the
+ * bytes of an incomplete block in another, so update() does not
+ * allocate or copy, and whole blocks go straight from the input to
+ * the block function.  The key schedules are built once and used for
+ * every message; doFinal() returns the instance to its initial state,
+ * ready for the next message.
+ *
+ * A DESMac instance is not thread-safe, but the keys it uses may be
+ * shared by any number of instances.
+ */
+public final class DESMac {
+
+    /** The MAC length in bytes, before any truncation by the caller. */
+    public static final int MAC_LENGTH = 8;
+
+    /**
+     * ISO/IEC 9797-1 padding methods.
+     */
+    public enum Padding {
+        /** Zero bytes, to a non-zero multiple of the block size. */
+        METHOD_1,
+        /** A 0x80 byte, then zero bytes to a multiple of the block size. */
+        METHOD_2
+    }
+
+    /** The cipher used to chain every block (K1 for the Retail MAC). */
+    private final DESBlockCipher key;
+
+    /** The subkeys of key, if it is a DESKey, or null. */
+    private final long[] subkeys;
+
+    /** K2 for the Retail MAC, or null for CBC-MAC. */
+    private final DESKey finalKey;
+
+    private final Padding padding;
+
+    /** The CBC chaining value: the MAC of the whole blocks so far. */
+    private long chain;
+
+    /** Bytes of an incomplete block, accumulated big-endian. */
+    private long pending;
+
+    /** Number of bytes accumulated in pending (0-7). */
+    private int pendingLength;
+
+    /** True if any bytes have been supplied since the last reset. */
+    private boolean started;
+
+    private DESMac(DESBlockCipher key, DESKey finalKey, Padding padding) {
+        if (key == null) {
+            throw new NullPointerException("key");
+        }
+        if (padding == null) {
+            throw new NullPointerException("padding");
+        }
+        this.key = key;
+        this.subkeys = (key instanceof DESKey) ? ((DESKey) key).subkeys : null;
+        this.finalKey = finalKey;
+        this.padding = padding;
+    }
+
+    //////////////////////////////////////////////////////////////////////
+    //
+    // Factory methods
+    //
+    //////////////////////////////////////////////////////////////////////
+
+    /**
+     * Create an ISO/IEC 9797-1 MAC algorithm 1 (CBC-MAC) instance.
+     */
+    public static DESMac cbcMac(DESBlockCipher key, Padding padding) {
+        return new DESMac(key, null, padding);
+    }
+
+    /**
+     * Create an ISO/IEC 9797-1 MAC algorithm 3 (Retail MAC) instance
+     * with the keys K1 and K2.
+     */
+    public static DESMac retailMac(DESKey k1, DESKey k2, Padding padding) {
+        if (k2 == null) {
+            throw new NullPointerException("k2");
+        }
+        return new DESMac(k1, k2, padding);
+    }
+
+    /**
+     * Create an ISO/IEC 9797-1 MAC algorithm 3 (Retail MAC) instance
+     * from a 16-byte key: K1 followed by K2.
+     */
+    public static DESMac retailMac(byte[] key, Padding padding) {
+        if (key.length != 16) {
+            throw new IllegalArgumentException("Retail MAC key must be 16 bytes");
+        }
+        return retailMac(new DESKey(DES.readLong(key, 0)), new DESKey(DES.readLong(key, 8)), padding);
+    }
+
+    //////////////////////////////////////////////////////////////////////
+    //
+    // MAC computation
+    //
+    //////////////////////////////////////////////////////////////////////
+
+    /**
+     * Chain one whole block into the MAC.
+     */
+    private void processBlock(long block) {
+        if (subkeys != null) {
+            chain = DES.encryptBlock(block ^ chain, subkeys, 0);
+        } else {
+            chain = key.encryptBlock(block ^ chain);
+        }
+    }
+
+    /**
+     * Add one byte to the message.
+     */
+    public void update(byte b) {
+        started = true;
+        pending = pending<<8 | (b&0xFFL);
+        if (++pendingLength == 8) {
+            processBlock(pending);
+            pendingLength = 0;
+            if (DESMetrics.ENABLED) {
+                DESMetrics.blocks(true, 1);
+            }
+        }
+    }
+
+    /**
+     * Add length bytes of the array, starting at offset, to the message.
+     */
+    public void update(byte[] in, int offset, int length) {
+        if (length <= 0) {
+            return;
+        }
+        started = true;
+        int total = length;
+        long startTime = DESMetrics.start();
+        long blocks = 0;
+
+        // complete a previously started block
+        while (pendingLength > 0 && length > 0) {
+            pending = pending<<8 | (in[offset++]&0xFFL);
+            length--;
+            if (++pendingLength == 8) {
+                processBlock(pending);
+                pendingLength = 0;
+                blocks++;
+            }
+        }
+
+        // whole blocks
+        int end = offset + (length & ~7);
+        blocks += (length >>> 3);
+        long c = chain;
+        if (subkeys != null) {
+            for (; offset<end; offset+=8) {
+                c = DES.encryptBlock(DES.readLong(in, offset) ^ c, subkeys, 0);
+            }
+        } else {
+            for (; offset<end; offset+=8) {
+                c = key.encryptBlock(DES.readLong(in, offset) ^ c);
+            }
+        }
+        chain = c;
+        length &= 7;
+
+        // hold back the start of the next block
+        while (length > 0) {
+            pending = pending<<8 | (in[offset++]&0xFFL);
+            pendingLength++;
+            length--;
+        }
+
+        if (DESMetrics.ENABLED) {
+            DESMetrics.record(true, blocks, total, startTime);
+        }
+    }
+
+    /**
+     * Add the remaining bytes of the buffer to the message, advancing
+     * its position to its limit.
+     */
+    public void update(ByteBuffer src) {
+        int length = src.remaining();
+        if (length == 0) {
+            return;
+        }
+        started = true;
+        int total = length;
+        long startTime = DESMetrics.start();
+        long blocks = 0;
+        int in = src.position();
+
+        while (pendingLength > 0 && length > 0) {
+            pending = pending<<8 | (src.get(in++)&0xFFL);
+            length--;
+            if (++pendingLength == 8) {
+                processBlock(pending);
+                pendingLength = 0;
+                blocks++;
+            }
+        }
+        int end = in + (length & ~7);
+        blocks += (length >>> 3);
+        long c = chain;
+        if (subkeys != null) {
+            for (; in<end; in+=8) {
+                c = DES.encryptBlock(DES.readLong(src, in) ^ c, subkeys, 0);
+            }
+        } else {
+            for (; in<end; in+=8) {
+                c = key.encryptBlock(DES.readLong(src, in) ^ c);
+            }
+        }
+        chain = c;
+        length &= 7;
+        while (length > 0) {
+            pending = pending<<8 | (src.get(in++)&0xFFL);
+            pendingLength++;
+            length--;
+        }
+
+        src.position(in);
+        if (DESMetrics.ENABLED) {
+            DESMetrics.record(true, blocks, total, startTime);
+        }
+    }
+
+    /**
+     * Pad the message, complete the MAC and return it as a big-endian
+     * long.  The instance is then reset for the next message.
+     */
+    public long doFinal() {
+        if (padding == Padding.METHOD_2) {
+            pending = pending<<8 | 0x80;
+            pendingLength++;
+        }
+        if (pendingLength > 0 || !started) {
+            processBlock(pending << (8*(8-pendingLength)));
+            if (DESMetrics.ENABLED) {
+                DESMetrics.blocks(true, 1);
+            }
+        }
+        long mac = chain;
+        if (finalKey != null) {
+            mac = key.encryptBlock(finalKey.decryptBlock(mac));
+        }
+        reset();
+        return mac;
+    }
+
+    /**
+     * Pad the message, complete the MAC and write it to the array.
+     * The instance is then reset for the next message.
+     *
+     * @return the number of bytes written (MAC_LENGTH).
+     */
+    public int doFinal(byte[] out, int offset) {
+        if (out.length - offset < MAC_LENGTH) {
+            throw new IllegalArgumentException("output buffer too short");
+        }
+        DES.writeLong(out, offset, doFinal());
+        return MAC_LENGTH;
+    }
+
+    /**
+     * Discard any message in progress.
+     */
+    public void reset() {
+        chain = 0;
+        pending = 0;
+        pendingLength = 0;
+        started = false;
+    }
+
+}
@@ -0,0 +1,377 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Optional usage metrics for the DES classes.
+ *
+ * Metrics are only collected when the JVM is started with
+ * -Ddes.metrics=true.  The flag is read once, into a static final
+ * field, and every recording site is guarded by it, so when metrics
+ * are disabled the JIT compiler removes the instrumentation entirely:
+ * there is no allocation, no timing call and no shared memory write.
+ *
+ * When enabled, this collects:
+ *
+ *   - blocks encrypted and decrypted, and payload bytes processed, by
+ *     the DES, TripleDES, DESMode, DESLanes, DESBatch and DESBitslice
+ *     public methods.  DESParallel and the JCA provider are counted
+ *     through the methods they call.  The DESBlockCipher methods of
+ *     DESKey and TripleDESKey are the building blocks of the modes,
+ *     and are not counted themselves.
+ *   - key schedules built, and VNCAuth key cache hits and misses.
+ *   - the latency of each bulk call (not single-block calls, which
+ *     take less time than reading the clock), in a log-linear
+ *     histogram with 16 sub-buckets per power of two, which keeps
+ *     the error of any reported value under 1/16.
+ *
+ * All recording is lock-free.  The values are available through the
+ * snapshot() pull API, and through JMX as the DESMetricsMBean
+ * "desdemo:type=DESMetrics", which is registered with the platform
+ * MBean server when metrics are enabled.
+ */
+public final class DESMetrics implements DESMetricsMBean {
+
+    /** True if metrics are being collected. */
+    public static final boolean ENABLED = Boolean.getBoolean("des.metrics");
+
+    /** The JMX object name of the metrics MBean. */
+    public static final String OBJECT_NAME = "desdemo:type=DESMetrics";
+
+    private static final DESMetrics INSTANCE = new DESMetrics();
+
+    // counters
+    private static final AtomicLong blocksEncrypted = new AtomicLong();
+    private static final AtomicLong blocksDecrypted = new AtomicLong();
+    private static final AtomicLong bytes = new AtomicLong();
+    private static final AtomicLong scheduleBuilds = new AtomicLong();
+    private static final AtomicLong cacheHits = new AtomicLong();
+    private static final AtomicLong cacheMisses = new AtomicLong();
+    private static volatile long resetTime = System.nanoTime();
+
+    // latency histogram: values 0-31 have a bucket each; above that,
+    // each power of two is split into 16 buckets.
+    private static final int BUCKETS = 960;
+    private static final AtomicLongArray histogram = new AtomicLongArray(BUCKETS);
+    private static final AtomicLong maxLatency = new AtomicLong();
+
+    static {
+        if (ENABLED) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(
+                    INSTANCE, new ObjectName(OBJECT_NAME));
+            } catch (JMException e) {
+                // already registered by another class loader, or no
+                // JMX support; the pull API still works
+            }
+        }
+    }
+
+    private DESMetrics() {
+    }
+
+    //////////////////////////////////////////////////////////////////////
+    //
+    // Recording (callers check ENABLED first)
+    //
+    //////////////////////////////////////////////////////////////////////
+
+    /**
+     * Return the current time for a later call to record(), or 0 if
+     * metrics are disabled.
+     */
+    static long start() {
+        return ENABLED ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Count blocks processed by a single-block call.
+     */
+    static void blocks(boolean encrypt, long count) {
+        (encrypt ? blocksEncrypted : blocksDecrypted).addAndGet(count);
+        bytes.addAndGet(8*count);
+    }
+
+    /**
+     * Count the blocks and bytes processed by a bulk call, and record
+     * its latency.
+     */
+    static void record(boolean encrypt, long blockCount, long byteCount, long startNanos) {
+        long latency = System.nanoTime() - startNanos;
+        (encrypt ? blocksEncrypted : blocksDecrypted).addAndGet(blockCount);
+        bytes.addAndGet(byteCount);
+        histogram.incrementAndGet(bucket(latency));
+        long max;
+        while (latency > (max = maxLatency.get()) && !maxLatency.compareAndSet(max, latency)) {
+            // retry
+        }
+    }
+
+    static void scheduleBuilt(long count) {
+        scheduleBuilds.addAndGet(count);
+    }
+
+    static void cacheHit() {
+        cacheHits.incrementAndGet();
+    }
+
+    static void cacheMiss() {
+        cacheMisses.incrementAndGet();
+    }
+
+    /**
+     * Return the histogram bucket for a latency value.
+     */
+    static int bucket(long value) {
+        if (value < 32) {
+            return (int) Math.max(value, 0);
+        }
+        int shift = 59 - Long.numberOfLeadingZeros(value);
+        return 16*shift + (int) (value >>> shift);
+    }
+
+    /**
+     * Return the smallest value that falls in the specified bucket.
+     */
+    static long lowerBound(int bucket) {
+        if (bucket < 32) {
+            return bucket;
+        }
+        int shift = bucket/16 - 1;
+        return (long) (bucket - 16*shift) << shift;
+    }
+
+    //////////////////////////////////////////////////////////////////////
+    //
+    // Pull API
+    //
+    //////////////////////////////////////////////////////////////////////
+
+    /**
+     * A point-in-time copy of the metrics.  Each value is read
+     * atomically, but the values are not read at the same instant, so
+     * they may be slightly out of step with each other if blocks are
+     * being processed during the snapshot.
+     */
+    public static final class Snapshot {
+        private final long blocksEncrypted;
+        private final long blocksDecrypted;
+        private final long bytes;
+        private final long scheduleBuilds;
+        private final long cacheHits;
+        private final long cacheMisses;
+        private final long elapsedNanos;
+        private final long[] histogram;
+        private final long calls;
+        private final long maxLatency;
+
+        private Snapshot() {
+            this.elapsedNanos = System.nanoTime() - resetTime;
+            this.blocksEncrypted = DESMetrics.blocksEncrypted.get();
+            this.blocksDecrypted = DESMetrics.blocksDecrypted.get();
+            this.bytes = DESMetrics.bytes.get();
+            this.scheduleBuilds = DESMetrics.scheduleBuilds.get();
+            this.cacheHits = DESMetrics.cacheHits.get();
+            this.cacheMisses = DESMetrics.cacheMisses.get();
+            this.histogram = new long[BUCKETS];
+            long calls = 0;
+            for (int i=0; i<BUCKETS; i++) {
+                histogram[i] = DESMetrics.histogram.get(i);
+                calls += histogram[i];
+            }
+            this.calls = calls;
+            this.maxLatency = DESMetrics.maxLatency.get();
+        }
+
+        public long getBlocksEncrypted() {
+            return blocksEncrypted;
+        }
+
+        public long getBlocksDecrypted() {
+            return blocksDecrypted;
+        }
+
+        public long getBytesProcessed() {
+            return bytes;
+        }
+
+        /**
+         * Return the number of nanoseconds between the last reset and
+         * this snapshot.
+         */
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        public double getBytesPerSecond() {
+            return (elapsedNanos > 0) ? bytes * 1e9 / elapsedNanos : 0;
+        }
+
+        public long getScheduleBuilds() {
+            return scheduleBuilds;
+        }
+
+        public long getScheduleCacheHits() {
+            return cacheHits;
+        }
+
+        public long getScheduleCacheMisses() {
+            return cacheMisses;
+        }
+
+        /**
+         * Return the number of bulk calls in the latency histogram.
+         */
+        public long getCallCount() {
+            return calls;
+        }
+
+        public long getLatencyMax() {
+            return maxLatency;
+        }
+
+        /**
+         * Return the bulk call latency, in nanoseconds, at or below
+         * which the specified percentage (0-100) of calls fell, or 0
+         * if no calls have been recorded.  The result is the top of a
+         * histogram bucket, so it may exceed the true value by up to
+         * 1/16.
+         */
+        public long getLatencyPercentile(double percent) {
+            if (calls == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(calls * percent / 100));
+            long seen = 0;
+            for (int i=0; i<BUCKETS; i++) {
+                seen += histogram[i];
+                if (seen >= rank) {
+                    long top = (i+1 < BUCKETS) ? lowerBound(i+1) - 1 : Long.MAX_VALUE;
+                    return Math.min(top, maxLatency);
+                }
+            }
+            return maxLatency;
+        }
+
+        public String toString() {
+            return String.format(
+                "encrypted=%d decrypted=%d bytes=%d (%.1f MB/s) schedules=%d "
+                    + "cache=%d/%d calls=%d p50=%dns p99=%dns max=%dns",
+                blocksEncrypted, blocksDecrypted, bytes, getBytesPerSecond() / 1e6,
+                scheduleBuilds, cacheHits, cacheHits + cacheMisses, calls,
+                getLatencyPercentile(50), getLatencyPercentile(99), maxLatency);
+        }
+    }
+
+    /**
+     * Return a copy of the current metrics.
+     */
+    public static Snapshot snapshot() {
+        return new Snapshot();
+    }
+
+    /**
+     * Reset all counters and the latency histogram to zero.  Blocks
+     * processed while the reset is in progress may be partly counted.
+     */
+    public static void resetAll() {
+        blocksEncrypted.set(0);
+        blocksDecrypted.set(0);
+        bytes.set(0);
+        scheduleBuilds.set(0);
+        cacheHits.set(0);
+        cacheMisses.set(0);
+        for (int i=0; i<BUCKETS; i++) {
+            histogram.set(i, 0);
+        }
+        maxLatency.set(0);
+        resetTime = System.nanoTime();
+    }
+
+    /**
+     * Return the MBean instance.
+     */
+    public static DESMetrics getInstance() {
+        return INSTANCE;
+    }
+
+    //////////////////////////////////////////////////////////////////////
+    //
+    // DESMetricsMBean
+    //
+    //////////////////////////////////////////////////////////////////////
+
+    public boolean isEnabled() {
+        return ENABLED;
+    }
+
+    public long getBlocksEncrypted() {
+        return blocksEncrypted.get();
+    }
+
+    public long getBlocksDecrypted() {
+        return blocksDecrypted.get();
+    }
+
+    public long getBytesProcessed() {
+        return bytes.get();
+    }
+
+    public double getBytesPerSecond() {
+        return snapshot().getBytesPerSecond();
+    }
+
+    public long getScheduleBuilds() {
+        return scheduleBuilds.get();
+    }
+
+    public long getScheduleCacheHits() {
+        return cacheHits.get();
+    }
+
+    public long getScheduleCacheMisses() {
+        return cacheMisses.get();
+    }
+
+    public long getCallCount() {
+        return snapshot().getCallCount();
+    }
+
+    public long getLatencyP50() {
+        return snapshot().getLatencyPercentile(50);
+    }
+
+    public long getLatencyP99() {
+        return snapshot().getLatencyPercentile(99);
+    }
+
+    public long getLatencyP999() {
+        return snapshot().getLatencyPercentile(99.9);
+    }
+
+    public long getLatencyMax() {
+        return maxLatency.get();
+    }
+
+    public void reset() {
+        resetAll();
+    }
+
+}
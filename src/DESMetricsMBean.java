@@ -0,0 +1,63 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * JMX management interface for DESMetrics.  All values are totals
+ * since the last reset, or since class initialization.
+ */
+public interface DESMetricsMBean {
+
+    /** Return true if metrics are being collected. */
+    boolean isEnabled();
+
+    /** Return the number of blocks encrypted. */
+    long getBlocksEncrypted();
+
+    /** Return the number of blocks decrypted. */
+    long getBlocksDecrypted();
+
+    /** Return the number of payload bytes processed. */
+    long getBytesProcessed();
+
+    /** Return the average throughput in bytes per second. */
+    double getBytesPerSecond();
+
+    /** Return the number of key schedules built. */
+    long getScheduleBuilds();
+
+    /** Return the number of VNCAuth key cache hits. */
+    long getScheduleCacheHits();
+
+    /** Return the number of VNCAuth key cache misses. */
+    long getScheduleCacheMisses();
+
+    /** Return the number of bulk calls timed. */
+    long getCallCount();
+
+    /** Return the median bulk call latency, in nanoseconds. */
+    long getLatencyP50();
+
+    /** Return the 99th percentile bulk call latency, in nanoseconds. */
+    long getLatencyP99();
+
+    /** Return the 99.9th percentile bulk call latency, in nanoseconds. */
+    long getLatencyP999();
+
+    /** Return the maximum bulk call latency, in nanoseconds. */
+    long getLatencyMax();
+
+    /** Reset all counters and the latency histogram. */
+    void reset();
+
+}
@@ -0,0 +1,551 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * Modes of operation for DES.
+ *
+ * A DESMode holds the running state (chaining value, counter, or
+ * unused keystream) of one encryption or decryption, so a message can
+ * be fed to update() in chunks of any size.  The following modes are
+ * supported:
+ *
+ * ECB - Electronic Code Book.  Each block is encrypted independently.
+ *
+ * CBC - Cipher Block Chaining.  Each message block is XORed with the
+ * previous ciphertext block (or the IV) before being encrypted.
+ *
+ * CFB - 64-bit Cipher Feedback.  The previous ciphertext block (or the
+ * IV) is encrypted to produce keystream.
+ *
+ * OFB - 64-bit Output Feedback.  The previous keystream block (or the
+ * IV) is encrypted to produce keystream.
+ *
+ * CTR - Counter.  A 64-bit big-endian counter, starting at the IV, is
+ * encrypted to produce keystream.  Since each keystream block only
+ * depends on its position, CTR can be computed in parallel.
+ *
+ * ECB and CBC only work on whole blocks, so update() holds back any
+ * trailing partial block until the rest of it arrives.  The other
+ * modes turn DES into a stream cipher, and always produce exactly as
+ * many bytes as they consume.
+ *
+ * The modes are described in FIPS 81 ("DES Modes of Operation") and
+ * NIST SP 800-38A.
+ *
+ * Every mode works with either a single DES key (DESKey) or a
+ * Triple-DES key (TripleDESKey).
+ *
+ * A DESMode instance is not thread-safe, but the key it uses may be
+ * shared by any number of instances.
+ */
+public abstract class DESMode {
+
+    /** The keyed block cipher (DES or Triple-DES) used for every block. */
+    final DESBlockCipher key;
+
+    /** True if this instance encrypts, false if it decrypts. */
+    final boolean encrypting;
+
+    DESMode(DESBlockCipher key, boolean encrypting) {
+        this.key = key;
+        this.encrypting = encrypting;
+    }
+
+    //////////////////////////////////////////////////////////////////////
+    //
+    // Factory methods
+    //
+    //////////////////////////////////////////////////////////////////////
+
+    /**
+     * Create an Electronic Code Book (ECB) encryptor or decryptor.
+     */
+    public static DESMode ecb(DESBlockCipher key, boolean encrypt) {
+        return new ECB(key, encrypt);
+    }
+
+    /**
+     * Create a Cipher Block Chaining (CBC) encryptor or decryptor with
+     * the specified 64-bit initialization vector.
+     */
+    public static DESMode cbc(DESBlockCipher key, long iv, boolean encrypt) {
+        return new CBC(key, iv, encrypt);
+    }
+
+    /**
+     * Create a 64-bit Cipher Feedback (CFB) encryptor or decryptor
+     * with the specified 64-bit initialization vector.
+     */
+    public static DESMode cfb(DESBlockCipher key, long iv, boolean encrypt) {
+        return new CFB(key, iv, encrypt);
+    }
+
+    /**
+     * Create a 64-bit Output Feedback (OFB) encryptor or decryptor
+     * with the specified 64-bit initialization vector.  (Encryption
+     * and decryption are the same operation in this mode.)
+     */
+    public static DESMode ofb(DESBlockCipher key, long iv, boolean encrypt) {
+        return new OFB(key, iv, encrypt);
+    }
+
+    /**
+     * Create a Counter (CTR) mode encryptor or decryptor whose
+     * counter starts at the specified 64-bit value.  (Encryption and
+     * decryption are the same operation in this mode.)
+     */
+    public static DESMode ctr(DESBlockCipher key, long counter, boolean encrypt) {
+        return new CTR(key, counter, encrypt);
+    }
+
+    //////////////////////////////////////////////////////////////////////
+    //
+    // Public interface
+    //
+    //////////////////////////////////////////////////////////////////////
+
+    /**
+     * Return true if this instance encrypts, false if it decrypts.
+     */
+    public boolean isEncrypting() {
+        return encrypting;
+    }
+
+    /**
+     * Return the number of input bytes that have been consumed by
+     * update() but not yet written out.  This is always zero for the
+     * stream modes (CFB, OFB, CTR).
+     */
+    public abstract int getBufferedLength();
+
+    /**
+     * Return the largest number of bytes that a call to update() with
+     * the given input length could produce.
+     */
+    public abstract int getOutputSize(int length);
+
+    /**
+     * Process length bytes of the input array, starting at inOffset,
+     * writing the result into the output array starting at outOffset.
+     * The input and output may start at the same offset of the same
+     * array, even while a partial block from an earlier call is
+     * pending; in that case the output may extend up to 7 bytes past
+     * the end of the input (see getOutputSize()).
+     *
+     * @return the number of bytes written to the output array.
+     * @throws IllegalArgumentException if length is negative.
+     */
+    public abstract int update(
+        byte[] in,
+        int inOffset,
+        int length,
+        byte[] out,
+        int outOffset
+    );
+
+    /**
+     * Process all of the remaining bytes of the source buffer into the
+     * destination buffer, advancing the position of both.
+     *
+     * @return the number of bytes written to the destination buffer.
+     * @throws BufferOverflowException if the destination may not have
+     *     enough space remaining; neither buffer is modified.
+     */
+    public abstract int update(ByteBuffer src, ByteBuffer dst);
+
+    //////////////////////////////////////////////////////////////////////
+    //
+    // Block modes (ECB and CBC)
+    //
+    //////////////////////////////////////////////////////////////////////
+
+    /**
+     * Common implementation of the modes that only work on whole
+     * blocks.  A partial block is accumulated into a long until the
+     * rest of it arrives.
+     */
+    static abstract class BlockMode extends DESMode {
+
+        /** Bytes of an incomplete block, accumulated big-endian. */
+        private long pending;
+
+        /** Number of bytes accumulated in pending (0-7). */
+        private int pendingLength;
+
+        BlockMode(DESBlockCipher key, boolean encrypting) {
+            super(key, encrypting);
+        }
+
+        /**
+         * Encrypt or decrypt one whole block, updating any chaining
+         * state.
+         */
+        abstract long processBlock(long block);
+
+        public int getBufferedLength() {
+            return pendingLength;
+        }
+
+        public int getOutputSize(int length) {
+            return (pendingLength + length) & ~7;
+        }
+
+        public int update(
+            byte[] in,
+            int inOffset,
+            int length,
+            byte[] out,
+            int outOffset
+        ) {
+            DES.checkStreamLength(length);
+            int start = outOffset;
+            int total = length;
+            long startTime = DESMetrics.start();
+
+            // While a partial block is pending, each output block lags
+            // the input by pendingLength bytes, so it overlaps input
+            // that hasn't been used yet when the input and output are
+            // the same region.  Every input word is therefore read
+            // before the output block that covers it is written.
+            if (pendingLength == 0) {
+                while (length >= 8) {
+                    DES.writeLong(out, outOffset, processBlock(DES.readLong(in, inOffset)));
+                    inOffset += 8;
+                    outOffset += 8;
+                    length -= 8;
+                }
+            } else {
+                int shift = 8*pendingLength;
+                while (length >= 8) {
+                    long word = DES.readLong(in, inOffset);
+                    DES.writeLong(out, outOffset, processBlock(pending << (64 - shift) | word >>> shift));
+                    // the last pendingLength bytes start the next block
+                    pending = word;
+                    inOffset += 8;
+                    outOffset += 8;
+                    length -= 8;
+                }
+            }
+
+            // read the rest (under 8 bytes), then complete a block if
+            // there is enough
+            long tail = 0;
+            for (int i=0; i<length; i++) {
+                tail = tail<<8 | (in[inOffset+i]&0xFFL);
+            }
+            outOffset += addTail(tail, length, out, outOffset);
+
+            if (DESMetrics.ENABLED) {
+                DESMetrics.record(encrypting, (outOffset - start)/8, total, startTime);
+            }
+            return outOffset - start;
+        }
+
+        public int update(ByteBuffer src, ByteBuffer dst) {
+            int length = src.remaining();
+            if (dst.remaining() < getOutputSize(length)) {
+                throw new BufferOverflowException();
+            }
+            int total = length;
+            long startTime = DESMetrics.start();
+            int in = src.position();
+            int out = dst.position();
+            int start = out;
+
+            // as above, read each input word before writing the output
+            // block that may overlap it
+            if (pendingLength == 0) {
+                while (length >= 8) {
+                    DES.writeLong(dst, out, processBlock(DES.readLong(src, in)));
+                    in += 8;
+                    out += 8;
+                    length -= 8;
+                }
+            } else {
+                int shift = 8*pendingLength;
+                while (length >= 8) {
+                    long word = DES.readLong(src, in);
+                    DES.writeLong(dst, out, processBlock(pending << (64 - shift) | word >>> shift));
+                    pending = word;
+                    in += 8;
+                    out += 8;
+                    length -= 8;
+                }
+            }
+            long tail = 0;
+            for (int i=0; i<length; i++) {
+                tail = tail<<8 | (src.get(in+i)&0xFFL);
+            }
+            in += length;
+            if (addTail(tail, length, null, 0) > 0) {
+                DES.writeLong(dst, out, completed);
+                out += 8;
+            }
+
+            src.position(in);
+            dst.position(out);
+            if (DESMetrics.ENABLED) {
+                DESMetrics.record(encrypting, (out - start)/8, total, startTime);
+            }
+            return out - start;
+        }
+
+        /** The block completed by the last addTail() call, if any. */
+        private long completed;
+
+        /**
+         * Append the last count (0-7) input bytes of an update, already
+         * read into the low bytes of tail, to the pending bytes.  If
+         * that completes a block, it is processed, and written to out
+         * if out is not null (and kept in completed in any case).
+         *
+         * @return the number of bytes of output: 0 or 8.
+         */
+        private int addTail(long tail, int count, byte[] out, int outOffset) {
+            int have = pendingLength + count;
+            if (have < 8) {
+                pending = (count == 0) ? pending : (pending << (8*count) | tail);
+                pendingLength = have;
+                return 0;
+            }
+            // pendingLength > 0 here, since count < 8
+            int used = 8 - pendingLength;
+            int left = count - used;
+            completed = processBlock(pending << (8*used) | tail >>> (8*left));
+            pending = tail;
+            pendingLength = left;
+            if (out != null) {
+                DES.writeLong(out, outOffset, completed);
+            }
+            return 8;
+        }
+    }
+
+    static final class ECB extends BlockMode {
+        ECB(DESBlockCipher key, boolean encrypting) {
+            super(key, encrypting);
+        }
+        long processBlock(long block) {
+            return encrypting ? key.encryptBlock(block) : key.decryptBlock(block);
+        }
+    }
+
+    static final class CBC extends BlockMode {
+        /** The previous ciphertext block, or the IV. */
+        private long chain;
+
+        CBC(DESBlockCipher key, long iv, boolean encrypting) {
+            super(key, encrypting);
+            this.chain = iv;
+        }
+        long processBlock(long block) {
+            if (encrypting) {
+                chain = key.encryptBlock(block ^ chain);
+                return chain;
+            } else {
+                long m = key.decryptBlock(block) ^ chain;
+                chain = block;
+                return m;
+            }
+        }
+    }
+
+    //////////////////////////////////////////////////////////////////////
+    //
+    // Stream modes (CFB, OFB, CTR)
+    //
+    //////////////////////////////////////////////////////////////////////
+
+    /**
+     * Common implementation of the modes that XOR the data with a
+     * keystream.  Each mode supplies the next keystream block, and
+     * is told about each complete ciphertext block (which only CFB
+     * uses).  Keystream left over from a partial block is kept for the
+     * next call to update().
+     */
+    static abstract class StreamMode extends DESMode {
+
+        /** The current keystream block. */
+        private long keystream;
+
+        /** Number of keystream bytes already used (0-8). */
+        private int used = 8;
+
+        /** Ciphertext bytes of the current block, accumulated big-endian. */
+        private long feedback;
+
+        StreamMode(DESBlockCipher key, boolean encrypting) {
+            super(key, encrypting);
+        }
+
+        /**
+         * Generate the next block of keystream.
+         */
+        abstract long nextKeystream();
+
+        /**
+         * Accept the ciphertext of a completed block.
+         */
+        void feedback(long ciphertext) {
+        }
+
+        public int getBufferedLength() {
+            return 0;
+        }
+
+        public int getOutputSize(int length) {
+            return length;
+        }
+
+        private int processByte(int b) {
+            if (used == 8) {
+                keystream = nextKeystream();
+                used = 0;
+            }
+            int o = (b ^ (int)(keystream >>> (56 - 8*used))) & 0xFF;
+            feedback = feedback<<8 | (encrypting ? o : b&0xFF);
+            if (++used == 8) {
+                feedback(feedback);
+            }
+            return o;
+        }
+
+        /**
+         * Return the number of keystream blocks that processing length
+         * more bytes will generate.  (The keystream is always produced
+         * by encrypting, but the blocks are recorded under the
+         * direction the mode runs in, like those of the block modes.)
+         */
+        private int keystreamBlocks(int length) {
+            int fresh = length - (8 - used);
+            return (fresh > 0) ? (fresh + 7) / 8 : 0;
+        }
+
+        private long processBlock(long block) {
+            long o = block ^ nextKeystream();
+            feedback(encrypting ? o : block);
+            return o;
+        }
+
+        public int update(
+            byte[] in,
+            int inOffset,
+            int length,
+            byte[] out,
+            int outOffset
+        ) {
+            DES.checkStreamLength(length);
+            int total = length;
+            long startTime = DESMetrics.start();
+            long blocks = keystreamBlocks(length);
+            while (used < 8 && length > 0) {
+                out[outOffset++] = (byte) processByte(in[inOffset++]);
+                length--;
+            }
+            while (length >= 8) {
+                DES.writeLong(out, outOffset, processBlock(DES.readLong(in, inOffset)));
+                inOffset += 8;
+                outOffset += 8;
+                length -= 8;
+            }
+            while (length > 0) {
+                out[outOffset++] = (byte) processByte(in[inOffset++]);
+                length--;
+            }
+            if (DESMetrics.ENABLED) {
+                DESMetrics.record(encrypting, blocks, total, startTime);
+            }
+            return total;
+        }
+
+        public int update(ByteBuffer src, ByteBuffer dst) {
+            int length = src.remaining();
+            if (dst.remaining() < length) {
+                throw new BufferOverflowException();
+            }
+            int total = length;
+            long startTime = DESMetrics.start();
+            long blocks = keystreamBlocks(length);
+            int in = src.position();
+            int out = dst.position();
+            while (used < 8 && length > 0) {
+                dst.put(out++, (byte) processByte(src.get(in++)));
+                length--;
+            }
+            while (length >= 8) {
+                DES.writeLong(dst, out, processBlock(DES.readLong(src, in)));
+                in += 8;
+                out += 8;
+                length -= 8;
+            }
+            while (length > 0) {
+                dst.put(out++, (byte) processByte(src.get(in++)));
+                length--;
+            }
+            src.position(in);
+            dst.position(out);
+            if (DESMetrics.ENABLED) {
+                DESMetrics.record(encrypting, blocks, total, startTime);
+            }
+            return total;
+        }
+    }
+
+    static final class CFB extends StreamMode {
+        /** The previous ciphertext block, or the IV. */
+        private long register;
+
+        CFB(DESBlockCipher key, long iv, boolean encrypting) {
+            super(key, encrypting);
+            this.register = iv;
+        }
+        long nextKeystream() {
+            return key.encryptBlock(register);
+        }
+        void feedback(long ciphertext) {
+            register = ciphertext;
+        }
+    }
+
+    static final class OFB extends StreamMode {
+        /** The previous keystream block, or the IV. */
+        private long register;
+
+        OFB(DESBlockCipher key, long iv, boolean encrypting) {
+            super(key, encrypting);
+            this.register = iv;
+        }
+        long nextKeystream() {
+            register = key.encryptBlock(register);
+            return register;
+        }
+    }
+
+    static final class CTR extends StreamMode {
+        /** The counter value for the next keystream block. */
+        private long counter;
+
+        CTR(DESBlockCipher key, long counter, boolean encrypting) {
+            super(key, encrypting);
+            this.counter = counter;
+        }
+        long nextKeystream() {
+            return key.encryptBlock(counter++);
+        }
+    }
+
+}
@@ -0,0 +1,104 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.GeneralSecurityException;
+
+/**
+ * An OutputStream that encrypts (or decrypts) everything written to it
+ * with a DESMode, and writes the result to an underlying stream.
+ *
+ * Data passes through a fixed-size internal buffer, so streams of any
+ * length are processed in constant memory.  The padding scheme is
+ * applied when the stream is closed, so close() must be called to
+ * complete the output.
+ *
+ * Instances are not thread-safe.
+ */
+public class DESOutputStream extends FilterOutputStream {
+
+    /** The size of the internal buffer. */
+    static final int BUFFER_SIZE = 8192;
+
+    private final DESPaddedMode cipher;
+    private final byte[] buffer = new byte[BUFFER_SIZE + 16];
+    private final byte[] single = new byte[1];
+    private boolean closed = false;
+
+    /**
+     * Create a stream which passes everything written to it through
+     * the supplied mode, with the supplied padding scheme, to the
+     * underlying stream.
+     */
+    public DESOutputStream(OutputStream out, DESMode mode, DESPadding padding) {
+        super(out);
+        this.cipher = new DESPaddedMode(mode, padding);
+    }
+
+    public void write(int b) throws IOException {
+        single[0] = (byte) b;
+        write(single, 0, 1);
+    }
+
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (closed) {
+            throw new IOException("stream closed");
+        }
+        while (len > 0) {
+            int n = Math.min(len, BUFFER_SIZE);
+            int produced = cipher.update(b, off, n, buffer, 0);
+            out.write(buffer, 0, produced);
+            off += n;
+            len -= n;
+        }
+    }
+
+    /**
+     * Flush the underlying stream.  Any trailing partial block is kept
+     * until more data is written or the stream is closed.
+     */
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    /**
+     * Apply the padding scheme, write the final output, and close the
+     * underlying stream.
+     *
+     * @throws IOException if the final output can't be produced (for
+     *     example, an incomplete block with no padding, or invalid
+     *     padding when decrypting), or on an I/O error.
+     */
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            int produced;
+            try {
+                produced = cipher.doFinal(buffer, 0);
+            } catch (GeneralSecurityException e) {
+                throw new IOException(e.getMessage(), e);
+            }
+            out.write(buffer, 0, produced);
+            out.flush();
+        } finally {
+            out.close();
+        }
+    }
+
+}
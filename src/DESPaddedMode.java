@@ -0,0 +1,211 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
+import javax.crypto.BadPaddingException;
+import javax.crypto.IllegalBlockSizeException;
+
+/**
+ * A DESMode with a padding scheme applied at the end of the message.
+ * This is the common core of the stream and channel wrappers and the
+ * JCA cipher.
+ *
+ * When encrypting, doFinal() feeds the padding through the mode.  When
+ * decrypting with PKCS5 padding, the last 8 bytes of output are held
+ * back from update(), since they may turn out to be padding, and
+ * released (minus the padding) by doFinal().  As the JCA allows, the
+ * input and output of update() may start at the same offset of the
+ * same array or buffer.
+ *
+ * Instances are single-use and not thread-safe.
+ */
+final class DESPaddedMode {
+
+    private final DESMode mode;
+    private final DESPadding padding;
+
+    /** True if output is held back for padding removal. */
+    private final boolean holding;
+
+    /** Output bytes held back, when holding. */
+    private final byte[] held = new byte[8];
+    private int heldLength;
+
+    /** Scratch space for the next held bytes, in update(). */
+    private final byte[] next = new byte[8];
+
+    /** Number of bytes consumed so far, modulo 8. */
+    private int tail;
+
+    /** Scratch output for doFinal(ByteBuffer), large enough for any final output. */
+    private final byte[] finalOut = new byte[16];
+
+    DESPaddedMode(DESMode mode, DESPadding padding) {
+        this.mode = mode;
+        this.padding = padding;
+        this.holding = !mode.isEncrypting() && padding == DESPadding.PKCS5;
+    }
+
+    /**
+     * Return the largest number of bytes that update() could produce
+     * for the given input length.
+     */
+    int getOutputSize(int length) {
+        return mode.getOutputSize(length) + heldLength;
+    }
+
+    /**
+     * Return the largest number of bytes that update() followed by
+     * doFinal() could produce for the given input length.
+     */
+    int getFinalOutputSize(int length) {
+        int total = mode.getBufferedLength() + length;
+        if (mode.isEncrypting()) {
+            switch (padding) {
+            case PKCS5:
+                return (total + 8) & ~7;
+            case ZERO:
+                return (total + 7) & ~7;
+            default:
+                return total;
+            }
+        }
+        return total + heldLength;
+    }
+
+    int update(byte[] in, int inOffset, int length, byte[] out, int outOffset) {
+        tail = (tail + length) & 7;
+        if (!holding) {
+            return mode.update(in, inOffset, length, out, outOffset);
+        }
+
+        // decrypt first, so that no input is overwritten before it has
+        // been read when the input and output share an array, then put
+        // the previously held bytes in front of the new output and hold
+        // back the last (up to) 8 bytes of the result.
+        int n = mode.update(in, inOffset, length, out, outOffset);
+        int total = heldLength + n;
+        int release = total - Math.min(8, total);
+        for (int i=release; i<total; i++) {
+            next[i-release] = (i < heldLength) ? held[i] : out[outOffset + i - heldLength];
+        }
+        if (release > heldLength) {
+            System.arraycopy(out, outOffset, out, outOffset + heldLength, release - heldLength);
+        }
+        System.arraycopy(held, 0, out, outOffset, Math.min(heldLength, release));
+        heldLength = total - release;
+        System.arraycopy(next, 0, held, 0, heldLength);
+        return release;
+    }
+
+    int update(ByteBuffer src, ByteBuffer dst) {
+        tail = (tail + src.remaining()) & 7;
+        if (!holding) {
+            return mode.update(src, dst);
+        }
+
+        if (dst.remaining() < getOutputSize(src.remaining())) {
+            throw new BufferOverflowException();
+        }
+        // as update(byte[], ...), for buffers that may share memory
+        int start = dst.position();
+        mode.update(src, dst);
+        int n = dst.position() - start;
+        int total = heldLength + n;
+        int release = total - Math.min(8, total);
+        for (int i=release; i<total; i++) {
+            next[i-release] = (i < heldLength) ? held[i] : dst.get(start + i - heldLength);
+        }
+        for (int i=release-1; i>=heldLength; i--) {
+            dst.put(start + i, dst.get(start + i - heldLength));
+        }
+        for (int i=0; i<Math.min(heldLength, release); i++) {
+            dst.put(start + i, held[i]);
+        }
+        heldLength = total - release;
+        System.arraycopy(next, 0, held, 0, heldLength);
+        dst.position(start + release);
+        return release;
+    }
+
+    /**
+     * Finish the message, writing any remaining output (at most 16
+     * bytes) to the output array.
+     *
+     * @return the number of bytes written.
+     * @throws IllegalBlockSizeException if a block mode is left with a
+     *     partial block and no padding to complete it, or the input to
+     *     a PKCS5 decryption is not a whole number of blocks.
+     * @throws BadPaddingException if the PKCS5 padding of decrypted
+     *     data is malformed.
+     */
+    int doFinal(byte[] out, int outOffset)
+        throws IllegalBlockSizeException, BadPaddingException
+    {
+        int written = 0;
+        if (mode.isEncrypting()) {
+            int n = (padding == DESPadding.PKCS5) ? 8 - tail
+                  : (padding == DESPadding.ZERO)  ? (8 - tail) & 7
+                  : 0;
+            if (n > 0) {
+                // the held-output buffer is unused when encrypting
+                byte value = (padding == DESPadding.PKCS5) ? (byte) n : 0;
+                for (int i=0; i<n; i++) {
+                    held[i] = value;
+                }
+                written = mode.update(held, 0, n, out, outOffset);
+            }
+        }
+        if (mode.getBufferedLength() != 0) {
+            throw new IllegalBlockSizeException(
+                "input length is not a multiple of 8 bytes");
+        }
+        if (holding) {
+            if (heldLength != 8 || tail != 0) {
+                throw new IllegalBlockSizeException(
+                    "padded input length is not a multiple of 8 bytes");
+            }
+            int n = held[7] & 0xFF;
+            if (n < 1 || n > 8) {
+                throw new BadPaddingException("invalid PKCS5 padding");
+            }
+            // check every padding byte without exiting early
+            int bad = 0;
+            for (int i=8-n; i<8; i++) {
+                bad |= (held[i] ^ n);
+            }
+            if (bad != 0) {
+                throw new BadPaddingException("invalid PKCS5 padding");
+            }
+            System.arraycopy(held, 0, out, outOffset, 8-n);
+            written = 8-n;
+            heldLength = 0;
+        }
+        return written;
+    }
+
+    /**
+     * ByteBuffer equivalent of doFinal(byte[], int).
+     */
+    int doFinal(ByteBuffer dst)
+        throws IllegalBlockSizeException, BadPaddingException
+    {
+        int n = doFinal(finalOut, 0);
+        dst.put(finalOut, 0, n);
+        return n;
+    }
+
+}
@@ -0,0 +1,43 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Padding schemes for messages that are not a multiple of the 8-byte
+ * DES block size.
+ */
+public enum DESPadding {
+
+    /**
+     * No padding.  With ECB and CBC the message must be a multiple of
+     * 8 bytes; the stream modes (CFB, OFB, CTR) accept any length.
+     */
+    NONE,
+
+    /**
+     * Pad with zero bytes up to the next multiple of 8, as
+     * DES.encrypt() does.  The padding can't be told apart from
+     * trailing zeros in the message, so it is left in place when
+     * decrypting.
+     */
+    ZERO,
+
+    /**
+     * PKCS #5 padding: append n bytes of value n, where n (1-8) brings
+     * the length up to the next multiple of 8.  A whole block of
+     * padding is added to messages that are already a multiple of 8,
+     * so the padding can always be removed again.
+     */
+    PKCS5
+
+}
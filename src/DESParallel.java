@@ -0,0 +1,370 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Multi-threaded bulk encryption for large payloads.
+ *
+ * In ECB and CTR modes every block can be computed without knowing
+ * any other block, so a large buffer can be cut into contiguous
+ * chunks that are processed on separate threads.  The output is
+ * identical to that of the sequential DES, TripleDES and DESMode
+ * methods, and either a DESKey or a TripleDESKey may be used.
+ *
+ * Payloads smaller than the split threshold are processed on the
+ * calling thread, where the cost of handing work to another thread
+ * would outweigh the benefit.  Otherwise the payload is split into at
+ * most "parallelism" chunks of at least "threshold" bytes, one of
+ * which is always processed by the calling thread.
+ *
+ * The calling thread waits for the other chunks, so a supplied
+ * executor with a bounded number of threads must not be used from its
+ * own tasks: if every pool thread is such a caller, the chunks they
+ * are waiting for are queued behind them and never run.  Give
+ * DESParallel its own executor, or one with enough threads.  If the
+ * executor rejects a chunk, the chunks already submitted are waited
+ * for, and the RejectedExecutionException is rethrown.
+ *
+ * Instances are immutable and thread-safe.
+ */
+public class DESParallel {
+
+    /**
+     * The default minimum number of bytes per chunk.
+     */
+    public static final int DEFAULT_THRESHOLD = 64*1024;
+
+    /**
+     * Shared pool of daemon threads used by the default instance.
+     * Created on first use.
+     */
+    private static class DefaultPool {
+        static final int PARALLELISM = Runtime.getRuntime().availableProcessors();
+        static final ExecutorService EXECUTOR = Executors.newFixedThreadPool(
+            Math.max(1, PARALLELISM-1),
+            new ThreadFactory() {
+                private int count = 0;
+                public synchronized Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "DESParallel-"+(++count));
+                    t.setDaemon(true);
+                    return t;
+                }
+            }
+        );
+    }
+
+    private final ExecutorService executor;
+    private final int parallelism;
+    private final int threshold;
+
+    /**
+     * Create an instance that uses a shared pool with one thread per
+     * available processor (counting the calling thread), and the
+     * default split threshold.
+     */
+    public DESParallel() {
+        this(DefaultPool.EXECUTOR, DefaultPool.PARALLELISM, DEFAULT_THRESHOLD);
+    }
+
+    /**
+     * Create an instance that runs chunks on the supplied executor.
+     *
+     * @param executor the executor to run chunks on.  It is not shut
+     *     down by this class.  If it has a bounded number of threads,
+     *     this instance must not be called from tasks running on it,
+     *     or they may deadlock waiting for each other's chunks.
+     * @param parallelism the maximum number of chunks to split a
+     *     payload into, including the one run by the calling thread.
+     * @param threshold the minimum number of bytes per chunk.
+     */
+    public DESParallel(ExecutorService executor, int parallelism, int threshold) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be positive: "+parallelism);
+        }
+        if (threshold < 8) {
+            throw new IllegalArgumentException("threshold must be at least 8: "+threshold);
+        }
+        this.executor = executor;
+        this.parallelism = parallelism;
+        this.threshold = threshold;
+    }
+
+    //////////////////////////////////////////////////////////////////////
+    //
+    // Public interface
+    //
+    //////////////////////////////////////////////////////////////////////
+
+    /**
+     * Parallel equivalent of
+     * DES.encrypt(byte[], int, int, byte[], int, DESKey) and its
+     * TripleDES counterpart.
+     */
+    public void encrypt(byte[] in, int inOffset, int length, byte[] out, int outOffset, DESBlockCipher key) {
+        run(ECB_ENCRYPT, in, inOffset, length, out, outOffset, key, 0);
+    }
+
+    /**
+     * Parallel equivalent of
+     * DES.decrypt(byte[], int, int, byte[], int, DESKey) and its
+     * TripleDES counterpart.
+     */
+    public void decrypt(byte[] in, int inOffset, int length, byte[] out, int outOffset, DESBlockCipher key) {
+        run(ECB_DECRYPT, in, inOffset, length, out, outOffset, key, 0);
+    }
+
+    /**
+     * Parallel equivalent of DES.encrypt(ByteBuffer, ByteBuffer, DESKey).
+     */
+    public void encrypt(ByteBuffer src, ByteBuffer dst, DESBlockCipher key) {
+        run(ECB_ENCRYPT, src, dst, key, 0);
+    }
+
+    /**
+     * Parallel equivalent of DES.decrypt(ByteBuffer, ByteBuffer, DESKey).
+     */
+    public void decrypt(ByteBuffer src, ByteBuffer dst, DESBlockCipher key) {
+        run(ECB_DECRYPT, src, dst, key, 0);
+    }
+
+    /**
+     * Encrypt or decrypt (the same operation) length bytes in CTR mode,
+     * with the counter starting at the specified value.  Equivalent to
+     * a single update() call on a fresh DESMode.ctr().  The length
+     * need not be a multiple of 8.
+     */
+    public void ctr(byte[] in, int inOffset, int length, byte[] out, int outOffset, DESBlockCipher key, long counter) {
+        run(CTR, in, inOffset, length, out, outOffset, key, counter);
+    }
+
+    /**
+     * ByteBuffer equivalent of ctr(byte[], int, int, byte[], int,
+     * DESKey, long), advancing the position of both buffers.
+     */
+    public void ctr(ByteBuffer src, ByteBuffer dst, DESBlockCipher key, long counter) {
+        run(CTR, src, dst, key, counter);
+    }
+
+    //////////////////////////////////////////////////////////////////////
+    //
+    // Work partitioning
+    //
+    //////////////////////////////////////////////////////////////////////
+
+    private static final int ECB_ENCRYPT = 0;
+    private static final int ECB_DECRYPT = 1;
+    private static final int CTR = 2;
+
+    /**
+     * Process one chunk on the current thread.  For CTR, the caller
+     * has already advanced the counter past the blocks that precede
+     * the chunk.
+     */
+    private static void chunk(int op, byte[] in, int inOffset, int length,
+                              byte[] out, int outOffset, DESBlockCipher key, long counter) {
+        if (op == CTR) {
+            DESMode.ctr(key, counter, true).update(in, inOffset, length, out, outOffset);
+        } else if (key instanceof DESKey) {
+            if (op == ECB_ENCRYPT) {
+                DES.encrypt(in, inOffset, length, out, outOffset, (DESKey) key);
+            } else {
+                DES.decrypt(in, inOffset, length, out, outOffset, (DESKey) key);
+            }
+        } else if (key instanceof TripleDESKey) {
+            if (op == ECB_ENCRYPT) {
+                TripleDES.encrypt(in, inOffset, length, out, outOffset, (TripleDESKey) key);
+            } else {
+                TripleDES.decrypt(in, inOffset, length, out, outOffset, (TripleDESKey) key);
+            }
+        } else {
+            DESMode.ecb(key, op == ECB_ENCRYPT).update(in, inOffset, length, out, outOffset);
+        }
+    }
+
+    private static void chunk(int op, ByteBuffer src, ByteBuffer dst, DESBlockCipher key, long counter) {
+        if (op == CTR) {
+            DESMode.ctr(key, counter, true).update(src, dst);
+        } else if (key instanceof DESKey) {
+            if (op == ECB_ENCRYPT) {
+                DES.encrypt(src, dst, (DESKey) key);
+            } else {
+                DES.decrypt(src, dst, (DESKey) key);
+            }
+        } else if (key instanceof TripleDESKey) {
+            if (op == ECB_ENCRYPT) {
+                TripleDES.encrypt(src, dst, (TripleDESKey) key);
+            } else {
+                TripleDES.decrypt(src, dst, (TripleDESKey) key);
+            }
+        } else {
+            DESMode.ecb(key, op == ECB_ENCRYPT).update(src, dst);
+        }
+    }
+
+    /**
+     * Return the number of bytes in each chunk (a multiple of 8), or
+     * the whole length if the payload should not be split.
+     */
+    private int chunkLength(int length) {
+        int chunks = Math.min(parallelism, length / threshold);
+        if (chunks <= 1) {
+            return length;
+        }
+        int blocks = (length + 7) / 8;
+        return ((blocks + chunks - 1) / chunks) * 8;
+    }
+
+    private void run(final int op, final byte[] in, final int inOffset, final int length,
+                     final byte[] out, final int outOffset, final DESBlockCipher key, final long counter) {
+        if (length < 0 || (op != CTR && (length & 7) != 0)) {
+            throw new IllegalArgumentException(
+                "length must be a non-negative multiple of 8: "+length);
+        }
+        int size = chunkLength(length);
+        Future<?>[] futures = new Future<?>[(length == 0) ? 0 : (length - 1) / size];
+        int start = size;
+        for (int i=0; i<futures.length; i++) {
+            final int offset = start;
+            final int n = Math.min(size, length - offset);
+            try {
+                futures[i] = executor.submit(new Runnable() {
+                    public void run() {
+                        chunk(op, in, inOffset+offset, n, out, outOffset+offset, key, counter + offset/8);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                // wait for the chunks already submitted, so none is
+                // still writing into the output, then rethrow e
+                join(Arrays.copyOf(futures, i), e);
+            }
+            start += size;
+        }
+        Throwable failure = null;
+        try {
+            chunk(op, in, inOffset, Math.min(size, length), out, outOffset, key, counter);
+        } catch (RuntimeException e) {
+            failure = e;
+        } catch (Error e) {
+            failure = e;
+        }
+        join(futures, failure);
+    }
+
+    private void run(final int op, ByteBuffer src, ByteBuffer dst, final DESBlockCipher key, final long counter) {
+        final int length = src.remaining();
+        if (op != CTR && (length & 7) != 0) {
+            throw new IllegalArgumentException(
+                "length must be a non-negative multiple of 8: "+length);
+        }
+        if (dst.remaining() < length) {
+            throw new BufferOverflowException();
+        }
+        int size = chunkLength(length);
+        Future<?>[] futures = new Future<?>[(length == 0) ? 0 : (length - 1) / size];
+        int start = size;
+        for (int i=0; i<futures.length; i++) {
+            final int offset = start;
+            final int n = Math.min(size, length - offset);
+            try {
+                final ByteBuffer s = slice(src, offset, n);
+                final ByteBuffer d = slice(dst, offset, n);
+                futures[i] = executor.submit(new Runnable() {
+                    public void run() {
+                        chunk(op, s, d, key, counter + offset/8);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                // wait for the chunks already submitted, so none is
+                // still writing into the output, then rethrow e
+                join(Arrays.copyOf(futures, i), e);
+            }
+            start += size;
+        }
+        Throwable failure = null;
+        try {
+            chunk(op, slice(src, 0, Math.min(size, length)), slice(dst, 0, Math.min(size, length)), key, counter);
+        } catch (RuntimeException e) {
+            failure = e;
+        } catch (Error e) {
+            failure = e;
+        }
+        join(futures, failure);
+        src.position(src.position() + length);
+        dst.position(dst.position() + length);
+    }
+
+    /**
+     * Return an independent view of length bytes of the buffer,
+     * starting offset bytes past its position, with the same byte
+     * order.
+     */
+    private static ByteBuffer slice(ByteBuffer bb, int offset, int length) {
+        ByteBuffer view = bb.duplicate();
+        view.order(bb.order());
+        view.position(bb.position() + offset);
+        view.limit(bb.position() + offset + length);
+        return view;
+    }
+
+    /**
+     * Wait for all submitted chunks to complete, then rethrow the first
+     * failure: the calling thread's own (if not null), or else that of
+     * the earliest failed chunk.  A failure never cuts the wait short,
+     * so no chunk is still writing into the output when this returns
+     * or throws.
+     */
+    private static void join(Future<?>[] futures, Throwable failure) {
+        boolean interrupted = false;
+        try {
+            for (int i=0; i<futures.length; i++) {
+                while (true) {
+                    try {
+                        futures[i].get();
+                        break;
+                    } catch (InterruptedException e) {
+                        // finish waiting, so no chunk is still writing
+                        // into the output when we return
+                        interrupted = true;
+                    } catch (ExecutionException e) {
+                        if (failure == null) {
+                            failure = e.getCause();
+                        }
+                        break;
+                    }
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        } else if (failure instanceof Error) {
+            throw (Error) failure;
+        } else if (failure != null) {
+            throw new RuntimeException(failure);
+        }
+    }
+
+}
@@ -0,0 +1,47 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.security.Provider;
+
+/**
+ * A JCA security provider for this DES implementation, so it can be
+ * used through javax.crypto.Cipher:
+ *
+ *   Cipher cipher = Cipher.getInstance("DES/CBC/PKCS5Padding", new DESProvider());
+ *
+ * or, after Security.addProvider(new DESProvider()), with the provider
+ * name "DESDemo".
+ *
+ * The "DES" cipher supports the ECB and CBC modes with NoPadding or
+ * PKCS5Padding, and the CTR mode with NoPadding.  See DESCipherSpi.
+ */
+public final class DESProvider extends Provider {
+
+    private static final long serialVersionUID = 1L;
+
+    /** The name under which this provider is registered. */
+    public static final String NAME = "DESDemo";
+
+    // Provider(String, String, String) only exists from Java 9, and this
+    // library still targets Java 6, so the double version is used.
+    @SuppressWarnings("deprecation")
+    public DESProvider() {
+        super(NAME, 1.0, "DESDemo provider (DES cipher; ECB, CBC, CTR; NoPadding, PKCS5Padding)");
+        put("Cipher.DES", DESCipherSpi.class.getName());
+        put("Cipher.DES SupportedModes", "ECB|CBC|CTR");
+        put("Cipher.DES SupportedPaddings", "NOPADDING|PKCS5PADDING");
+        put("Cipher.DES SupportedKeyFormats", "RAW");
+    }
+
+}
@@ -0,0 +1,99 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ReadableByteChannel;
+import java.security.GeneralSecurityException;
+
+/**
+ * A ReadableByteChannel that reads from an underlying channel and
+ * decrypts (or encrypts) the data with a DESMode.
+ *
+ * Data passes through fixed-size internal buffers, so channels of any
+ * length are processed in constant memory.  The padding scheme is
+ * applied when the underlying channel reaches end-of-stream.
+ *
+ * Instances are not thread-safe.
+ */
+public class DESReadableChannel implements ReadableByteChannel {
+
+    private final ReadableByteChannel channel;
+    private final DESPaddedMode cipher;
+    private final ByteBuffer input = ByteBuffer.allocateDirect(DESOutputStream.BUFFER_SIZE);
+    private final ByteBuffer output = ByteBuffer.allocateDirect(DESOutputStream.BUFFER_SIZE + 16);
+    private boolean open = true;
+    private boolean eof = false;
+
+    /**
+     * Create a channel which reads from the underlying channel,
+     * passing the data through the supplied mode with the supplied
+     * padding scheme.
+     */
+    public DESReadableChannel(ReadableByteChannel channel, DESMode mode, DESPadding padding) {
+        this.channel = channel;
+        this.cipher = new DESPaddedMode(mode, padding);
+        output.limit(0);
+    }
+
+    public boolean isOpen() {
+        return open;
+    }
+
+    /**
+     * Read up to dst.remaining() bytes.  Returns 0 only if the
+     * underlying channel is non-blocking and has no data available.
+     */
+    public int read(ByteBuffer dst) throws IOException {
+        if (!open) {
+            throw new ClosedChannelException();
+        }
+        while (!output.hasRemaining()) {
+            if (eof) {
+                return -1;
+            }
+            input.clear();
+            int n = channel.read(input);
+            output.clear();
+            if (n < 0) {
+                eof = true;
+                try {
+                    cipher.doFinal(output);
+                } catch (GeneralSecurityException e) {
+                    throw new IOException(e.getMessage(), e);
+                }
+            } else if (n == 0) {
+                output.flip();
+                return 0;
+            } else {
+                input.flip();
+                cipher.update(input, output);
+            }
+            output.flip();
+        }
+        int n = Math.min(dst.remaining(), output.remaining());
+        int limit = output.limit();
+        output.limit(output.position() + n);
+        dst.put(output);
+        output.limit(limit);
+        return n;
+    }
+
+    public void close() throws IOException {
+        open = false;
+        channel.close();
+    }
+
+}
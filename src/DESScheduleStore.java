@@ -0,0 +1,377 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Off-heap storage for large numbers of DES key schedules.
+ *
+ * A DESKey costs about 170 bytes of heap: the object, its long[16]
+ * array and their headers.  With millions of keys resident, that is a
+ * lot of memory for the garbage collector to trace.  This store packs
+ * the 16 subkeys of each schedule into 128 contiguous bytes outside the
+ * heap, and hands out an int handle for each one.  The block functions
+ * read the subkeys directly from the store, so no DESKey is needed to
+ * use a stored schedule.
+ *
+ * Storage is divided into segments of 2^16 schedules (8MB), which are
+ * added as the store grows, so no single buffer ever has to exceed the
+ * 2GB limit of a ByteBuffer.  A store is either:
+ *
+ *   - in memory, created with the constructor, and backed by direct
+ *     buffers; or
+ *   - persistent, created or reopened with open(), and backed by a
+ *     memory-mapped file.  The operating system pages the schedules in
+ *     and out as needed, and a restarted process can use them again
+ *     without rebuilding them.
+ *
+ * The file format is a 128-byte header followed by the schedules, each
+ * as 16 little-endian longs.  The header holds the magic number
+ * "DESSCHED" (big-endian), the format version (1) and the number of
+ * schedules, as big-endian ints.  save() writes the same format, so an
+ * in-memory store can be persisted and later reopened with open().
+ *
+ * The count in the header of a persistent store is only updated by
+ * flush() and close(), after the schedules themselves have been forced
+ * to disk, so the header never counts a schedule which might not have
+ * been written.  If the process dies, reopening the file gives the
+ * store as of the last flush(); schedules added since then are lost.
+ *
+ * add() is synchronized.  The lookup methods take no locks and may be
+ * called by any number of threads, for any handle that add() has
+ * returned (and which has been safely published to the calling
+ * thread).
+ *
+ * (The Foreign Memory API would allow a single segment of any size,
+ * but it is not available on the Java versions this code supports;
+ * direct and mapped ByteBuffers provide the same off-heap layout.)
+ */
+public final class DESScheduleStore implements Closeable {
+
+    /** The size of one stored key schedule. */
+    public static final int SCHEDULE_BYTES = 128;
+
+    /** The size of the file header. */
+    static final int HEADER_BYTES = 128;
+
+    /** The file magic number: "DESSCHED". */
+    static final long MAGIC = 0x4445535343484544L;
+
+    /** The file format version. */
+    static final int VERSION = 1;
+
+    /** log2 of the number of schedules in a segment. */
+    private static final int DEFAULT_SEGMENT_SHIFT = 16;
+
+    private final int segmentShift;
+    private final int segmentMask;
+
+    /** The backing file, for a persistent store, or null. */
+    private final RandomAccessFile file;
+
+    /** The mapped file header, for a persistent store, or null. */
+    private final MappedByteBuffer header;
+
+    /** The segments, little-endian; replaced (not modified) as the store grows. */
+    private volatile ByteBuffer[] segments = new ByteBuffer[0];
+
+    /** The number of schedules stored. */
+    private volatile int count;
+
+    /** Scratch space for add(). */
+    private final long[] subkeys = new long[16];
+
+    /**
+     * Create an empty in-memory store.
+     */
+    public DESScheduleStore() {
+        this(DEFAULT_SEGMENT_SHIFT);
+    }
+
+    /**
+     * Create an empty in-memory store with segments of 2^segmentShift
+     * schedules.
+     */
+    DESScheduleStore(int segmentShift) {
+        this.segmentShift = segmentShift;
+        this.segmentMask = (1 << segmentShift) - 1;
+        this.file = null;
+        this.header = null;
+    }
+
+    private DESScheduleStore(int segmentShift, RandomAccessFile file) throws IOException {
+        this.segmentShift = segmentShift;
+        this.segmentMask = (1 << segmentShift) - 1;
+        this.file = file;
+        FileChannel channel = file.getChannel();
+        boolean created = (channel.size() == 0);
+        this.header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+        if (created) {
+            header.putLong(0, MAGIC);
+            header.putInt(8, VERSION);
+            header.putInt(12, 0);
+        } else {
+            if (channel.size() < HEADER_BYTES || header.getLong(0) != MAGIC) {
+                throw new IOException("not a DES schedule store");
+            }
+            if (header.getInt(8) != VERSION) {
+                throw new IOException("unsupported DES schedule store version: "+header.getInt(8));
+            }
+            int n = header.getInt(12);
+            if (n < 0 || channel.size() < HEADER_BYTES + (long) n * SCHEDULE_BYTES) {
+                throw new IOException("truncated DES schedule store");
+            }
+            while (((long) segments.length << segmentShift) < n) {
+                addSegment();
+            }
+            count = n;
+        }
+    }
+
+    /**
+     * Open a persistent store backed by the specified file, which is
+     * created if it does not exist.  Schedules added to the store are
+     * written to the file, but are only recorded as part of it (and
+     * forced to disk) by flush() or close().
+     *
+     * @throws IOException if the file cannot be opened, or is not a
+     *     schedule store.
+     */
+    public static DESScheduleStore open(File file) throws IOException {
+        return open(file, DEFAULT_SEGMENT_SHIFT);
+    }
+
+    static DESScheduleStore open(File file, int segmentShift) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            return new DESScheduleStore(segmentShift, raf);
+        } catch (IOException e) {
+            raf.close();
+            throw e;
+        }
+    }
+
+    //////////////////////////////////////////////////////////////////////
+    //
+    // Storage
+    //
+    //////////////////////////////////////////////////////////////////////
+
+    private void addSegment() throws IOException {
+        long bytes = (long) SCHEDULE_BYTES << segmentShift;
+        ByteBuffer segment;
+        if (file == null) {
+            segment = ByteBuffer.allocateDirect((int) bytes);
+        } else {
+            long position = HEADER_BYTES + segments.length * bytes;
+            segment = file.getChannel().map(FileChannel.MapMode.READ_WRITE, position, bytes);
+        }
+        segment.order(ByteOrder.LITTLE_ENDIAN);
+        ByteBuffer[] grown = new ByteBuffer[segments.length + 1];
+        System.arraycopy(segments, 0, grown, 0, segments.length);
+        grown[segments.length] = segment;
+        segments = grown;
+    }
+
+    /**
+     * Build the schedule for a 64-bit key, store it, and return its
+     * handle.  Handles are assigned consecutively from 0.
+     *
+     * @throws IOException if the store is persistent and the file
+     *     cannot be extended.
+     */
+    public synchronized int add(long key) throws IOException {
+        int handle = count;
+        if (handle == Integer.MAX_VALUE) {
+            throw new IllegalStateException("DES schedule store is full");
+        }
+        if ((handle >>> segmentShift) == segments.length) {
+            addSegment();
+        }
+        DES.createSubkeys(key, subkeys, 0);
+        ByteBuffer segment = segments[handle >>> segmentShift];
+        int index = (handle & segmentMask) * SCHEDULE_BYTES;
+        for (int i=0; i<16; i++) {
+            segment.putLong(index + 8*i, subkeys[i]);
+        }
+        count = handle + 1;
+        if (DESMetrics.ENABLED) {
+            DESMetrics.scheduleBuilt(1);
+        }
+        return handle;
+    }
+
+    /**
+     * Return the number of schedules stored.
+     */
+    public int size() {
+        return count;
+    }
+
+    private ByteBuffer segment(int handle) {
+        if (handle < 0 || handle >= count) {
+            throw new IllegalArgumentException("unknown DES schedule handle: "+handle);
+        }
+        return segments[handle >>> segmentShift];
+    }
+
+    private int index(int handle) {
+        return (handle & segmentMask) * SCHEDULE_BYTES;
+    }
+
+    /**
+     * Force any changes to a persistent store out to the file, and then
+     * record the new number of schedules in the header.  This has no
+     * effect on an in-memory store.
+     */
+    public synchronized void flush() {
+        if (header != null) {
+            // the schedules must be on disk before the header counts them
+            for (ByteBuffer segment : segments) {
+                ((MappedByteBuffer) segment).force();
+            }
+            header.putInt(12, count);
+            header.force();
+        }
+    }
+
+    /**
+     * Write the store to a file in the format read by open().
+     */
+    public synchronized void save(File target) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(target, "rw");
+        try {
+            FileChannel channel = raf.getChannel();
+            channel.truncate(0);
+            ByteBuffer head = ByteBuffer.allocate(HEADER_BYTES);
+            head.putLong(0, MAGIC);
+            head.putInt(8, VERSION);
+            head.putInt(12, count);
+            while (head.hasRemaining()) {
+                channel.write(head);
+            }
+            int remaining = count;
+            for (int s=0; remaining>0; s++) {
+                int n = Math.min(remaining, segmentMask + 1);
+                ByteBuffer data = segments[s].duplicate();
+                data.position(0).limit(n * SCHEDULE_BYTES);
+                while (data.hasRemaining()) {
+                    channel.write(data);
+                }
+                remaining -= n;
+            }
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Flush and close the backing file of a persistent store.  The
+     * store must not be used afterwards.  This has no effect on an
+     * in-memory store.
+     */
+    public synchronized void close() throws IOException {
+        if (file != null) {
+            flush();
+            file.close();
+        }
+    }
+
+    //////////////////////////////////////////////////////////////////////
+    //
+    // Encryption
+    //
+    //////////////////////////////////////////////////////////////////////
+
+    /**
+     * Encrypt a 64-bit block with a stored schedule.
+     */
+    public long encryptBlock(int handle, long block) {
+        if (DESMetrics.ENABLED) {
+            DESMetrics.blocks(true, 1);
+        }
+        return DES.encryptBlock(block, segment(handle), index(handle));
+    }
+
+    /**
+     * Decrypt a 64-bit block with a stored schedule.
+     */
+    public long decryptBlock(int handle, long block) {
+        if (DESMetrics.ENABLED) {
+            DESMetrics.blocks(false, 1);
+        }
+        return DES.decryptBlock(block, segment(handle), index(handle));
+    }
+
+    /**
+     * Encrypt length bytes (a multiple of 8) in ECB mode with a stored
+     * schedule.  The input and output may be the same region of the
+     * same array.
+     */
+    public void encrypt(int handle, byte[] in, int inOffset, int length, byte[] out, int outOffset) {
+        DES.checkBlockLength(length);
+        long start = DESMetrics.start();
+        ByteBuffer segment = segment(handle);
+        int index = index(handle);
+        for (int i=0; i<length; i+=8) {
+            DES.writeLong(out, outOffset+i, DES.encryptBlock(DES.readLong(in, inOffset+i), segment, index));
+        }
+        if (DESMetrics.ENABLED) {
+            DESMetrics.record(true, length/8, length, start);
+        }
+    }
+
+    /**
+     * Decrypt length bytes (a multiple of 8) in ECB mode with a stored
+     * schedule.
+     */
+    public void decrypt(int handle, byte[] in, int inOffset, int length, byte[] out, int outOffset) {
+        DES.checkBlockLength(length);
+        long start = DESMetrics.start();
+        ByteBuffer segment = segment(handle);
+        int index = index(handle);
+        for (int i=0; i<length; i+=8) {
+            DES.writeLong(out, outOffset+i, DES.decryptBlock(DES.readLong(in, inOffset+i), segment, index));
+        }
+        if (DESMetrics.ENABLED) {
+            DESMetrics.record(false, length/8, length, start);
+        }
+    }
+
+    /**
+     * Return a DESBlockCipher view of a stored schedule, for use with
+     * DESMode, DESMac or DESCipher.  The view holds no copy of the
+     * subkeys.
+     */
+    public DESBlockCipher getCipher(final int handle) {
+        final ByteBuffer segment = segment(handle);
+        final int index = index(handle);
+        return new DESBlockCipher() {
+            public long encryptBlock(long block) {
+                return DES.encryptBlock(block, segment, index);
+            }
+            public long decryptBlock(long block) {
+                return DES.decryptBlock(block, segment, index);
+            }
+        };
+    }
+
+}
@@ -0,0 +1,135 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Writer;
+
+/**
+ * Generates DESTables.java, which holds the tables that DES would
+ * otherwise derive from the standard S, P, PC1 and PC2 tables every
+ * time the class is initialized:
+ *
+ *   SP       - the combined S-box and P permutation tables.
+ *   KEY_BITS - the key schedules of the 56 single-bit keys, from which
+ *              the per-byte key schedule table is assembled with ORs.
+ *
+ * Loading these as constants avoids running the bit-by-bit S(), P()
+ * and key schedule code at startup, which matters for short-lived
+ * processes and native images.  The derivation methods remain in DES,
+ * and DES.testTables() checks that the generated class still matches
+ * them.
+ *
+ * The generated class is kept with the sources; run this again (or
+ * "gradle generateTables") if the standard tables or the table layouts
+ * ever change.  "gradle build" fails if the checked-in copy no longer
+ * matches the output of this generator.
+ *
+ * Usage:
+ *
+ *   java DESTableGenerator [src/DESTables.java]
+ *
+ * With no argument, the source is written to standard output.
+ */
+public class DESTableGenerator {
+
+    static void generate(PrintWriter out) {
+        int[][] sp = DES.deriveSP();
+        long[] keyBits = DES.deriveKeyBits();
+
+        out.println("/*");
+        out.println(" * Licensed under the Apache License, Version 2.0 (the \"License\");");
+        out.println(" * you may not use this file except in compliance with the License.");
+        out.println(" * You may obtain a copy of the License at");
+        out.println(" *");
+        out.println(" *     http://www.apache.org/licenses/LICENSE-2.0");
+        out.println(" *");
+        out.println(" * Unless required by applicable law or agreed to in writing, software");
+        out.println(" * distributed under the License is distributed on an \"AS IS\" BASIS,");
+        out.println(" * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.");
+        out.println(" * See the License for the specific language governing permissions and");
+        out.println(" * limitations under the License.");
+        out.println(" */");
+        out.println();
+        out.println("/**");
+        out.println(" * Tables derived from the DES standard tables.");
+        out.println(" *");
+        out.println(" * GENERATED by DESTableGenerator -- do not edit.  See DES.deriveSP()");
+        out.println(" * and DES.deriveKeyBits() for the meaning of each table.");
+        out.println(" */");
+        out.println("final class DESTables {");
+        out.println();
+        out.println("    private DESTables() {");
+        out.println("    }");
+        out.println();
+        out.println("    /** The combined S-box and P permutation tables. */");
+        out.println("    static final int[][] SP = {");
+        for (int i=0; i<8; i++) {
+            out.println("        { // S"+(i+1));
+            for (int x=0; x<64; x+=8) {
+                StringBuilder line = new StringBuilder("            ");
+                for (int k=x; k<x+8; k++) {
+                    line.append(String.format("0x%08x,", sp[i][k]));
+                    if (k < x+7) {
+                        line.append(' ');
+                    }
+                }
+                out.println(line);
+            }
+            out.println("        },");
+        }
+        out.println("    };");
+        out.println();
+        out.println("    /** The subkeys of the 56 single-bit keys, 16 per key bit. */");
+        out.println("    static final long[] KEY_BITS = {");
+        for (int b=0; b<8; b++) {
+            for (int j=0; j<7; j++) {
+                out.println("        // key byte "+b+", bit "+(j+1));
+                int base = (b*7 + j) * 16;
+                for (int i=0; i<16; i+=4) {
+                    StringBuilder line = new StringBuilder("        ");
+                    for (int k=i; k<i+4; k++) {
+                        line.append(String.format("0x%012xL,", keyBits[base+k]));
+                        if (k < i+3) {
+                            line.append(' ');
+                        }
+                    }
+                    out.println(line);
+                }
+            }
+        }
+        out.println("    };");
+        out.println();
+        out.println("}");
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length > 1) {
+            System.err.println("usage: java DESTableGenerator [output-file]");
+            System.exit(2);
+        }
+        Writer writer = (args.length == 1)
+            ? new OutputStreamWriter(new FileOutputStream(args[0]), "UTF-8")
+            : new OutputStreamWriter(System.out, "UTF-8");
+        PrintWriter out = new PrintWriter(writer);
+        generate(out);
+        out.close();
+        if (out.checkError()) {
+            throw new IOException("error writing generated tables");
+        }
+    }
+
+}
@@ -0,0 +1,394 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Tables derived from the DES standard tables.
+ *
+ * GENERATED by DESTableGenerator -- do not edit.  See DES.deriveSP()
+ * and DES.deriveKeyBits() for the meaning of each table.
+ */
+final class DESTables {
+
+    private DESTables() {
+    }
+
+    /** The combined S-box and P permutation tables. */
+    static final int[][] SP = {
+        { // S1
+            0x00808200, 0x00000000, 0x00008000, 0x00808202, 0x00808002, 0x00008202, 0x00000002, 0x00008000,
+            0x00000200, 0x00808200, 0x00808202, 0x00000200, 0x00800202, 0x00808002, 0x00800000, 0x00000002,
+            0x00000202, 0x00800200, 0x00800200, 0x00008200, 0x00008200, 0x00808000, 0x00808000, 0x00800202,
+            0x00008002, 0x00800002, 0x00800002, 0x00008002, 0x00000000, 0x00000202, 0x00008202, 0x00800000,
+            0x00008000, 0x00808202, 0x00000002, 0x00808000, 0x00808200, 0x00800000, 0x00800000, 0x00000200,
+            0x00808002, 0x00008000, 0x00008200, 0x00800002, 0x00000200, 0x00000002, 0x00800202, 0x00008202,
+            0x00808202, 0x00008002, 0x00808000, 0x00800202, 0x00800002, 0x00000202, 0x00008202, 0x00808200,
+            0x00000202, 0x00800200, 0x00800200, 0x00000000, 0x00008002, 0x00008200, 0x00000000, 0x00808002,
+        },
+        { // S2
+            0x40084010, 0x40004000, 0x00004000, 0x00084010, 0x00080000, 0x00000010, 0x40080010, 0x40004010,
+            0x40000010, 0x40084010, 0x40084000, 0x40000000, 0x40004000, 0x00080000, 0x00000010, 0x40080010,
+            0x00084000, 0x00080010, 0x40004010, 0x00000000, 0x40000000, 0x00004000, 0x00084010, 0x40080000,
+            0x00080010, 0x40000010, 0x00000000, 0x00084000, 0x00004010, 0x40084000, 0x40080000, 0x00004010,
+            0x00000000, 0x00084010, 0x40080010, 0x00080000, 0x40004010, 0x40080000, 0x40084000, 0x00004000,
+            0x40080000, 0x40004000, 0x00000010, 0x40084010, 0x00084010, 0x00000010, 0x00004000, 0x40000000,
+            0x00004010, 0x40084000, 0x00080000, 0x40000010, 0x00080010, 0x40004010, 0x40000010, 0x00080010,
+            0x00084000, 0x00000000, 0x40004000, 0x00004010, 0x40000000, 0x40080010, 0x40084010, 0x00084000,
+        },
+        { // S3
+            0x00000104, 0x04010100, 0x00000000, 0x04010004, 0x04000100, 0x00000000, 0x00010104, 0x04000100,
+            0x00010004, 0x04000004, 0x04000004, 0x00010000, 0x04010104, 0x00010004, 0x04010000, 0x00000104,
+            0x04000000, 0x00000004, 0x04010100, 0x00000100, 0x00010100, 0x04010000, 0x04010004, 0x00010104,
+            0x04000104, 0x00010100, 0x00010000, 0x04000104, 0x00000004, 0x04010104, 0x00000100, 0x04000000,
+            0x04010100, 0x04000000, 0x00010004, 0x00000104, 0x00010000, 0x04010100, 0x04000100, 0x00000000,
+            0x00000100, 0x00010004, 0x04010104, 0x04000100, 0x04000004, 0x00000100, 0x00000000, 0x04010004,
+            0x04000104, 0x00010000, 0x04000000, 0x04010104, 0x00000004, 0x00010104, 0x00010100, 0x04000004,
+            0x04010000, 0x04000104, 0x00000104, 0x04010000, 0x00010104, 0x00000004, 0x04010004, 0x00010100,
+        },
+        { // S4
+            0x80401000, 0x80001040, 0x80001040, 0x00000040, 0x00401040, 0x80400040, 0x80400000, 0x80001000,
+            0x00000000, 0x00401000, 0x00401000, 0x80401040, 0x80000040, 0x00000000, 0x00400040, 0x80400000,
+            0x80000000, 0x00001000, 0x00400000, 0x80401000, 0x00000040, 0x00400000, 0x80001000, 0x00001040,
+            0x80400040, 0x80000000, 0x00001040, 0x00400040, 0x00001000, 0x00401040, 0x80401040, 0x80000040,
+            0x00400040, 0x80400000, 0x00401000, 0x80401040, 0x80000040, 0x00000000, 0x00000000, 0x00401000,
+            0x00001040, 0x00400040, 0x80400040, 0x80000000, 0x80401000, 0x80001040, 0x80001040, 0x00000040,
+            0x80401040, 0x80000040, 0x80000000, 0x00001000, 0x80400000, 0x80001000, 0x00401040, 0x80400040,
+            0x80001000, 0x00001040, 0x00400000, 0x80401000, 0x00000040, 0x00400000, 0x00001000, 0x00401040,
+        },
+        { // S5
+            0x00000080, 0x01040080, 0x01040000, 0x21000080, 0x00040000, 0x00000080, 0x20000000, 0x01040000,
+            0x20040080, 0x00040000, 0x01000080, 0x20040080, 0x21000080, 0x21040000, 0x00040080, 0x20000000,
+            0x01000000, 0x20040000, 0x20040000, 0x00000000, 0x20000080, 0x21040080, 0x21040080, 0x01000080,
+            0x21040000, 0x20000080, 0x00000000, 0x21000000, 0x01040080, 0x01000000, 0x21000000, 0x00040080,
+            0x00040000, 0x21000080, 0x00000080, 0x01000000, 0x20000000, 0x01040000, 0x21000080, 0x20040080,
+            0x01000080, 0x20000000, 0x21040000, 0x01040080, 0x20040080, 0x00000080, 0x01000000, 0x21040000,
+            0x21040080, 0x00040080, 0x21000000, 0x21040080, 0x01040000, 0x00000000, 0x20040000, 0x21000000,
+            0x00040080, 0x01000080, 0x20000080, 0x00040000, 0x00000000, 0x20040000, 0x01040080, 0x20000080,
+        },
+        { // S6
+            0x10000008, 0x10200000, 0x00002000, 0x10202008, 0x10200000, 0x00000008, 0x10202008, 0x00200000,
+            0x10002000, 0x00202008, 0x00200000, 0x10000008, 0x00200008, 0x10002000, 0x10000000, 0x00002008,
+            0x00000000, 0x00200008, 0x10002008, 0x00002000, 0x00202000, 0x10002008, 0x00000008, 0x10200008,
+            0x10200008, 0x00000000, 0x00202008, 0x10202000, 0x00002008, 0x00202000, 0x10202000, 0x10000000,
+            0x10002000, 0x00000008, 0x10200008, 0x00202000, 0x10202008, 0x00200000, 0x00002008, 0x10000008,
+            0x00200000, 0x10002000, 0x10000000, 0x00002008, 0x10000008, 0x10202008, 0x00202000, 0x10200000,
+            0x00202008, 0x10202000, 0x00000000, 0x10200008, 0x00000008, 0x00002000, 0x10200000, 0x00202008,
+            0x00002000, 0x00200008, 0x10002008, 0x00000000, 0x10202000, 0x10000000, 0x00200008, 0x10002008,
+        },
+        { // S7
+            0x00100000, 0x02100001, 0x02000401, 0x00000000, 0x00000400, 0x02000401, 0x00100401, 0x02100400,
+            0x02100401, 0x00100000, 0x00000000, 0x02000001, 0x00000001, 0x02000000, 0x02100001, 0x00000401,
+            0x02000400, 0x00100401, 0x00100001, 0x02000400, 0x02000001, 0x02100000, 0x02100400, 0x00100001,
+            0x02100000, 0x00000400, 0x00000401, 0x02100401, 0x00100400, 0x00000001, 0x02000000, 0x00100400,
+            0x02000000, 0x00100400, 0x00100000, 0x02000401, 0x02000401, 0x02100001, 0x02100001, 0x00000001,
+            0x00100001, 0x02000000, 0x02000400, 0x00100000, 0x02100400, 0x00000401, 0x00100401, 0x02100400,
+            0x00000401, 0x02000001, 0x02100401, 0x02100000, 0x00100400, 0x00000000, 0x00000001, 0x02100401,
+            0x00000000, 0x00100401, 0x02100000, 0x00000400, 0x02000001, 0x02000400, 0x00000400, 0x00100001,
+        },
+        { // S8
+            0x08000820, 0x00000800, 0x00020000, 0x08020820, 0x08000000, 0x08000820, 0x00000020, 0x08000000,
+            0x00020020, 0x08020000, 0x08020820, 0x00020800, 0x08020800, 0x00020820, 0x00000800, 0x00000020,
+            0x08020000, 0x08000020, 0x08000800, 0x00000820, 0x00020800, 0x00020020, 0x08020020, 0x08020800,
+            0x00000820, 0x00000000, 0x00000000, 0x08020020, 0x08000020, 0x08000800, 0x00020820, 0x00020000,
+            0x00020820, 0x00020000, 0x08020800, 0x00000800, 0x00000020, 0x08020020, 0x00000800, 0x00020820,
+            0x08000800, 0x00000020, 0x08000020, 0x08020000, 0x08020020, 0x08000000, 0x00020000, 0x08000820,
+            0x00000000, 0x08020820, 0x00020020, 0x08000020, 0x08020000, 0x08000800, 0x08000820, 0x00000000,
+            0x08020820, 0x00020800, 0x00020800, 0x00000820, 0x00000820, 0x00020020, 0x08000000, 0x08020800,
+        },
+    };
+
+    /** The subkeys of the 56 single-bit keys, 16 per key bit. */
+    static final long[] KEY_BITS = {
+        // key byte 0, bit 1
+        0x000000000000L, 0x000000000080L, 0x000000000001L, 0x000000020000L,
+        0x000000000100L, 0x000000000000L, 0x000000400000L, 0x000000000008L,
+        0x000000000400L, 0x000000080000L, 0x000000004000L, 0x000000000000L,
+        0x000000800000L, 0x000000000200L, 0x000000100000L, 0x000000000004L,
+        // key byte 0, bit 2
+        0x000000000000L, 0x000000000010L, 0x000000010000L, 0x000000000000L,
+        0x000000000004L, 0x000000000080L, 0x000000000001L, 0x000000020000L,
+        0x000000000002L, 0x000000040000L, 0x000000000040L, 0x000000008000L,
+        0x000000000400L, 0x000000080000L, 0x000000004000L, 0x000000000800L,
+        // key byte 0, bit 3
+        0x000000008000L, 0x000000000008L, 0x000000001000L, 0x000000000020L,
+        0x000000000800L, 0x000000000010L, 0x000000010000L, 0x000000000000L,
+        0x000000100000L, 0x000000000000L, 0x000000002000L, 0x000000200000L,
+        0x000000000002L, 0x000000040000L, 0x000000000040L, 0x000000400000L,
+        // key byte 0, bit 4
+        0x000000040000L, 0x000000000000L, 0x000000400000L, 0x000000000008L,
+        0x000000001000L, 0x000000000020L, 0x000000000800L, 0x000000000010L,
+        0x000000800000L, 0x000000000200L, 0x000000100000L, 0x000000000000L,
+        0x000000002000L, 0x000000200000L, 0x000000000002L, 0x000000000100L,
+        // key byte 0, bit 5
+        0x000800000000L, 0x000000000000L, 0x000004000000L, 0x000000000000L,
+        0x000020000000L, 0x800000000000L, 0x000200000000L, 0x001000000000L,
+        0x000000000000L, 0x000010000000L, 0x040000000000L, 0x020000000000L,
+        0x080000000000L, 0x000008000000L, 0x000000000000L, 0x100000000000L,
+        // key byte 0, bit 6
+        0x008000000000L, 0x800000000000L, 0x000200000000L, 0x001000000000L,
+        0x000040000000L, 0x004000000000L, 0x000100000000L, 0x000001000000L,
+        0x080000000000L, 0x000008000000L, 0x000000000000L, 0x000800000000L,
+        0x002000000000L, 0x000400000000L, 0x400000000000L, 0x000020000000L,
+        // key byte 0, bit 7
+        0x000010000000L, 0x004000000000L, 0x000100000000L, 0x000001000000L,
+        0x010000000000L, 0x000080000000L, 0x100000000000L, 0x000000000000L,
+        0x002000000000L, 0x000400000000L, 0x400000000000L, 0x008000000000L,
+        0x000002000000L, 0x200000000000L, 0x000000000000L, 0x000040000000L,
+        // key byte 1, bit 1
+        0x000000000080L, 0x000000002000L, 0x000000200000L, 0x000000000002L,
+        0x000000040000L, 0x000000000040L, 0x000000008000L, 0x000000000400L,
+        0x000000001000L, 0x000000000020L, 0x000000000800L, 0x000000000010L,
+        0x000000010000L, 0x000000000000L, 0x000000000004L, 0x000000000000L,
+        // key byte 1, bit 2
+        0x000000000010L, 0x000000800000L, 0x000000000200L, 0x000000100000L,
+        0x000000000000L, 0x000000002000L, 0x000000200000L, 0x000000000002L,
+        0x000000000100L, 0x000000000000L, 0x000000400000L, 0x000000000008L,
+        0x000000001000L, 0x000000000020L, 0x000000000800L, 0x000000000000L,
+        // key byte 1, bit 3
+        0x000000000008L, 0x000000000400L, 0x000000080000L, 0x000000004000L,
+        0x000000000000L, 0x000000800000L, 0x000000000200L, 0x000000100000L,
+        0x000000000004L, 0x000000000080L, 0x000000000001L, 0x000000020000L,
+        0x000000000100L, 0x000000000000L, 0x000000400000L, 0x000000008000L,
+        // key byte 1, bit 4
+        0x000000000000L, 0x000000000040L, 0x000000008000L, 0x000000000400L,
+        0x000000080000L, 0x000000004000L, 0x000000000000L, 0x000000800000L,
+        0x000000010000L, 0x000000000000L, 0x000000000004L, 0x000000000080L,
+        0x000000000001L, 0x000000020000L, 0x000000000100L, 0x000000040000L,
+        // key byte 1, bit 5
+        0x000000000000L, 0x002000000000L, 0x000400000000L, 0x400000000000L,
+        0x008000000000L, 0x000002000000L, 0x200000000000L, 0x000000000000L,
+        0x000040000000L, 0x004000000000L, 0x000100000000L, 0x000001000000L,
+        0x010000000000L, 0x000080000000L, 0x100000000000L, 0x000800000000L,
+        // key byte 1, bit 6
+        0x800000000000L, 0x000002000000L, 0x200000000000L, 0x000000000000L,
+        0x000010000000L, 0x040000000000L, 0x020000000000L, 0x080000000000L,
+        0x010000000000L, 0x000080000000L, 0x100000000000L, 0x000000000000L,
+        0x000004000000L, 0x000000000000L, 0x000020000000L, 0x008000000000L,
+        // key byte 1, bit 7
+        0x004000000000L, 0x040000000000L, 0x020000000000L, 0x080000000000L,
+        0x000008000000L, 0x000000000000L, 0x000800000000L, 0x002000000000L,
+        0x000004000000L, 0x000000000000L, 0x000020000000L, 0x800000000000L,
+        0x000200000000L, 0x001000000000L, 0x000040000000L, 0x000010000000L,
+        // key byte 2, bit 1
+        0x000000002000L, 0x000000000001L, 0x000000020000L, 0x000000000100L,
+        0x000000000000L, 0x000000400000L, 0x000000000008L, 0x000000001000L,
+        0x000000080000L, 0x000000004000L, 0x000000000000L, 0x000000800000L,
+        0x000000000200L, 0x000000100000L, 0x000000000000L, 0x000000000080L,
+        // key byte 2, bit 2
+        0x000000800000L, 0x000000010000L, 0x000000000000L, 0x000000000004L,
+        0x000000000080L, 0x000000000001L, 0x000000020000L, 0x000000000100L,
+        0x000000040000L, 0x000000000040L, 0x000000008000L, 0x000000000400L,
+        0x000000080000L, 0x000000004000L, 0x000000000000L, 0x000000000010L,
+        // key byte 2, bit 3
+        0x000000000400L, 0x000000001000L, 0x000000000020L, 0x000000000800L,
+        0x000000000010L, 0x000000010000L, 0x000000000000L, 0x000000000004L,
+        0x000000000000L, 0x000000002000L, 0x000000200000L, 0x000000000002L,
+        0x000000040000L, 0x000000000040L, 0x000000008000L, 0x000000000008L,
+        // key byte 2, bit 4
+        0x000000000040L, 0x000000400000L, 0x000000000008L, 0x000000001000L,
+        0x000000000020L, 0x000000000800L, 0x000000000010L, 0x000000010000L,
+        0x000000000200L, 0x000000100000L, 0x000000000000L, 0x000000002000L,
+        0x000000200000L, 0x000000000002L, 0x000000040000L, 0x000000000000L,
+        // key byte 2, bit 5
+        0x002000000000L, 0x000004000000L, 0x000000000000L, 0x000020000000L,
+        0x800000000000L, 0x000200000000L, 0x001000000000L, 0x000040000000L,
+        0x000010000000L, 0x040000000000L, 0x020000000000L, 0x080000000000L,
+        0x000008000000L, 0x000000000000L, 0x000800000000L, 0x000000000000L,
+        // key byte 2, bit 6
+        0x000002000000L, 0x000200000000L, 0x001000000000L, 0x000040000000L,
+        0x004000000000L, 0x000100000000L, 0x000001000000L, 0x010000000000L,
+        0x000008000000L, 0x000000000000L, 0x000800000000L, 0x002000000000L,
+        0x000400000000L, 0x400000000000L, 0x008000000000L, 0x800000000000L,
+        // key byte 2, bit 7
+        0x040000000000L, 0x000100000000L, 0x000001000000L, 0x010000000000L,
+        0x000080000000L, 0x100000000000L, 0x000000000000L, 0x000004000000L,
+        0x000400000000L, 0x400000000000L, 0x008000000000L, 0x000002000000L,
+        0x200000000000L, 0x000000000000L, 0x000010000000L, 0x004000000000L,
+        // key byte 3, bit 1
+        0x000000000001L, 0x000000200000L, 0x000000000002L, 0x000000040000L,
+        0x000000000040L, 0x000000008000L, 0x000000000400L, 0x000000080000L,
+        0x000000000020L, 0x000000000800L, 0x000000000010L, 0x000000010000L,
+        0x000000000000L, 0x000000000004L, 0x000000000080L, 0x000000002000L,
+        // key byte 3, bit 2
+        0x000000010000L, 0x000000000200L, 0x000000100000L, 0x000000000000L,
+        0x000000002000L, 0x000000200000L, 0x000000000002L, 0x000000040000L,
+        0x000000000000L, 0x000000400000L, 0x000000000008L, 0x000000001000L,
+        0x000000000020L, 0x000000000800L, 0x000000000010L, 0x000000800000L,
+        // key byte 3, bit 3
+        0x000000001000L, 0x000000080000L, 0x000000004000L, 0x000000000000L,
+        0x000000800000L, 0x000000000200L, 0x000000100000L, 0x000000000000L,
+        0x000000000080L, 0x000000000001L, 0x000000020000L, 0x000000000100L,
+        0x000000000000L, 0x000000400000L, 0x000000000008L, 0x000000000400L,
+        // key byte 3, bit 4
+        0x000000400000L, 0x000000008000L, 0x000000000400L, 0x000000080000L,
+        0x000000004000L, 0x000000000000L, 0x000000800000L, 0x000000000200L,
+        0x000000000000L, 0x000000000004L, 0x000000000080L, 0x000000000001L,
+        0x000000020000L, 0x000000000100L, 0x000000000000L, 0x000000000040L,
+        // key byte 3, bit 5
+        0x000004000000L, 0x000400000000L, 0x400000000000L, 0x008000000000L,
+        0x000002000000L, 0x200000000000L, 0x000000000000L, 0x000010000000L,
+        0x004000000000L, 0x000100000000L, 0x000001000000L, 0x010000000000L,
+        0x000080000000L, 0x100000000000L, 0x000000000000L, 0x002000000000L,
+        // key byte 3, bit 6
+        0x000200000000L, 0x200000000000L, 0x000000000000L, 0x000010000000L,
+        0x040000000000L, 0x020000000000L, 0x080000000000L, 0x000008000000L,
+        0x000080000000L, 0x100000000000L, 0x000000000000L, 0x000004000000L,
+        0x000000000000L, 0x000020000000L, 0x800000000000L, 0x000002000000L,
+        // key byte 3, bit 7
+        0x000100000000L, 0x020000000000L, 0x080000000000L, 0x000008000000L,
+        0x000000000000L, 0x000800000000L, 0x002000000000L, 0x000400000000L,
+        0x000000000000L, 0x000020000000L, 0x800000000000L, 0x000200000000L,
+        0x001000000000L, 0x000040000000L, 0x004000000000L, 0x040000000000L,
+        // key byte 4, bit 1
+        0x000000200000L, 0x000000020000L, 0x000000000100L, 0x000000000000L,
+        0x000000400000L, 0x000000000008L, 0x000000001000L, 0x000000000020L,
+        0x000000004000L, 0x000000000000L, 0x000000800000L, 0x000000000200L,
+        0x000000100000L, 0x000000000000L, 0x000000002000L, 0x000000000001L,
+        // key byte 4, bit 2
+        0x000000000200L, 0x000000000000L, 0x000000000004L, 0x000000000080L,
+        0x000000000001L, 0x000000020000L, 0x000000000100L, 0x000000000000L,
+        0x000000000040L, 0x000000008000L, 0x000000000400L, 0x000000080000L,
+        0x000000004000L, 0x000000000000L, 0x000000800000L, 0x000000010000L,
+        // key byte 4, bit 3
+        0x000000080000L, 0x000000000020L, 0x000000000800L, 0x000000000010L,
+        0x000000010000L, 0x000000000000L, 0x000000000004L, 0x000000000080L,
+        0x000000002000L, 0x000000200000L, 0x000000000002L, 0x000000040000L,
+        0x000000000040L, 0x000000008000L, 0x000000000400L, 0x000000001000L,
+        // key byte 4, bit 4
+        0x000008000000L, 0x000080000000L, 0x100000000000L, 0x000000000000L,
+        0x000004000000L, 0x000000000000L, 0x000020000000L, 0x800000000000L,
+        0x000002000000L, 0x200000000000L, 0x000000000000L, 0x000010000000L,
+        0x040000000000L, 0x020000000000L, 0x080000000000L, 0x010000000000L,
+        // key byte 4, bit 5
+        0x000400000000L, 0x000000000000L, 0x000020000000L, 0x800000000000L,
+        0x000200000000L, 0x001000000000L, 0x000040000000L, 0x004000000000L,
+        0x040000000000L, 0x020000000000L, 0x080000000000L, 0x000008000000L,
+        0x000000000000L, 0x000800000000L, 0x002000000000L, 0x000004000000L,
+        // key byte 4, bit 6
+        0x200000000000L, 0x001000000000L, 0x000040000000L, 0x004000000000L,
+        0x000100000000L, 0x000001000000L, 0x010000000000L, 0x000080000000L,
+        0x000000000000L, 0x000800000000L, 0x002000000000L, 0x000400000000L,
+        0x400000000000L, 0x008000000000L, 0x000002000000L, 0x000200000000L,
+        // key byte 4, bit 7
+        0x020000000000L, 0x000001000000L, 0x010000000000L, 0x000080000000L,
+        0x100000000000L, 0x000000000000L, 0x000004000000L, 0x000000000000L,
+        0x400000000000L, 0x008000000000L, 0x000002000000L, 0x200000000000L,
+        0x000000000000L, 0x000010000000L, 0x040000000000L, 0x000100000000L,
+        // key byte 5, bit 1
+        0x000000020000L, 0x000000000002L, 0x000000040000L, 0x000000000040L,
+        0x000000008000L, 0x000000000400L, 0x000000080000L, 0x000000004000L,
+        0x000000000800L, 0x000000000010L, 0x000000010000L, 0x000000000000L,
+        0x000000000004L, 0x000000000080L, 0x000000000001L, 0x000000200000L,
+        // key byte 5, bit 2
+        0x000000000000L, 0x000000100000L, 0x000000000000L, 0x000000002000L,
+        0x000000200000L, 0x000000000002L, 0x000000040000L, 0x000000000040L,
+        0x000000400000L, 0x000000000008L, 0x000000001000L, 0x000000000020L,
+        0x000000000800L, 0x000000000010L, 0x000000010000L, 0x000000000200L,
+        // key byte 5, bit 3
+        0x000000000020L, 0x000000004000L, 0x000000000000L, 0x000000800000L,
+        0x000000000200L, 0x000000100000L, 0x000000000000L, 0x000000002000L,
+        0x000000000001L, 0x000000020000L, 0x000000000100L, 0x000000000000L,
+        0x000000400000L, 0x000000000008L, 0x000000001000L, 0x000000080000L,
+        // key byte 5, bit 4
+        0x000080000000L, 0x000000000000L, 0x000800000000L, 0x002000000000L,
+        0x000400000000L, 0x400000000000L, 0x008000000000L, 0x000002000000L,
+        0x000200000000L, 0x001000000000L, 0x000040000000L, 0x004000000000L,
+        0x000100000000L, 0x000001000000L, 0x010000000000L, 0x000008000000L,
+        // key byte 5, bit 5
+        0x000000000000L, 0x400000000000L, 0x008000000000L, 0x000002000000L,
+        0x200000000000L, 0x000000000000L, 0x000010000000L, 0x040000000000L,
+        0x000100000000L, 0x000001000000L, 0x010000000000L, 0x000080000000L,
+        0x100000000000L, 0x000000000000L, 0x000004000000L, 0x000400000000L,
+        // key byte 5, bit 6
+        0x001000000000L, 0x000000000000L, 0x000010000000L, 0x040000000000L,
+        0x020000000000L, 0x080000000000L, 0x000008000000L, 0x000000000000L,
+        0x100000000000L, 0x000000000000L, 0x000004000000L, 0x000000000000L,
+        0x000020000000L, 0x800000000000L, 0x000200000000L, 0x200000000000L,
+        // key byte 5, bit 7
+        0x000001000000L, 0x080000000000L, 0x000008000000L, 0x000000000000L,
+        0x000800000000L, 0x002000000000L, 0x000400000000L, 0x400000000000L,
+        0x000020000000L, 0x800000000000L, 0x000200000000L, 0x001000000000L,
+        0x000040000000L, 0x004000000000L, 0x000100000000L, 0x020000000000L,
+        // key byte 6, bit 1
+        0x000000000002L, 0x000000000100L, 0x000000000000L, 0x000000400000L,
+        0x000000000008L, 0x000000001000L, 0x000000000020L, 0x000000000800L,
+        0x000000000000L, 0x000000800000L, 0x000000000200L, 0x000000100000L,
+        0x000000000000L, 0x000000002000L, 0x000000200000L, 0x000000020000L,
+        // key byte 6, bit 2
+        0x000000100000L, 0x000000000004L, 0x000000000080L, 0x000000000001L,
+        0x000000020000L, 0x000000000100L, 0x000000000000L, 0x000000400000L,
+        0x000000008000L, 0x000000000400L, 0x000000080000L, 0x000000004000L,
+        0x000000000000L, 0x000000800000L, 0x000000000200L, 0x000000000000L,
+        // key byte 6, bit 3
+        0x000000004000L, 0x000000000800L, 0x000000000010L, 0x000000010000L,
+        0x000000000000L, 0x000000000004L, 0x000000000080L, 0x000000000001L,
+        0x000000200000L, 0x000000000002L, 0x000000040000L, 0x000000000040L,
+        0x000000008000L, 0x000000000400L, 0x000000080000L, 0x000000000020L,
+        // key byte 6, bit 4
+        0x000000000000L, 0x100000000000L, 0x000000000000L, 0x000004000000L,
+        0x000000000000L, 0x000020000000L, 0x800000000000L, 0x000200000000L,
+        0x200000000000L, 0x000000000000L, 0x000010000000L, 0x040000000000L,
+        0x020000000000L, 0x080000000000L, 0x000008000000L, 0x000080000000L,
+        // key byte 6, bit 5
+        0x400000000000L, 0x000020000000L, 0x800000000000L, 0x000200000000L,
+        0x001000000000L, 0x000040000000L, 0x004000000000L, 0x000100000000L,
+        0x020000000000L, 0x080000000000L, 0x000008000000L, 0x000000000000L,
+        0x000800000000L, 0x002000000000L, 0x000400000000L, 0x000000000000L,
+        // key byte 6, bit 6
+        0x000000000000L, 0x000040000000L, 0x004000000000L, 0x000100000000L,
+        0x000001000000L, 0x010000000000L, 0x000080000000L, 0x100000000000L,
+        0x000800000000L, 0x002000000000L, 0x000400000000L, 0x400000000000L,
+        0x008000000000L, 0x000002000000L, 0x200000000000L, 0x001000000000L,
+        // key byte 6, bit 7
+        0x080000000000L, 0x010000000000L, 0x000080000000L, 0x100000000000L,
+        0x000000000000L, 0x000004000000L, 0x000000000000L, 0x000020000000L,
+        0x008000000000L, 0x000002000000L, 0x200000000000L, 0x000000000000L,
+        0x000010000000L, 0x040000000000L, 0x020000000000L, 0x000001000000L,
+        // key byte 7, bit 1
+        0x000000000100L, 0x000000040000L, 0x000000000040L, 0x000000008000L,
+        0x000000000400L, 0x000000080000L, 0x000000004000L, 0x000000000000L,
+        0x000000000010L, 0x000000010000L, 0x000000000000L, 0x000000000004L,
+        0x000000000080L, 0x000000000001L, 0x000000020000L, 0x000000000002L,
+        // key byte 7, bit 2
+        0x000000000004L, 0x000000000000L, 0x000000002000L, 0x000000200000L,
+        0x000000000002L, 0x000000040000L, 0x000000000040L, 0x000000008000L,
+        0x000000000008L, 0x000000001000L, 0x000000000020L, 0x000000000800L,
+        0x000000000010L, 0x000000010000L, 0x000000000000L, 0x000000100000L,
+        // key byte 7, bit 3
+        0x000000000800L, 0x000000000000L, 0x000000800000L, 0x000000000200L,
+        0x000000100000L, 0x000000000000L, 0x000000002000L, 0x000000200000L,
+        0x000000020000L, 0x000000000100L, 0x000000000000L, 0x000000400000L,
+        0x000000000008L, 0x000000001000L, 0x000000000020L, 0x000000004000L,
+        // key byte 7, bit 4
+        0x100000000000L, 0x000800000000L, 0x002000000000L, 0x000400000000L,
+        0x400000000000L, 0x008000000000L, 0x000002000000L, 0x200000000000L,
+        0x001000000000L, 0x000040000000L, 0x004000000000L, 0x000100000000L,
+        0x000001000000L, 0x010000000000L, 0x000080000000L, 0x000000000000L,
+        // key byte 7, bit 5
+        0x000020000000L, 0x008000000000L, 0x000002000000L, 0x200000000000L,
+        0x000000000000L, 0x000010000000L, 0x040000000000L, 0x020000000000L,
+        0x000001000000L, 0x010000000000L, 0x000080000000L, 0x100000000000L,
+        0x000000000000L, 0x000004000000L, 0x000000000000L, 0x400000000000L,
+        // key byte 7, bit 6
+        0x000040000000L, 0x000010000000L, 0x040000000000L, 0x020000000000L,
+        0x080000000000L, 0x000008000000L, 0x000000000000L, 0x000800000000L,
+        0x000000000000L, 0x000004000000L, 0x000000000000L, 0x000020000000L,
+        0x800000000000L, 0x000200000000L, 0x001000000000L, 0x000000000000L,
+        // key byte 7, bit 7
+        0x010000000000L, 0x000008000000L, 0x000000000000L, 0x000800000000L,
+        0x002000000000L, 0x000400000000L, 0x400000000000L, 0x008000000000L,
+        0x800000000000L, 0x000200000000L, 0x001000000000L, 0x000040000000L,
+        0x004000000000L, 0x000100000000L, 0x000001000000L, 0x080000000000L,
+    };
+
+}
@@ -0,0 +1,108 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.WritableByteChannel;
+import java.security.GeneralSecurityException;
+
+/**
+ * A WritableByteChannel that encrypts (or decrypts) everything written
+ * to it with a DESMode, and writes the result to an underlying
+ * channel.
+ *
+ * Data passes through a fixed-size internal buffer, so channels of any
+ * length are processed in constant memory.  The padding scheme is
+ * applied when the channel is closed, so close() must be called to
+ * complete the output.
+ *
+ * Instances are not thread-safe.
+ */
+public class DESWritableChannel implements WritableByteChannel {
+
+    private final WritableByteChannel channel;
+    private final DESPaddedMode cipher;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(DESOutputStream.BUFFER_SIZE + 16);
+    private boolean open = true;
+
+    /**
+     * Create a channel which passes everything written to it through
+     * the supplied mode, with the supplied padding scheme, to the
+     * underlying channel.
+     */
+    public DESWritableChannel(WritableByteChannel channel, DESMode mode, DESPadding padding) {
+        this.channel = channel;
+        this.cipher = new DESPaddedMode(mode, padding);
+    }
+
+    public boolean isOpen() {
+        return open;
+    }
+
+    /**
+     * Write all remaining bytes of the source buffer.  This blocks
+     * until the underlying channel has accepted all of the output, so
+     * it should not be used over a non-blocking channel.
+     */
+    public int write(ByteBuffer src) throws IOException {
+        if (!open) {
+            throw new ClosedChannelException();
+        }
+        int total = src.remaining();
+        int limit = src.limit();
+        try {
+            while (src.hasRemaining()) {
+                src.limit(src.position() + Math.min(src.remaining(), DESOutputStream.BUFFER_SIZE));
+                buffer.clear();
+                cipher.update(src, buffer);
+                src.limit(limit);
+                drain();
+            }
+        } finally {
+            src.limit(limit);
+        }
+        return total;
+    }
+
+    private void drain() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Apply the padding scheme, write the final output, and close the
+     * underlying channel.
+     */
+    public void close() throws IOException {
+        if (!open) {
+            return;
+        }
+        open = false;
+        try {
+            buffer.clear();
+            try {
+                cipher.doFinal(buffer);
+            } catch (GeneralSecurityException e) {
+                throw new IOException(e.getMessage(), e);
+            }
+            drain();
+        } finally {
+            channel.close();
+        }
+    }
+
+}
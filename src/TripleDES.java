@@ -0,0 +1,247 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * Triple-DES (TDEA) in the encrypt-decrypt-encrypt (EDE) construction
+ * described in NIST SP 800-67: a block is encrypted with the first
+ * key, decrypted with the second, and encrypted with the third.
+ *
+ * Composing three DES.encryptBlock() calls would apply the final
+ * permutation at the end of each stage, only to have the next stage
+ * undo it with its initial permutation.  Since FP is the inverse of
+ * IP, the two cancel, so here the 48 rounds run back to back, with
+ * one IP at the start and one FP at the end.
+ *
+ * The bulk and buffer methods mirror those of DES.  For the modes of
+ * operation and parallel bulk encryption, pass a TripleDESKey to
+ * DESMode or DESParallel.
+ */
+public class TripleDES {
+
+    //////////////////////////////////////////////////////////////////////
+    //
+    // Block methods
+    //
+    //////////////////////////////////////////////////////////////////////
+
+    /**
+     * Encrypt a 64-bit block of plaintext message into a 64-bit
+     * ciphertext.
+     */
+    public static long encryptBlock(long m, TripleDESKey key) {
+        if (DESMetrics.ENABLED) {
+            DESMetrics.blocks(true, 1);
+        }
+        return encryptBlock(m, key.k1.subkeys, key.k2.subkeys, key.k3.subkeys);
+    }
+
+    /**
+     * Encrypt a 64-bit block with the three supplied key schedules.
+     */
+    static long encryptBlock(long m, long[] k1, long[] k2, long[] k3) {
+        long ip = DES.fastIP(m);
+        int l = (int) (ip>>32);
+        int r = (int) ip;
+
+        // encrypt with k1
+        for (int i=0; i<16; i+=2) {
+            l ^= DES.feistelSP(r, k1[i]);
+            r ^= DES.feistelSP(l, k1[i+1]);
+        }
+        // decrypt with k2.  The halves swap between stages, which is
+        // done here by swapping the roles of l and r.
+        for (int i=15; i>0; i-=2) {
+            r ^= DES.feistelSP(l, k2[i]);
+            l ^= DES.feistelSP(r, k2[i-1]);
+        }
+        // encrypt with k3
+        for (int i=0; i<16; i+=2) {
+            l ^= DES.feistelSP(r, k3[i]);
+            r ^= DES.feistelSP(l, k3[i+1]);
+        }
+
+        return DES.fastFP((r&0xFFFFFFFFL)<<32 | (l&0xFFFFFFFFL));
+    }
+
+    /**
+     * Decrypt a 64-bit block of ciphertext into a 64-bit plaintext
+     * message.
+     */
+    public static long decryptBlock(long c, TripleDESKey key) {
+        if (DESMetrics.ENABLED) {
+            DESMetrics.blocks(false, 1);
+        }
+        return decryptBlock(c, key.k1.subkeys, key.k2.subkeys, key.k3.subkeys);
+    }
+
+    /**
+     * Decrypt a 64-bit block with the three supplied key schedules.
+     */
+    static long decryptBlock(long c, long[] k1, long[] k2, long[] k3) {
+        long ip = DES.fastIP(c);
+        int l = (int) (ip>>32);
+        int r = (int) ip;
+
+        // decrypt with k3
+        for (int i=15; i>0; i-=2) {
+            l ^= DES.feistelSP(r, k3[i]);
+            r ^= DES.feistelSP(l, k3[i-1]);
+        }
+        // encrypt with k2, with the halves swapped
+        for (int i=0; i<16; i+=2) {
+            r ^= DES.feistelSP(l, k2[i]);
+            l ^= DES.feistelSP(r, k2[i+1]);
+        }
+        // decrypt with k1
+        for (int i=15; i>0; i-=2) {
+            l ^= DES.feistelSP(r, k1[i]);
+            r ^= DES.feistelSP(l, k1[i-1]);
+        }
+
+        return DES.fastFP((r&0xFFFFFFFFL)<<32 | (l&0xFFFFFFFFL));
+    }
+
+    //////////////////////////////////////////////////////////////////////
+    //
+    // Bulk methods
+    //
+    //////////////////////////////////////////////////////////////////////
+
+    /**
+     * Encrypt the supplied message, and return the ciphertext.  If the
+     * message is not a multiple of 64 bits (8 bytes), then it is padded
+     * with zeros.  This method uses ECB mode.
+     */
+    public static byte[] encrypt(byte[] message, TripleDESKey key) {
+        byte[] ciphertext = new byte[message.length];
+        int whole = message.length & ~7;
+        encrypt(message, 0, whole, ciphertext, 0, key);
+        if (whole < message.length) {
+            long m = DES.getLongFromBytes(message, whole);
+            DES.getBytesFromLong(ciphertext, whole, encryptBlock(m, key));
+        }
+        return ciphertext;
+    }
+
+    /**
+     * Decrypt the supplied ciphertext, and return the message.  This
+     * is the inverse of encrypt(byte[], TripleDESKey).
+     */
+    public static byte[] decrypt(byte[] ciphertext, TripleDESKey key) {
+        byte[] message = new byte[ciphertext.length];
+        int whole = ciphertext.length & ~7;
+        decrypt(ciphertext, 0, whole, message, 0, key);
+        if (whole < ciphertext.length) {
+            long c = DES.getLongFromBytes(ciphertext, whole);
+            DES.getBytesFromLong(message, whole, decryptBlock(c, key));
+        }
+        return message;
+    }
+
+    /**
+     * Triple-DES equivalent of
+     * DES.encrypt(byte[], int, int, byte[], int, DESKey).
+     */
+    public static void encrypt(
+        byte[] in,
+        int inOffset,
+        int length,
+        byte[] out,
+        int outOffset,
+        TripleDESKey key
+    ) {
+        DES.checkBlockLength(length);
+        long start = DESMetrics.start();
+        long[] k1 = key.k1.subkeys, k2 = key.k2.subkeys, k3 = key.k3.subkeys;
+        for (int i=0; i<length; i+=8) {
+            DES.writeLong(out, outOffset+i, encryptBlock(DES.readLong(in, inOffset+i), k1, k2, k3));
+        }
+        if (DESMetrics.ENABLED) {
+            DESMetrics.record(true, length/8, length, start);
+        }
+    }
+
+    /**
+     * Triple-DES equivalent of
+     * DES.decrypt(byte[], int, int, byte[], int, DESKey).
+     */
+    public static void decrypt(
+        byte[] in,
+        int inOffset,
+        int length,
+        byte[] out,
+        int outOffset,
+        TripleDESKey key
+    ) {
+        DES.checkBlockLength(length);
+        long start = DESMetrics.start();
+        long[] k1 = key.k1.subkeys, k2 = key.k2.subkeys, k3 = key.k3.subkeys;
+        for (int i=0; i<length; i+=8) {
+            DES.writeLong(out, outOffset+i, decryptBlock(DES.readLong(in, inOffset+i), k1, k2, k3));
+        }
+        if (DESMetrics.ENABLED) {
+            DESMetrics.record(false, length/8, length, start);
+        }
+    }
+
+    /**
+     * Triple-DES equivalent of DES.encrypt(ByteBuffer, ByteBuffer, DESKey).
+     */
+    public static void encrypt(ByteBuffer src, ByteBuffer dst, TripleDESKey key) {
+        int length = src.remaining();
+        DES.checkBlockLength(length);
+        if (dst.remaining() < length) {
+            throw new BufferOverflowException();
+        }
+        long start = DESMetrics.start();
+        long[] k1 = key.k1.subkeys, k2 = key.k2.subkeys, k3 = key.k3.subkeys;
+        int in = src.position();
+        int out = dst.position();
+        for (int i=0; i<length; i+=8) {
+            DES.writeLong(dst, out+i, encryptBlock(DES.readLong(src, in+i), k1, k2, k3));
+        }
+        src.position(in+length);
+        dst.position(out+length);
+        if (DESMetrics.ENABLED) {
+            DESMetrics.record(true, length/8, length, start);
+        }
+    }
+
+    /**
+     * Triple-DES equivalent of DES.decrypt(ByteBuffer, ByteBuffer, DESKey).
+     */
+    public static void decrypt(ByteBuffer src, ByteBuffer dst, TripleDESKey key) {
+        int length = src.remaining();
+        DES.checkBlockLength(length);
+        if (dst.remaining() < length) {
+            throw new BufferOverflowException();
+        }
+        long start = DESMetrics.start();
+        long[] k1 = key.k1.subkeys, k2 = key.k2.subkeys, k3 = key.k3.subkeys;
+        int in = src.position();
+        int out = dst.position();
+        for (int i=0; i<length; i+=8) {
+            DES.writeLong(dst, out+i, decryptBlock(DES.readLong(src, in+i), k1, k2, k3));
+        }
+        src.position(in+length);
+        dst.position(out+length);
+        if (DESMetrics.ENABLED) {
+            DESMetrics.record(false, length/8, length, start);
+        }
+    }
+
+}
@@ -0,0 +1,88 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * An immutable Triple-DES (TDEA) key schedule: the three DES key
+ * schedules used by the encrypt-decrypt-encrypt (EDE) construction.
+ *
+ * With three independent keys this is "keying option 1" (EDE3, a
+ * 168-bit key).  With the third key equal to the first it is "keying
+ * option 2" (EDE2, a 112-bit key).  All three schedules are built
+ * once, when the key is created.
+ *
+ * Instances hold no mutable state, and may be freely shared between
+ * threads.
+ */
+public final class TripleDESKey implements DESBlockCipher {
+
+    /** The key schedules for the three stages. */
+    final DESKey k1, k2, k3;
+
+    /**
+     * Create an EDE3 key schedule from three previously built DES key
+     * schedules.
+     */
+    public TripleDESKey(DESKey k1, DESKey k2, DESKey k3) {
+        this.k1 = k1;
+        this.k2 = k2;
+        this.k3 = k3;
+    }
+
+    /**
+     * Create an EDE2 key schedule from two 64-bit keys.
+     */
+    public TripleDESKey(long k1, long k2) {
+        this.k1 = new DESKey(k1);
+        this.k2 = new DESKey(k2);
+        this.k3 = this.k1;
+    }
+
+    /**
+     * Create an EDE3 key schedule from three 64-bit keys.
+     */
+    public TripleDESKey(long k1, long k2, long k3) {
+        this(new DESKey(k1), new DESKey(k2), new DESKey(k3));
+    }
+
+    /**
+     * Create a key schedule from a 16-byte (EDE2) or 24-byte (EDE3)
+     * key.
+     */
+    public TripleDESKey(byte[] key) {
+        if (key.length != 16 && key.length != 24) {
+            throw new IllegalArgumentException(
+                "Triple-DES keys must be 16 or 24 bytes: "+key.length);
+        }
+        this.k1 = new DESKey(DES.readLong(key, 0));
+        this.k2 = new DESKey(DES.readLong(key, 8));
+        this.k3 = (key.length == 24) ? new DESKey(DES.readLong(key, 16)) : this.k1;
+    }
+
+    /**
+     * Encrypt a 64-bit block with this key.  Equivalent to
+     * TripleDES.encryptBlock(block, this).
+     */
+    public long encryptBlock(long block) {
+        return TripleDES.encryptBlock(block, k1.subkeys, k2.subkeys, k3.subkeys);
+    }
+
+    /**
+     * Decrypt a 64-bit block with this key.  Equivalent to
+     * TripleDES.decryptBlock(block, this).
+     */
+    public long decryptBlock(long block) {
+        return TripleDES.decryptBlock(block, k1.subkeys, k2.subkeys, k3.subkeys);
+    }
+
+}
@@ -0,0 +1,319 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * The "VNC Authentication" challenge-response scheme of the RFB
+ * protocol, for servers handling many handshakes.
+ *
+ * The server sends a random 16-byte challenge, and the client returns
+ * the challenge encrypted (as two ECB blocks) with a DES key made from
+ * the first eight characters of the password, with the bits of each
+ * byte mirrored.  (See DES.passwordToKey() for the background.)
+ *
+ * This class keeps a bounded, least-recently-used cache of key
+ * schedules, indexed by the 64-bit key derived from the password (never
+ * by the password itself, so the cache holds no plaintext), so that a
+ * handshake with a recently seen password needs no key schedule to be
+ * built and allocates nothing: the cache is a table of primitive
+ * longs, the challenge and response are handled as longs, and the
+ * response is compared in constant time.  The cache is split into independently
+ * locked segments so that concurrent handshakes rarely contend.
+ *
+ * Password characters are mapped to bytes by taking the low eight bits
+ * of each char, as with ISO-8859-1, without going through the platform
+ * charset; a password whose first eight characters include one above
+ * U+00FF is rejected with an IllegalArgumentException, rather than
+ * truncated to a key it might share with other passwords.
+ * DES.encrypt(byte[], String) uses the same mapping.
+ *
+ * Instances are thread-safe.
+ */
+public class VNCAuth {
+
+    /** The length of a VNC Authentication challenge and response. */
+    public static final int CHALLENGE_LENGTH = 16;
+
+    /** The default total number of cached key schedules. */
+    public static final int DEFAULT_CAPACITY = 4096;
+
+    /** The number of independently locked cache segments. */
+    private static final int SEGMENTS = 16;
+
+    /**
+     * Multiplier which mixes the bits of a derived key: the high four
+     * bits of the product choose the segment, and the next ones the
+     * slot within it.
+     */
+    private static final long MIX = 0x9E3779B97F4A7C15L;
+
+    /**
+     * One segment of the cache: an open-addressing hash table (with
+     * linear probing) of derived keys and their schedules, in parallel
+     * arrays so that a lookup allocates nothing.  When the segment is
+     * full, an entry is evicted with the CLOCK approximation of LRU:
+     * each hit sets the entry's "used" flag, and the clock hand sweeps
+     * the table, clearing flags, until it finds an entry without one.
+     * Always accessed while holding its own lock.
+     */
+    private static final class Segment {
+        private final int capacity;
+        private final int mask;
+        private final long[] keys;
+        private final DESKey[] values;
+        private final boolean[] used;
+        private int size;
+        private int hand;
+
+        Segment(int capacity) {
+            // keep the table at most half full
+            int tableSize = 2;
+            while (tableSize < 2*capacity) {
+                tableSize <<= 1;
+            }
+            this.capacity = capacity;
+            this.mask = tableSize - 1;
+            this.keys = new long[tableSize];
+            this.values = new DESKey[tableSize];
+            this.used = new boolean[tableSize];
+        }
+
+        private int home(long key) {
+            return (int) ((key * MIX) >>> 32) & mask;
+        }
+
+        /** Return the slot holding key, or -1. */
+        private int find(long key) {
+            for (int i=home(key); values[i] != null; i=(i+1)&mask) {
+                if (keys[i] == key) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        DESKey get(long key) {
+            int i = find(key);
+            if (i < 0) {
+                return null;
+            }
+            used[i] = true;
+            return values[i];
+        }
+
+        void put(long key, DESKey value) {
+            int i = find(key);
+            if (i < 0) {
+                if (size == capacity) {
+                    evict();
+                }
+                i = home(key);
+                while (values[i] != null) {
+                    i = (i+1) & mask;
+                }
+                keys[i] = key;
+                size++;
+            }
+            values[i] = value;
+            used[i] = false;
+        }
+
+        void remove(long key) {
+            int i = find(key);
+            if (i >= 0) {
+                removeAt(i);
+            }
+        }
+
+        private void evict() {
+            while (true) {
+                hand = (hand+1) & mask;
+                if (values[hand] != null) {
+                    if (!used[hand]) {
+                        removeAt(hand);
+                        return;
+                    }
+                    used[hand] = false;
+                }
+            }
+        }
+
+        /**
+         * Empty a slot, moving later entries of the same probe run back
+         * into the gap so that no lookup stops short of them.
+         */
+        private void removeAt(int gap) {
+            for (int i=(gap+1)&mask; values[i] != null; i=(i+1)&mask) {
+                int h = home(keys[i]);
+                // the entry may move unless its home lies in (gap, i]
+                boolean stays = (gap < i) ? (gap < h && h <= i) : (gap < h || h <= i);
+                if (!stays) {
+                    keys[gap] = keys[i];
+                    values[gap] = values[i];
+                    used[gap] = used[i];
+                    gap = i;
+                }
+            }
+            values[gap] = null;
+            used[gap] = false;
+            size--;
+        }
+    }
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+
+    /**
+     * Create an instance that caches up to DEFAULT_CAPACITY key
+     * schedules.
+     */
+    public VNCAuth() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Create an instance that caches up to (approximately) the
+     * specified number of key schedules.
+     */
+    public VNCAuth(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive: "+capacity);
+        }
+        int perSegment = Math.max(1, (capacity + SEGMENTS - 1) / SEGMENTS);
+        for (int i=0; i<SEGMENTS; i++) {
+            segments[i] = new Segment(perSegment);
+        }
+    }
+
+    //////////////////////////////////////////////////////////////////////
+    //
+    // Public interface
+    //
+    //////////////////////////////////////////////////////////////////////
+
+    /**
+     * Convert a password into the 64-bit DES key used by VNC
+     * Authentication, without allocating.
+     *
+     * @throws IllegalArgumentException if one of the first eight
+     *     characters is not in ISO-8859-1 (above U+00FF).
+     */
+    public static long passwordToKey(CharSequence password) {
+        long key = 0;
+        int length = password.length();
+        for (int i=0; i<8; i++) {
+            int b = (i < length) ? password.charAt(i) : 0;
+            if (b > 0xFF) {
+                throw new IllegalArgumentException(
+                    "VNC passwords are ISO-8859-1; character "+i+" is "+String.format("U+%04X", b));
+            }
+            key = key<<8 | (DES.BIT_REVERSE[b]&0xFFL);
+        }
+        return key;
+    }
+
+    /**
+     * Return the key schedule for the specified password, from the
+     * cache if possible.  Passwords which share their first eight
+     * characters share a key, and so a cache entry.
+     */
+    public DESKey getKey(String password) {
+        long value = passwordToKey(password);
+        Segment segment = segmentFor(value);
+        DESKey key;
+        synchronized (segment) {
+            key = segment.get(value);
+        }
+        if (key == null) {
+            // build outside of the lock; a concurrent miss for the same
+            // password just builds an identical schedule.
+            key = new DESKey(value);
+            synchronized (segment) {
+                segment.put(value, key);
+            }
+            if (DESMetrics.ENABLED) {
+                DESMetrics.cacheMiss();
+            }
+        } else if (DESMetrics.ENABLED) {
+            DESMetrics.cacheHit();
+        }
+        return key;
+    }
+
+    /**
+     * Remove the key schedule for the specified password from the
+     * cache, if present; for example, when a user's password changes.
+     */
+    public void invalidate(String password) {
+        long value = passwordToKey(password);
+        Segment segment = segmentFor(value);
+        synchronized (segment) {
+            segment.remove(value);
+        }
+    }
+
+    /**
+     * Compute the client's response to a challenge, writing the 16
+     * response bytes into the response array at the specified offset.
+     */
+    public void respond(
+        String password,
+        byte[] challenge,
+        int challengeOffset,
+        byte[] response,
+        int responseOffset
+    ) {
+        DESKey key = getKey(password);
+        long c0 = DES.readLong(challenge, challengeOffset);
+        long c1 = DES.readLong(challenge, challengeOffset+8);
+        DES.writeLong(response, responseOffset,   DES.encryptBlock(c0, key));
+        DES.writeLong(response, responseOffset+8, DES.encryptBlock(c1, key));
+    }
+
+    /**
+     * Check a client's response to a challenge.  The comparison takes
+     * the same time wherever the response differs from the expected
+     * value.
+     */
+    public boolean verify(
+        String password,
+        byte[] challenge,
+        int challengeOffset,
+        byte[] response,
+        int responseOffset
+    ) {
+        DESKey key = getKey(password);
+        long c0 = DES.encryptBlock(DES.readLong(challenge, challengeOffset), key);
+        long c1 = DES.encryptBlock(DES.readLong(challenge, challengeOffset+8), key);
+        long diff = (c0 ^ DES.readLong(response, responseOffset))
+                  | (c1 ^ DES.readLong(response, responseOffset+8));
+        return diff == 0;
+    }
+
+    /**
+     * Check a client's 16-byte response to a 16-byte challenge.
+     */
+    public boolean verify(String password, byte[] challenge, byte[] response) {
+        if (challenge.length != CHALLENGE_LENGTH || response.length != CHALLENGE_LENGTH) {
+            return false;
+        }
+        return verify(password, challenge, 0, response, 0);
+    }
+
+    /**
+     * Return the segment for a derived key.
+     */
+    private Segment segmentFor(long value) {
+        return segments[(int) ((value * MIX) >>> 60)];
+    }
+
+}
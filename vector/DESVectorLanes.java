@@ -0,0 +1,293 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Vector API backend for the multi-lane ECB engine, which runs one
+ * block in each lane of a SIMD register.
+ *
+ * The left and right halves of 4, 8 or 16 blocks (for 128, 256 or
+ * 512-bit vectors) are held in two IntVectors, and each round is
+ * computed for all of them at once, just as DES.feistelSP() computes
+ * it for one: each 6-bit window of the expansion is cut out of a
+ * lane-wise rotation of the right half and mixed with the subkey by a
+ * lane-wise XOR, and the eight SP-table lookups become gathers.  IP
+ * and FP are applied to each block with DES.fastIP() and
+ * DES.fastFP() as the blocks are loaded and stored.  Blocks left over
+ * at the end are handed to the scalar DESLanes engine, and the whole
+ * call is recorded in DESMetrics once.
+ *
+ * The JIT only turns Vector API calls into SIMD instructions when the
+ * vector species is a constant, so each vector size has its own copy
+ * of the loop, with the species in a static final field.  The rounds
+ * loop over the eight S-boxes rather than spelling them out, which
+ * keeps the loop small enough to be compiled as a whole; otherwise
+ * the vectors are boxed between calls and it runs many times slower.
+ *
+ * This class needs Java 17 and the jdk.incubator.vector module, so it
+ * is compiled separately from the rest of the library (the "vector"
+ * source set), and the JVM must be started with --add-modules
+ * jdk.incubator.vector.  The library only refers to it by name: see
+ * DESLanes.loadVector(), which falls back to the scalar engine when it
+ * can't be loaded.
+ *
+ * Only one vector size should be used in a JVM: once the JIT has
+ * profiled the Vector API with more than one species, it stops
+ * intrinsifying the calls for the others.
+ *
+ * The output is identical to that of the DES range methods.  Each call
+ * allocates three small scratch arrays.  Instances are immutable and
+ * thread-safe.
+ */
+abstract class DESVectorLanes implements DESEngine {
+
+    /** The eight SP tables, end to end, so one array serves every gather. */
+    static final int[] SP = new int[8*64];
+
+    /**
+     * The right rotation which brings the 6-bit window of each S-box
+     * into the low bits, as in DES.feistelSP().
+     */
+    static final int[] ROTATE = { 27, 23, 19, 15, 11, 7, 3, 31 };
+
+    static {
+        for (int i=0; i<8; i++) {
+            System.arraycopy(DESTables.SP[i], 0, SP, 64*i, 64);
+        }
+    }
+
+    /**
+     * Create a backend using vectors of the specified size in bits
+     * (128, 256 or 512), or the preferred size of the processor if
+     * bits is 0.  Called by DESLanes.loadVector().
+     */
+    static DESVectorLanes create(int bits) {
+        if (bits == 0) {
+            bits = Math.max(128, Math.min(512, IntVector.SPECIES_PREFERRED.vectorBitSize()));
+        }
+        switch (bits) {
+        case 128:
+            return new Lanes128();
+        case 256:
+            return new Lanes256();
+        case 512:
+            return new Lanes512();
+        default:
+            throw new IllegalArgumentException("vector size must be 128, 256 or 512 bits: "+bits);
+        }
+    }
+
+    /**
+     * Return the number of blocks processed at once.
+     */
+    abstract int getLanes();
+
+    /**
+     * Process as many whole vectors of blocks as possible, running the
+     * subkeys from index first, stepping by step (1 to encrypt, -1 to
+     * decrypt).  Returns the number of bytes processed.
+     */
+    abstract int crypt(byte[] in, int inOffset, int length, byte[] out, int outOffset,
+                       long[] subkeys, int first, int step);
+
+    public String getName() {
+        return "vector"+(32*getLanes());
+    }
+
+    public DESKey createKey(long key) {
+        return new DESKey(key);
+    }
+
+    public long encryptBlock(long block, DESKey key) {
+        return DES.encryptBlock(block, key);
+    }
+
+    public long decryptBlock(long block, DESKey key) {
+        return DES.decryptBlock(block, key);
+    }
+
+    public void encrypt(byte[] in, int inOffset, int length, byte[] out, int outOffset, DESKey key) {
+        DES.checkBlockLength(length);
+        long start = DESMetrics.start();
+        int done = crypt(in, inOffset, length, out, outOffset, key.subkeys, 0, 1);
+        if (done < length) {
+            DESLanes.getDefault().crypt(in, inOffset+done, length-done, out, outOffset+done,
+                                        key.subkeys, 0, 1);
+        }
+        if (DESMetrics.ENABLED) {
+            DESMetrics.record(true, length/8, length, start);
+        }
+    }
+
+    public void decrypt(byte[] in, int inOffset, int length, byte[] out, int outOffset, DESKey key) {
+        DES.checkBlockLength(length);
+        long start = DESMetrics.start();
+        int done = crypt(in, inOffset, length, out, outOffset, key.subkeys, 15, -1);
+        if (done < length) {
+            DESLanes.getDefault().crypt(in, inOffset+done, length-done, out, outOffset+done,
+                                        key.subkeys, 15, -1);
+        }
+        if (DESMetrics.ENABLED) {
+            DESMetrics.record(false, length/8, length, start);
+        }
+    }
+
+    //////////////////////////////////////////////////////////////////////
+    //
+    // One implementation per vector size
+    //
+    //////////////////////////////////////////////////////////////////////
+
+    static final class Lanes128 extends DESVectorLanes {
+        private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_128;
+
+        int getLanes() {
+            return SPECIES.length();
+        }
+
+        int crypt(byte[] in, int inOffset, int length, byte[] out, int outOffset,
+                  long[] subkeys, int first, int step) {
+            int lanes = SPECIES.length();
+            int end = length - length % (8*lanes);
+            int[] l = new int[lanes];
+            int[] r = new int[lanes];
+            int[] index = new int[lanes];
+            for (int p=0; p<end; p+=8*lanes) {
+                for (int k=0; k<lanes; k++) {
+                    long ip = DES.fastIP(DES.readLong(in, inOffset+p+8*k));
+                    l[k] = (int) (ip>>32);
+                    r[k] = (int) ip;
+                }
+                IntVector lv = IntVector.fromArray(SPECIES, l, 0);
+                IntVector rv = IntVector.fromArray(SPECIES, r, 0);
+                for (int i=first, round=0; round<16; round++, i+=step) {
+                    long subkey = subkeys[i];
+                    IntVector f = IntVector.zero(SPECIES);
+                    for (int box=0; box<8; box++) {
+                        rv.lanewise(VectorOperators.ROR, ROTATE[box])
+                            .lanewise(VectorOperators.XOR, (int) (subkey >>> (42-6*box)))
+                            .and(0x3F)
+                            .intoArray(index, 0);
+                        f = f.or(IntVector.fromArray(SPECIES, SP, 64*box, index, 0));
+                    }
+                    IntVector t = lv.lanewise(VectorOperators.XOR, f);
+                    lv = rv;
+                    rv = t;
+                }
+                lv.intoArray(l, 0);
+                rv.intoArray(r, 0);
+                for (int k=0; k<lanes; k++) {
+                    DES.writeLong(out, outOffset+p+8*k, DES.fastFP((r[k]&0xFFFFFFFFL)<<32 | (l[k]&0xFFFFFFFFL)));
+                }
+            }
+            return end;
+        }
+    }
+
+    static final class Lanes256 extends DESVectorLanes {
+        private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_256;
+
+        int getLanes() {
+            return SPECIES.length();
+        }
+
+        int crypt(byte[] in, int inOffset, int length, byte[] out, int outOffset,
+                  long[] subkeys, int first, int step) {
+            int lanes = SPECIES.length();
+            int end = length - length % (8*lanes);
+            int[] l = new int[lanes];
+            int[] r = new int[lanes];
+            int[] index = new int[lanes];
+            for (int p=0; p<end; p+=8*lanes) {
+                for (int k=0; k<lanes; k++) {
+                    long ip = DES.fastIP(DES.readLong(in, inOffset+p+8*k));
+                    l[k] = (int) (ip>>32);
+                    r[k] = (int) ip;
+                }
+                IntVector lv = IntVector.fromArray(SPECIES, l, 0);
+                IntVector rv = IntVector.fromArray(SPECIES, r, 0);
+                for (int i=first, round=0; round<16; round++, i+=step) {
+                    long subkey = subkeys[i];
+                    IntVector f = IntVector.zero(SPECIES);
+                    for (int box=0; box<8; box++) {
+                        rv.lanewise(VectorOperators.ROR, ROTATE[box])
+                            .lanewise(VectorOperators.XOR, (int) (subkey >>> (42-6*box)))
+                            .and(0x3F)
+                            .intoArray(index, 0);
+                        f = f.or(IntVector.fromArray(SPECIES, SP, 64*box, index, 0));
+                    }
+                    IntVector t = lv.lanewise(VectorOperators.XOR, f);
+                    lv = rv;
+                    rv = t;
+                }
+                lv.intoArray(l, 0);
+                rv.intoArray(r, 0);
+                for (int k=0; k<lanes; k++) {
+                    DES.writeLong(out, outOffset+p+8*k, DES.fastFP((r[k]&0xFFFFFFFFL)<<32 | (l[k]&0xFFFFFFFFL)));
+                }
+            }
+            return end;
+        }
+    }
+
+    static final class Lanes512 extends DESVectorLanes {
+        private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_512;
+
+        int getLanes() {
+            return SPECIES.length();
+        }
+
+        int crypt(byte[] in, int inOffset, int length, byte[] out, int outOffset,
+                  long[] subkeys, int first, int step) {
+            int lanes = SPECIES.length();
+            int end = length - length % (8*lanes);
+            int[] l = new int[lanes];
+            int[] r = new int[lanes];
+            int[] index = new int[lanes];
+            for (int p=0; p<end; p+=8*lanes) {
+                for (int k=0; k<lanes; k++) {
+                    long ip = DES.fastIP(DES.readLong(in, inOffset+p+8*k));
+                    l[k] = (int) (ip>>32);
+                    r[k] = (int) ip;
+                }
+                IntVector lv = IntVector.fromArray(SPECIES, l, 0);
+                IntVector rv = IntVector.fromArray(SPECIES, r, 0);
+                for (int i=first, round=0; round<16; round++, i+=step) {
+                    long subkey = subkeys[i];
+                    IntVector f = IntVector.zero(SPECIES);
+                    for (int box=0; box<8; box++) {
+                        rv.lanewise(VectorOperators.ROR, ROTATE[box])
+                            .lanewise(VectorOperators.XOR, (int) (subkey >>> (42-6*box)))
+                            .and(0x3F)
+                            .intoArray(index, 0);
+                        f = f.or(IntVector.fromArray(SPECIES, SP, 64*box, index, 0));
+                    }
+                    IntVector t = lv.lanewise(VectorOperators.XOR, f);
+                    lv = rv;
+                    rv = t;
+                }
+                lv.intoArray(l, 0);
+                rv.intoArray(r, 0);
+                for (int k=0; k<lanes; k++) {
+                    DES.writeLong(out, outOffset+p+8*k, DES.fastFP((r[k]&0xFFFFFFFFL)<<32 | (l[k]&0xFFFFFFFFL)));
+                }
+            }
+            return end;
+        }
+    }
+
+}